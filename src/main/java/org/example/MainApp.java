@@ -3,43 +3,49 @@ package org.example;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.mysqlclient.MySQLConnectOptions;
 import org.example.service.AuthService;
 import org.example.config.Config;
+import org.example.cache.CacheStats;
+import org.example.cache.TodoListCache;
+import org.example.cache.TokenCache;
+import org.example.cache.UserCache;
 import org.example.db.Database;
+import org.example.db.IdGenerator;
+import org.example.db.ReactiveDatabase;
+import org.example.metrics.Metrics;
 import org.example.repository.TodoRepository;
+import org.example.repository.TodoShards;
+import org.example.repository.TokenRepository;
 import org.example.repository.UserRepository;
 import org.example.service.TodoService;
+import org.example.service.TokenRevocations;
 import org.example.service.UserService;
+import org.example.utils.PasswordHasher;
+import org.example.web.AuthThrottle;
+import org.example.web.ResponseCache;
 import org.flywaydb.core.Flyway;
 import org.flywaydb.core.api.configuration.FluentConfiguration;
 import org.flywaydb.core.api.exception.FlywayValidateException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
 public class MainApp {
   private static final Logger log = LoggerFactory.getLogger(MainApp.class);
 
   public static void main(String[] args) {
     Config config = new Config();
 
-    HikariConfig hcfg = new HikariConfig();
-    hcfg.setJdbcUrl(config.getJdbcUrl());
-    hcfg.setUsername(config.getDbUser());
-    hcfg.setPassword(config.getDbPass());
-    hcfg.setMaximumPoolSize(config.getDbPoolSize());
-    String driver = config.getDbDriver();
-    if (driver != null) {
-      try {
-        // ensure the driver class is loadable before passing it to Hikari
-        Class.forName(driver);
-        hcfg.setDriverClassName(driver);
-      } catch (ClassNotFoundException e) {
-        log.warn("JDBC driver class {} not found on classpath, skipping setDriverClassName", driver);
-      }
-    }
-
-    HikariDataSource ds = new HikariDataSource(hcfg);
+    HikariDataSource ds = createDataSource(config, config.getJdbcUrl(), false);
+    List<DataSource> replicas = new ArrayList<>();
+    for (String url : config.getDbReplicaUrls()) replicas.add(createDataSource(config, url, true));
 
     FluentConfiguration fconf = Flyway.configure()
         .dataSource(ds)
@@ -75,31 +81,180 @@ public class MainApp {
       }
     }
 
-    Vertx vertx = Vertx.vertx();
-    Database database = new Database(ds, vertx);
+    Vertx vertx = Vertx.vertx(new VertxOptions().setPreferNativeTransport(config.isServerNativeTransport()));
+    logTransport(config, vertx);
+    Metrics metrics = new Metrics();
+    Database database = createDatabase(config, ds, replicas, vertx, metrics);
+    metrics.registerPool("primary", ds);
+    for (int i = 0; i < replicas.size(); i++) metrics.registerPool("replica-" + i, (HikariDataSource) replicas.get(i));
+    registerExecutor(metrics, "main", database);
 
-    UserRepository userRepository = new UserRepository(database);
+    UserCache userCache = null;
+    if (config.isUserCacheEnabled()) {
+      UserCache cache = new UserCache(config.getUserCacheMaxEntries(), config.getUserCacheTtlMs(), config.getUserCacheNegativeTtlMs());
+      // expired entries hold password hashes: drop them even when nobody reads them again
+      vertx.setPeriodic(Math.max(100, Math.min(1000, config.getUserCacheTtlMs())), id -> cache.purgeExpired());
+      registerCache(metrics, "users_by_id", cache.idStats());
+      registerCache(metrics, "users_by_email", cache.emailStats());
+      userCache = cache;
+    }
+    UserRepository userRepository = new UserRepository(database, userCache);
     UserService userService = new UserService(userRepository);
-    AuthService authService = new AuthService(userRepository, config);
+    PasswordHasher hasher = new PasswordHasher(vertx, config.getHasherThreads(), config.getHasherMaxQueue(), config.getBcryptCost());
+    metrics.gauge("password_hasher_queued", "Password hashes waiting for a thread", "", hasher::queued);
+    metrics.gauge("password_hasher_running", "Password hashes running", "", hasher::running);
+    metrics.gauge("password_hasher_rejected", "Password hashes rejected as overloaded since start", "", hasher::rejected);
+    TokenRepository tokenRepository = new TokenRepository(database);
+    TokenRevocations revocations = new TokenRevocations(tokenRepository, config.getJwtRevocationExpected(),
+        config.getJwtRevocationRescanSeconds());
+    metrics.gauge("jwt_revocations", "Revoked access tokens not yet expired", "", revocations::size);
+    AuthService authService = new AuthService(userRepository, config, hasher, tokenRepository, revocations);
 
-    TodoRepository todoRepository = new TodoRepository(database);
-    TodoService todoService = new TodoService(todoRepository);
+    List<DataSource> shardSources = new ArrayList<>();
+    List<Database> shardDatabases = new ArrayList<>();
+    for (String url : config.getDbShardUrls()) {
+      HikariDataSource shardDs = createDataSource(config, url, false);
+      log.info("Migrating todo shard {}: {}", shardSources.size(), url);
+      Flyway.configure().dataSource(shardDs).locations(config.getDbShardLocations()).load().migrate();
+      Database shardDb = new Database(shardDs, List.of(), vertx, config, metrics);
+      metrics.registerPool("shard-" + shardSources.size(), shardDs);
+      registerExecutor(metrics, "shard-" + shardSources.size(), shardDb);
+      shardSources.add(shardDs);
+      shardDatabases.add(shardDb);
+    }
+    TodoShards shards = shardDatabases.isEmpty() ? null : new TodoShards(database, shardDatabases,
+        config.getDbShardRingSize(), config.getDbShardVirtualNodes(), new IdGenerator(config.getDbShardNodeId()));
+
+    TodoRepository todoRepository = shards != null ? new TodoRepository(shards) : new TodoRepository(database, config);
+    TodoListCache todoCache = null;
+    if (config.isTodoCacheEnabled()) {
+      todoCache = new TodoListCache(config.getTodoCacheMaxBytes(), config.getTodoCacheMaxUserBytes(), config.getTodoCacheTtlMs());
+      registerCache(metrics, "todos", todoCache);
+    }
+    TodoService todoService = new TodoService(todoRepository, todoCache);
 
     Runtime.getRuntime().addShutdownHook(new Thread(() -> {
       log.info("Shutting down...");
+      database.close();
+      shardDatabases.forEach(Database::close);
+      hasher.close();
       vertx.close();
       ds.close();
+      closeAll(replicas);
+      closeAll(shardSources);
     }));
 
-    DeploymentOptions options = new DeploymentOptions();
-    vertx.deployVerticle(() -> new WebVerticle(config, userService, authService, todoService), options, res -> {
+    ResponseCache responses = null;
+    if (config.isResponseCacheEnabled()) {
+      responses = new ResponseCache(config.getResponseCacheMaxBytes(), config.getResponseCacheMaxEntryBytes(), config.getResponseCacheTtlMs(),
+          config.isServerCompression() ? config.getServerCompressionMinBytes() : -1);
+      registerCache(metrics, "responses", responses.stats());
+    }
+    TokenCache tokens = null;
+    if (config.isTokenCacheEnabled()) {
+      tokens = new TokenCache(config.getTokenCacheMaxEntries());
+      registerCache(metrics, "jwt", tokens);
+    }
+    AuthThrottle throttle = null;
+    if (config.isAuthThrottleEnabled()) {
+      throttle = new AuthThrottle(config.getAuthThrottleIpBurst(), config.getAuthThrottleIpPerMinute(),
+          config.getAuthThrottleEmailBurst(), config.getAuthThrottleEmailPerMinute(), config.getAuthThrottleMaxKeys());
+      metrics.gauge("auth_throttled", "Logins and registrations rejected with 429 since start", "", throttle::throttled);
+      metrics.gauge("auth_throttle_buckets", "Token buckets held for IPs and emails", "", throttle::size);
+    }
+    WebVerticle.Shared shared = new WebVerticle.Shared(responses, tokens, throttle, revocations);
+
+    Future<Void> directory = shards != null
+        ? shards.start(vertx, config.getDbShardDirectoryRefreshMs(), config.getDbShardMoveGraceMs())
+        : Future.succeededFuture();
+    // no request may be served before the revocations are known
+    Future<Void> ready = directory.compose(v -> revocations.start(vertx, config.getJwtRevocationRefreshMs(), config.getJwtTokenCleanupMs()));
+    // services, repositories and caches are shared by all instances and safe to call from any event loop
+    int instances = config.getServerInstances() > 0 ? config.getServerInstances() : Runtime.getRuntime().availableProcessors();
+    DeploymentOptions options = new DeploymentOptions().setInstances(instances);
+    ready.compose(v -> vertx.deployVerticle(() -> new WebVerticle(config, userService, authService, todoService, metrics, shared), options)).onComplete(res -> {
       if (res.succeeded()) {
-        log.info("WebVerticle deployed: {}", res.result());
+        log.info("WebVerticle deployed: {} ({} instances)", res.result(), instances);
       } else {
         log.error("Failed to deploy WebVerticle", res.cause());
         vertx.close();
         ds.close();
+        closeAll(replicas);
+        closeAll(shardSources);
       }
     });
   }
+
+  private static void logTransport(Config config, Vertx vertx) {
+    if (vertx.isNativeTransportEnabled()) {
+      log.info("Using the native transport (epoll)");
+    } else if (config.isServerNativeTransport()) {
+      Throwable cause = vertx.unavailableNativeTransportCause();
+      log.warn("Native transport unavailable, using NIO: {}", cause != null ? cause.getMessage() : "unknown reason");
+    } else {
+      log.info("Using the NIO transport (server.nativeTransport=false)");
+    }
+  }
+
+  static HikariDataSource createDataSource(Config config, String url, boolean readOnly) {
+    HikariConfig hcfg = new HikariConfig();
+    hcfg.setJdbcUrl(url);
+    hcfg.setUsername(config.getDbUser());
+    hcfg.setPassword(config.getDbPass());
+    hcfg.setMaximumPoolSize(config.getDbPoolSize());
+    hcfg.setReadOnly(readOnly);
+    String driver = config.getDbDriver();
+    if (driver != null) {
+      try {
+        // ensure the driver class is loadable before passing it to Hikari
+        Class.forName(driver);
+        hcfg.setDriverClassName(driver);
+      } catch (ClassNotFoundException e) {
+        log.warn("JDBC driver class {} not found on classpath, skipping setDriverClassName", driver);
+      }
+    }
+    return new HikariDataSource(hcfg);
+  }
+
+  private static void closeAll(List<DataSource> dataSources) {
+    for (DataSource d : dataSources) {
+      if (d instanceof HikariDataSource) ((HikariDataSource) d).close();
+    }
+  }
+
+  private static void registerExecutor(Metrics metrics, String db, Database database) {
+    String labels = "db=\"" + db + "\"";
+    metrics.gauge("db_executor_queued", "Blocking DB operations waiting for a thread", labels, database::queuedOperations);
+    metrics.gauge("db_executor_running", "Blocking DB operations running", labels, database::runningOperations);
+    metrics.gauge("db_bulkhead_limit", "Current admission limit of the DB bulkhead", labels, database::admissionLimit);
+    metrics.gauge("db_bulkhead_queued", "DB operations waiting for admission", labels, database::admissionQueued);
+    metrics.gauge("db_bulkhead_rejected", "DB operations rejected as overloaded since start", labels, database::rejectedOperations);
+    metrics.gauge("db_streams_open", "Streaming queries holding a connection", labels, database::openStreams);
+  }
+
+  private static void registerCache(Metrics metrics, String cache, CacheStats c) {
+    String labels = "cache=\"" + cache + "\"";
+    metrics.gauge("cache_hits", "Cache hits since start", labels, c::hits);
+    metrics.gauge("cache_misses", "Cache misses since start", labels, c::misses);
+    metrics.gauge("cache_evictions", "Entries evicted to make room", labels, c::evictions);
+    metrics.gauge("cache_expirations", "Entries dropped after their TTL", labels, c::expirations);
+    metrics.gauge("cache_rejections", "Values too large to cache", labels, c::rejections);
+    metrics.gauge("cache_entries", "Cached entries", labels, c::size);
+    metrics.gauge("cache_bytes", "Estimated heap held by the cache", labels, c::weight);
+  }
+
+  private static Database createDatabase(Config config, HikariDataSource ds, List<DataSource> replicas, Vertx vertx, Metrics metrics) {
+    String backend = config.getDbBackend();
+    if ("reactive".equalsIgnoreCase(backend)) {
+      if (config.getJdbcUrl().startsWith("jdbc:mysql:")) {
+        log.info("Using reactive MySQL database backend");
+        MySQLConnectOptions connectOptions = ReactiveDatabase.connectOptions(config.getJdbcUrl(), config.getDbUser(), config.getDbPass());
+        return new ReactiveDatabase(ds, replicas, vertx, config, metrics, ReactiveDatabase.createPool(vertx, connectOptions, config.getDbPoolSize()));
+      }
+      log.warn("db.backend=reactive is only supported for jdbc:mysql urls, falling back to JDBC for {}", config.getJdbcUrl());
+    } else if (!"jdbc".equalsIgnoreCase(backend)) {
+      log.warn("Unknown db.backend '{}', using JDBC", backend);
+    }
+    return new Database(ds, replicas, vertx, config, metrics);
+  }
 }
@@ -48,6 +48,7 @@ public class OpenApiSpec {
 
         // Prefer static summary if present
         if (statOp.containsKey("summary")) dynOp.put("summary", statOp.getString("summary"));
+        if (statOp.containsKey("description")) dynOp.put("description", statOp.getString("description"));
         // Parameters and requestBody copied if missing
         if (statOp.containsKey("parameters") && !dynOp.containsKey("parameters")) dynOp.put("parameters", statOp.getJsonArray("parameters"));
         if (statOp.containsKey("requestBody") && !dynOp.containsKey("requestBody")) dynOp.put("requestBody", statOp.getJsonObject("requestBody"));
@@ -232,6 +233,45 @@ public class OpenApiSpec {
                 .put("201", json().put("description", "Created").put("content", appJson(schemaRef("Todo")))))
         ));
 
+    JsonObject etagHeader = new JsonObject().put("ETag", new JsonObject()
+        .put("description", "Version of the todo, to send back in If-Match").put("schema", new JsonObject().put("type", "string")));
+    paths.put("/api/todos/{id}", new JsonObject()
+        .put("patch", new JsonObject()
+            .put("summary", "Update title and/or completed of a todo if it is still at the version in If-Match")
+            .put("security", bearer)
+            .put("parameters", new JsonArray()
+                .add(new JsonObject().put("name", "id").put("in", "path").put("required", true)
+                    .put("schema", new JsonObject().put("type", "integer")))
+                .add(new JsonObject().put("name", "If-Match").put("in", "header").put("required", true)
+                    .put("description", "ETag of the todo as last seen (from its create response, a previous update or its version in the list)")
+                    .put("schema", new JsonObject().put("type", "string"))))
+            .put("requestBody", new JsonObject().put("required", true)
+                .put("content", appJson(schemaRef("TodoPatch"))))
+            .put("responses", new JsonObject()
+                .put("204", json().put("description", "Updated").put("headers", etagHeader))
+                .put("400", json().put("description", "Invalid id, body or If-Match"))
+                .put("404", json().put("description", "Not found"))
+                .put("412", json().put("description", "Changed since the given version; ETag has the current one").put("headers", etagHeader))
+                .put("428", json().put("description", "If-Match missing")))
+        ));
+
+    paths.put("/api/todos/batch", new JsonObject()
+        .put("post", new JsonObject()
+            .put("summary", "Create, complete, uncomplete and delete todos of the current user in one transaction")
+            .put("description", "Operations are validated one by one and each gets a result with the status its single "
+                + "request would have had. By default the valid ones are committed; with atomic=true a single invalid or "
+                + "unknown id rolls back the whole batch (the others report 424). The size limit is todos.batch.maxSize.")
+            .put("security", bearer)
+            .put("requestBody", new JsonObject().put("required", true)
+                .put("content", appJson(schemaRef("TodoBatchRequest"))))
+            .put("responses", new JsonObject()
+                .put("200", json().put("description", "Batch committed (possibly with failed operations)")
+                    .put("content", appJson(schemaRef("TodoBatchResponse"))))
+                .put("422", json().put("description", "Atomic batch rolled back").put("content", appJson(schemaRef("TodoBatchResponse"))))
+                .put("400", json().put("description", "Missing operations or too many of them"))
+                .put("503", json().put("description", "Database overloaded, see Retry-After")))
+        ));
+
     return paths;
   }
 
@@ -293,6 +333,7 @@ public class OpenApiSpec {
             .put("title", new JsonObject().put("type", "string"))
             .put("completed", new JsonObject().put("type", "boolean"))
             .put("created_at", new JsonObject().put("type", "string"))
+            .put("version", new JsonObject().put("type", "integer"))
         ));
 
     schemas.put("NewTodo", new JsonObject()
@@ -300,6 +341,50 @@ public class OpenApiSpec {
         .put("required", new JsonArray().add("title"))
         .put("properties", new JsonObject().put("title", new JsonObject().put("type", "string"))));
 
+    schemas.put("TodoPatch", new JsonObject()
+        .put("type", "object")
+        .put("description", "At least one of the fields")
+        .put("properties", new JsonObject()
+            .put("title", new JsonObject().put("type", "string"))
+            .put("completed", new JsonObject().put("type", "boolean"))));
+
+    schemas.put("TodoBatchOperation", new JsonObject()
+        .put("type", "object")
+        .put("required", new JsonArray().add("op"))
+        .put("properties", new JsonObject()
+            .put("op", new JsonObject().put("type", "string")
+                .put("enum", new JsonArray().add("create").add("complete").add("uncomplete").add("delete")))
+            .put("id", new JsonObject().put("type", "integer").put("description", "Required except for create; once per batch"))
+            .put("title", new JsonObject().put("type", "string").put("description", "Required for create"))
+        ));
+
+    schemas.put("TodoBatchRequest", new JsonObject()
+        .put("type", "object")
+        .put("required", new JsonArray().add("operations"))
+        .put("properties", new JsonObject()
+            .put("atomic", new JsonObject().put("type", "boolean").put("default", false))
+            .put("operations", new JsonObject().put("type", "array").put("items", schemaRef("TodoBatchOperation")))
+        ));
+
+    schemas.put("TodoBatchResult", new JsonObject()
+        .put("type", "object")
+        .put("properties", new JsonObject()
+            .put("index", new JsonObject().put("type", "integer"))
+            .put("op", new JsonObject().put("type", "string"))
+            .put("id", new JsonObject().put("type", "integer"))
+            .put("status", new JsonObject().put("type", "integer")
+                .put("description", "201 created, 200 updated, 204 deleted, 400 invalid, 404 not found, 424 rolled back"))
+            .put("todo", schemaRef("Todo"))
+            .put("error", new JsonObject().put("type", "string"))
+        ));
+
+    schemas.put("TodoBatchResponse", new JsonObject()
+        .put("type", "object")
+        .put("properties", new JsonObject()
+            .put("applied", new JsonObject().put("type", "integer"))
+            .put("results", new JsonObject().put("type", "array").put("items", schemaRef("TodoBatchResult")))
+        ));
+
     JsonObject components = new JsonObject().put("schemas", schemas);
 
     // Security scheme
@@ -0,0 +1,68 @@
+package org.example;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.example.config.Config;
+import org.example.db.Database;
+import org.example.db.IdGenerator;
+import org.example.repository.TodoShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operator commands for sharded todos, run next to the servers with the same configuration:
+ * <pre>
+ *   java -cp app.jar org.example.ShardAdmin move &lt;userId&gt; &lt;shard&gt;
+ *   java -cp app.jar org.example.ShardAdmin rebalance &lt;ringSize&gt;
+ * </pre>
+ * The servers keep running; they refuse the moved users' writes while the move is in progress (see
+ * {@link TodoShards}). Migrations are left to the servers, which must have started once with the current version.
+ */
+public class ShardAdmin {
+  private static final Logger log = LoggerFactory.getLogger(ShardAdmin.class);
+
+  public static void main(String[] args) throws Exception {
+    if (args.length != 3 || !(args[0].equals("move") || args[0].equals("rebalance"))) {
+      System.err.println("usage: ShardAdmin move <userId> <shard> | rebalance <ringSize>");
+      System.exit(2);
+    }
+    Config config = new Config();
+    if (config.getDbShardUrls().isEmpty()) {
+      System.err.println("db.shard.urls is empty: todos are not sharded");
+      System.exit(2);
+    }
+    Vertx vertx = Vertx.vertx();
+    List<HikariDataSource> sources = new ArrayList<>();
+    int status = 1;
+    try {
+      HikariDataSource ds = MainApp.createDataSource(config, config.getJdbcUrl(), false);
+      sources.add(ds);
+      List<Database> shardDatabases = new ArrayList<>();
+      for (String url : config.getDbShardUrls()) {
+        HikariDataSource shardDs = MainApp.createDataSource(config, url, false);
+        sources.add(shardDs);
+        shardDatabases.add(new Database(shardDs, List.of(), vertx, config));
+      }
+      // the node id only matters for generated todo ids, which moves never create
+      TodoShards shards = new TodoShards(new Database(ds, List.of(), vertx, config), shardDatabases,
+          config.getDbShardRingSize(), config.getDbShardVirtualNodes(), new IdGenerator(config.getDbShardNodeId()));
+      Future<String> done = shards.start(vertx, config.getDbShardDirectoryRefreshMs(), config.getDbShardMoveGraceMs())
+          .compose(v -> args[0].equals("move")
+              ? shards.moveUser(Long.parseLong(args[1]), Integer.parseInt(args[2])).map(n -> "moved user " + args[1] + " to shard " + args[2])
+              : shards.rebalance(Integer.parseInt(args[1])).map(n -> "rebalanced for a ring of " + args[1] + ": " + n + " users moved"));
+      log.info("ShardAdmin: {}", done.toCompletionStage().toCompletableFuture().get(1, TimeUnit.DAYS));
+      status = 0;
+    } catch (Exception e) {
+      log.error("ShardAdmin {} failed", args[0], e);
+    } finally {
+      vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+      sources.forEach(HikariDataSource::close);
+    }
+    System.exit(status);
+  }
+}
@@ -3,16 +3,22 @@ package org.example;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.handler.BodyHandler;
+import org.example.cache.TokenCache;
 import org.example.service.AuthService;
+import org.example.service.TokenRevocations;
 import org.example.config.Config;
+import org.example.metrics.Metrics;
 import org.example.service.TodoService;
 import org.example.service.UserService;
 import org.example.web.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.TimeUnit;
+
 public class WebVerticle extends AbstractVerticle {
   private static final Logger log = LoggerFactory.getLogger(WebVerticle.class);
 
@@ -20,41 +26,76 @@ public class WebVerticle extends AbstractVerticle {
   private final UserService userService;
   private final AuthService authService;
   private final TodoService todoService;
+  private final Metrics metrics;
+  private final Shared shared;
+  private Metrics.EventLoopMonitor eventLoopMonitor;
+
+  /**
+   * Optional components shared by all verticle instances, so e.g. a write on one event loop invalidates what the
+   * others serve. Each may be null when disabled.
+   *
+   * @param responses encoded list responses
+   * @param tokens verified bearer tokens
+   * @param throttle per-IP and per-email login/registration limits
+   * @param revocations revoked access tokens
+   */
+  public record Shared(ResponseCache responses, TokenCache tokens, AuthThrottle throttle, TokenRevocations revocations) {
+    public static final Shared NONE = new Shared(null, null, null, null);
+  }
 
   public WebVerticle(Config config, UserService userService, AuthService authService, TodoService todoService) {
+    this(config, userService, authService, todoService, new Metrics(), Shared.NONE);
+  }
+
+  public WebVerticle(Config config, UserService userService, AuthService authService, TodoService todoService, Metrics metrics,
+                     Shared shared) {
     this.config = config;
     this.userService = userService;
     this.authService = authService;
     this.todoService = todoService;
+    this.metrics = metrics;
+    this.shared = shared;
   }
 
   @Override
   public void start(Promise<Void> startPromise) {
     Router router = Router.router(vertx);
+    router.route().handler(new RequestMetricsHandler(metrics));
+    if (config.isServerCompression()) router.route().handler(new CompressionThresholdHandler(config.getServerCompressionMinBytes()));
     router.route().handler(BodyHandler.create());
+    eventLoopMonitor = metrics.monitorEventLoop(vertx, 100);
 
     // Public controllers
     new HealthController().mount(router, vertx);
-    new UsersController(userService).mount(router, vertx);
+    new MetricsController(metrics).mount(router, vertx);
+    new UsersController(userService, shared.responses()).mount(router, vertx);
     new ExternalController().mount(router, vertx);
-    new AuthController(authService).mount(router, vertx);
+    AuthHandler authHandler = new AuthHandler(config, shared.tokens(), shared.revocations());
+    // logout revokes the bearer token, so it needs its claims
+    router.post("/api/auth/logout").handler(authHandler);
+    new AuthController(authService, shared.responses(), shared.throttle()).mount(router, vertx);
 
     // Protected routes: JWT required
     // Ensure both exact path and sub-paths are protected
-    AuthHandler authHandler = new AuthHandler(config);
     router.route("/api/todos").handler(authHandler);
     router.route("/api/todos/*").handler(authHandler);
-    new TodoController(todoService).mount(router, vertx);
+    new TodoController(todoService, shared.responses(), config.getTodoBatchMaxSize()).mount(router, vertx);
 
+    // before listening: with several instances sharing the port, another one may already be accepting requests
     int desiredPort = config.getServerPort();
-    HttpServer server = vertx.createHttpServer();
-    server.requestHandler(router).listen(desiredPort, ar -> {
+    OpenApiBridge docs = new OpenApiBridge("http://localhost:" + desiredPort, config.getDocsMaxAgeSeconds());
+    docs.mount(router, vertx);
+
+    // port 0 would give every instance its own random port; a negative one is random but shared by all of them
+    HttpServer server = vertx.createHttpServer(serverOptions(config));
+    server.requestHandler(router).listen(desiredPort != 0 ? desiredPort : -1, ar -> {
       if (ar.succeeded()) {
         int actualPort = ar.result().actualPort();
         String serverUrl = "http://localhost:" + actualPort;
-        new OpenApiBridge(serverUrl).mount(router, vertx);
+        if (actualPort != desiredPort) docs.serverUrl(serverUrl);
+        // every instance listens on the same port, so whichever writes last writes the same value
         vertx.sharedData().getLocalMap("app.info").put("port", actualPort);
-        log.info("HTTP server running on port {}", actualPort);
+        log.info("HTTP server running on port {} (event loop {})", actualPort, Thread.currentThread().getName());
         log.info("API docs available at {}/docs", serverUrl);
         startPromise.complete();
       } else {
@@ -62,4 +103,27 @@ public class WebVerticle extends AbstractVerticle {
       }
     });
   }
+
+  /** Transport, HTTP/2 and compression settings of the HTTP server (see the server.* properties). */
+  public static HttpServerOptions serverOptions(Config config) {
+    HttpServerOptions options = new HttpServerOptions()
+        .setTcpNoDelay(config.isServerTcpNoDelay())
+        .setTcpFastOpen(config.isServerTcpFastOpen())
+        .setTcpKeepAlive(config.isServerTcpKeepAlive())
+        .setIdleTimeout(config.getServerIdleTimeoutSeconds())
+        .setIdleTimeoutUnit(TimeUnit.SECONDS)
+        .setHttp2ClearTextEnabled(config.isServerHttp2ClearText())
+        .setHttp2ConnectionWindowSize(config.getServerHttp2ConnectionWindowBytes())
+        .setCompressionSupported(config.isServerCompression())
+        .setCompressionLevel(config.getServerCompressionLevel());
+    options.getInitialSettings()
+        .setInitialWindowSize(config.getServerHttp2StreamWindowBytes())
+        .setMaxConcurrentStreams(config.getServerHttp2MaxConcurrentStreams());
+    return options;
+  }
+
+  @Override
+  public void stop() {
+    if (eventLoopMonitor != null) eventLoopMonitor.stop();
+  }
 }
@@ -0,0 +1,73 @@
+package org.example.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set membership with false positives but no false negatives, in a fixed number of bits. Adds and lookups are
+ * lock-free; entries cannot be removed, so rebuild the filter to drop them.
+ */
+public final class BloomFilter {
+  private final AtomicLongArray bits;
+  private final long bitCount;
+  private final int hashes;
+
+  /**
+   * @param expected insertions the filter is sized for; beyond that the false positive rate grows
+   * @param falsePositiveRate at {@code expected} insertions, e.g. 0.01
+   */
+  public BloomFilter(long expected, double falsePositiveRate) {
+    long n = Math.max(1, expected);
+    double p = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+    long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+    int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) / 64));
+    this.bits = new AtomicLongArray(words);
+    this.bitCount = (long) words * 64;
+    this.hashes = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+  }
+
+  public void add(String value) {
+    long h = hash(value);
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32);
+    for (int i = 1; i <= hashes; i++) {
+      long bit = index(h1 + i * h2);
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      long current;
+      while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+        // lost a race with another add to the same word: retry
+      }
+    }
+  }
+
+  /** False means {@code value} was never added; true means it probably was. */
+  public boolean mightContain(String value) {
+    long h = hash(value);
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32);
+    for (int i = 1; i <= hashes; i++) {
+      long bit = index(h1 + i * h2);
+      if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+    }
+    return true;
+  }
+
+  private long index(int combined) {
+    return (combined & 0x7fffffffL) % bitCount;
+  }
+
+  // FNV-1a over the chars, then a 64-bit finalizer so both halves are well mixed
+  private static long hash(String value) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0, n = value.length(); i < n; i++) {
+      h ^= value.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
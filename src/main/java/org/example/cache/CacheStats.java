@@ -0,0 +1,15 @@
+package org.example.cache;
+
+/** Counters of a cache since start, for metrics. */
+public interface CacheStats {
+  long hits();
+  long misses();
+  /** Entries dropped to make room. */
+  long evictions();
+  long expirations();
+  /** Values not cached because they were too large. */
+  long rejections();
+  int size();
+  /** Estimated weight held (bytes or entries, depending on the cache). */
+  long weight();
+}
@@ -0,0 +1,320 @@
+package org.example.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Size-bounded cache with segmented LRU eviction and a time-to-live.
+ *
+ * New entries go to the probation segment; a hit there promotes the entry to the protected segment (at most 80% of
+ * the capacity), whose least recently used entries are demoted back to probation. Eviction takes from probation
+ * first, so a scan of keys that are read once cannot flush the entries that are read repeatedly.
+ * Capacity is a weight (e.g. estimated bytes), and a single entry heavier than {@code maxEntryWeight} is not cached.
+ *
+ * Loads that race with writes: take a {@link #stamp} before loading and pass it to {@link #put(Object, Object, long)};
+ * the put is dropped when the key was invalidated or updated in between. Stamps are kept per hash slot (64), so an
+ * unrelated write to a key in the same slot occasionally drops a fill too; that only costs a miss.
+ *
+ * Keys are spread by hash over up to 16 lock stripes, each an independent segmented LRU with an equal share of the
+ * capacity, so event loops reading different keys do not wait for each other. A cache too small to give every stripe
+ * room for several of its largest entries gets fewer stripes (one for tiny caches), and eviction is then exact.
+ * Operations lock the stripe of their key and are O(1); size, weight, clear and purgeExpired visit every stripe.
+ */
+public final class SegmentedLruCache<K, V> implements CacheStats {
+  private static final int GENERATIONS = 64;
+  private static final int MAX_STRIPES = 16;
+  // a stripe holds at least this many of the heaviest entries and this much weight
+  private static final long MIN_STRIPE_ENTRIES = 8;
+  private static final long MIN_STRIPE_WEIGHT = 64;
+
+  private final long maxEntryWeight;
+  private final long ttlMs;
+  private final ToLongFunction<V> weigher;
+  private final Stripe[] stripes;
+  // slot i is guarded by the lock of stripe i & (stripes.length - 1), the stripe of every key in the slot
+  private final long[] generations = new long[GENERATIONS];
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+  private final LongAdder rejections = new LongAdder();
+
+  /**
+   * @param maxWeight capacity, in the unit of {@code weigher}
+   * @param maxEntryWeight heavier values are not cached
+   * @param ttlMs entries older than this are treated as missing; 0 = no expiry
+   */
+  @SuppressWarnings("unchecked")
+  public SegmentedLruCache(long maxWeight, long maxEntryWeight, long ttlMs, ToLongFunction<V> weigher) {
+    long max = Math.max(1, maxWeight);
+    this.maxEntryWeight = Math.min(Math.max(1, maxEntryWeight), max);
+    this.ttlMs = Math.max(0, ttlMs);
+    this.weigher = weigher;
+    long minStripeWeight = Math.max(MIN_STRIPE_WEIGHT, this.maxEntryWeight * MIN_STRIPE_ENTRIES);
+    int n = 1;
+    while (n < MAX_STRIPES && max / (n * 2) >= minStripeWeight) n *= 2;
+    this.stripes = (Stripe[]) new SegmentedLruCache<?, ?>.Stripe[n];
+    for (int i = 0; i < n; i++) stripes[i] = new Stripe(max / n + (i < max % n ? 1 : 0));
+  }
+
+  /** The cached value, or null when absent or expired. */
+  public V get(K key) {
+    return stripe(slot(key)).get(key);
+  }
+
+  /** Token for a load of {@code key}; see {@link #put(Object, Object, long)}. */
+  public long stamp(K key) {
+    int slot = slot(key);
+    Stripe s = stripe(slot);
+    synchronized (s) {
+      return generations[slot];
+    }
+  }
+
+  /** Caches a loaded value unless the key was invalidated or updated since {@code stamp} was taken. */
+  public boolean put(K key, V value, long stamp) {
+    return put(key, value, stamp, this.ttlMs);
+  }
+
+  /** Same, with a TTL for this entry (e.g. shorter for negative entries); 0 = no expiry. */
+  public boolean put(K key, V value, long stamp, long ttlMs) {
+    int slot = slot(key);
+    Stripe s = stripe(slot);
+    synchronized (s) {
+      if (generations[slot] != stamp) return false;
+      return s.store(key, value, expiry(ttlMs * 1_000_000));
+    }
+  }
+
+  /** Applies {@code update} to the cached value, if any; a null result removes the entry. */
+  public void update(K key, UnaryOperator<V> update) {
+    int slot = slot(key);
+    Stripe s = stripe(slot);
+    synchronized (s) {
+      generations[slot]++;
+      Entry<V> e = s.remove(key);
+      if (e == null || expired(e)) return;
+      V value = update.apply(e.value);
+      // keeps the entry's expiry: an update does not make the rest of the value any fresher
+      if (value != null) s.store(key, value, e.expiresAt);
+    }
+  }
+
+  public void invalidate(K key) {
+    int slot = slot(key);
+    Stripe s = stripe(slot);
+    synchronized (s) {
+      generations[slot]++;
+      s.remove(key);
+    }
+  }
+
+  public void clear() {
+    for (int i = 0; i < stripes.length; i++) {
+      Stripe s = stripes[i];
+      synchronized (s) {
+        for (int slot = i; slot < GENERATIONS; slot += stripes.length) generations[slot]++;
+        s.clear();
+      }
+    }
+  }
+
+  /** Drops every expired entry; for values that should not stay on the heap past their TTL. O(size). */
+  public int purgeExpired() {
+    int purged = 0;
+    for (Stripe s : stripes) purged += s.purgeExpired();
+    expirations.add(purged);
+    return purged;
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (Stripe s : stripes) size += s.size();
+    return size;
+  }
+
+  @Override
+  public long weight() {
+    long weight = 0;
+    for (Stripe s : stripes) weight += s.weight();
+    return weight;
+  }
+
+  @Override public long hits() { return hits.sum(); }
+  @Override public long misses() { return misses.sum(); }
+  @Override public long evictions() { return evictions.sum(); }
+  @Override public long expirations() { return expirations.sum(); }
+  @Override public long rejections() { return rejections.sum(); }
+
+  int stripes() {
+    return stripes.length;
+  }
+
+  private Stripe stripe(int slot) {
+    return stripes[slot & (stripes.length - 1)];
+  }
+
+  private static int slot(Object key) {
+    int h = key.hashCode();
+    return (h ^ (h >>> 16)) & (GENERATIONS - 1);
+  }
+
+  private static boolean expired(Entry<?> e) {
+    return System.nanoTime() - e.expiresAt > 0;
+  }
+
+  private static long expiry(long ttlNanos) {
+    // far enough ahead to never be reached, close enough to not overflow the comparison
+    return System.nanoTime() + (ttlNanos > 0 ? ttlNanos : Long.MAX_VALUE / 2);
+  }
+
+  /** One segmented LRU over the keys of its stripe; every method runs under its lock. */
+  private final class Stripe {
+    private final long maxWeight;
+    private final long maxProtectedWeight;
+    // access ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Entry<V>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long probationWeight;
+    private long protectedWeight;
+
+    Stripe(long maxWeight) {
+      this.maxWeight = Math.max(1, maxWeight);
+      this.maxProtectedWeight = this.maxWeight * 4 / 5;
+    }
+
+    synchronized V get(K key) {
+      Entry<V> e = protectedSegment.get(key);
+      boolean probationHit = false;
+      if (e == null) {
+        e = probation.get(key);
+        probationHit = e != null;
+      }
+      if (e == null || expired(key, e)) {
+        misses.increment();
+        return null;
+      }
+      if (probationHit) promote(key, e);
+      hits.increment();
+      return e.value;
+    }
+
+    synchronized void clear() {
+      probation.clear();
+      protectedSegment.clear();
+      probationWeight = 0;
+      protectedWeight = 0;
+    }
+
+    synchronized int purgeExpired() {
+      return purge(probation) + purge(protectedSegment);
+    }
+
+    synchronized int size() {
+      return probation.size() + protectedSegment.size();
+    }
+
+    synchronized long weight() {
+      return probationWeight + protectedWeight;
+    }
+
+    private int purge(LinkedHashMap<K, Entry<V>> segment) {
+      int purged = 0;
+      for (Iterator<Entry<V>> it = segment.values().iterator(); it.hasNext(); ) {
+        Entry<V> e = it.next();
+        if (!SegmentedLruCache.expired(e)) continue;
+        it.remove();
+        if (segment == probation) probationWeight -= e.weight;
+        else protectedWeight -= e.weight;
+        purged++;
+      }
+      return purged;
+    }
+
+    boolean store(K key, V value, long expiresAt) {
+      remove(key);
+      long weight = Math.max(1, weigher.applyAsLong(value));
+      if (weight > maxEntryWeight) {
+        rejections.increment();
+        return false;
+      }
+      probation.put(key, new Entry<>(value, weight, expiresAt));
+      probationWeight += weight;
+      while (probationWeight + protectedWeight > maxWeight) evictOne(key);
+      return true;
+    }
+
+    // Evicts the least recently used entry of probation, other than the one just added, else of the protected segment
+    private void evictOne(K keep) {
+      Iterator<Map.Entry<K, Entry<V>>> it = probation.entrySet().iterator();
+      if (it.hasNext()) {
+        Map.Entry<K, Entry<V>> lru = it.next();
+        if (!lru.getKey().equals(keep) || protectedSegment.isEmpty()) {
+          it.remove();
+          probationWeight -= lru.getValue().weight;
+          evictions.increment();
+          return;
+        }
+      }
+      Iterator<Map.Entry<K, Entry<V>>> pit = protectedSegment.entrySet().iterator();
+      Map.Entry<K, Entry<V>> lru = pit.next();
+      pit.remove();
+      protectedWeight -= lru.getValue().weight;
+      evictions.increment();
+    }
+
+    private void promote(K key, Entry<V> e) {
+      probation.remove(key);
+      probationWeight -= e.weight;
+      protectedSegment.put(key, e);
+      protectedWeight += e.weight;
+      // demoted entries become the most recently used of probation, so they get another chance before eviction
+      Iterator<Map.Entry<K, Entry<V>>> it = protectedSegment.entrySet().iterator();
+      while (protectedWeight > maxProtectedWeight && it.hasNext()) {
+        Map.Entry<K, Entry<V>> lru = it.next();
+        if (lru.getKey().equals(key)) break;
+        it.remove();
+        protectedWeight -= lru.getValue().weight;
+        probation.put(lru.getKey(), lru.getValue());
+        probationWeight += lru.getValue().weight;
+      }
+    }
+
+    Entry<V> remove(K key) {
+      Entry<V> e = probation.remove(key);
+      if (e != null) {
+        probationWeight -= e.weight;
+        return e;
+      }
+      e = protectedSegment.remove(key);
+      if (e != null) protectedWeight -= e.weight;
+      return e;
+    }
+
+    private boolean expired(K key, Entry<V> e) {
+      if (!SegmentedLruCache.expired(e)) return false;
+      remove(key);
+      expirations.increment();
+      return true;
+    }
+  }
+
+  private static final class Entry<V> {
+    final V value;
+    final long weight;
+    // System.nanoTime() based
+    final long expiresAt;
+
+    Entry(V value, long weight, long expiresAt) {
+      this.value = value;
+      this.weight = weight;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
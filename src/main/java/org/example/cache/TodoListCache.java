@@ -0,0 +1,141 @@
+package org.example.cache;
+
+import org.example.domain.Todo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Todo lists by user id, kept in id order and updated in place by the writes that go through this process
+ * (create, markCompleted, update). Writes by other instances are only seen once the entry expires (cache.todos.ttlMs).
+ * Cached lists are unmodifiable and their todos must not be changed.
+ */
+public final class TodoListCache implements CacheStats {
+  // rough heap footprint: the Todo with its boxed ids and Instant, plus the title's chars
+  private static final long LIST_BYTES = 64;
+  private static final long TODO_BYTES = 128;
+
+  private final SegmentedLruCache<Long, List<Todo>> cache;
+  private final long maxUserBytes;
+
+  /**
+   * @param maxBytes estimated heap the cache may hold
+   * @param maxUserBytes lists larger than this are not cached, so one user cannot push everyone else out
+   */
+  public TodoListCache(long maxBytes, long maxUserBytes, long ttlMs) {
+    this.cache = new SegmentedLruCache<>(maxBytes, maxUserBytes, ttlMs, TodoListCache::weigh);
+    this.maxUserBytes = maxUserBytes;
+  }
+
+  public List<Todo> get(long userId) {
+    return cache.get(userId);
+  }
+
+  /** Caches a list loaded from the database; see {@link #fill} to collect one row by row. */
+  public void put(long userId, long stamp, List<Todo> todos) {
+    cache.put(userId, Collections.unmodifiableList(new ArrayList<>(todos)), stamp);
+  }
+
+  public long stamp(long userId) {
+    return cache.stamp(userId);
+  }
+
+  /** Collects a streamed list for the cache; gives up (without buffering more) once it exceeds the per-user cap. */
+  public Fill fill(long userId) {
+    return new Fill(userId, cache.stamp(userId));
+  }
+
+  public void created(Todo todo) {
+    cache.update(todo.getUserId(), list -> {
+      List<Todo> copy = new ArrayList<>(list.size() + 1);
+      copy.addAll(list);
+      // ids normally grow, but batched inserts can complete out of order
+      int i = copy.size();
+      while (i > 0 && copy.get(i - 1).getId() > todo.getId()) i--;
+      // a load that finished after the insert already has it
+      if (i > 0 && copy.get(i - 1).getId().equals(todo.getId())) return list;
+      copy.add(i, todo);
+      return Collections.unmodifiableList(copy);
+    });
+  }
+
+  /** Applies an unconditional completion change, which also bumps the version. */
+  public void completed(long userId, long id, boolean completed) {
+    cache.update(userId, list -> {
+      List<Todo> copy = new ArrayList<>(list);
+      for (int i = 0; i < copy.size(); i++) {
+        Todo t = copy.get(i);
+        if (t.getId() == id) copy.set(i, new Todo(t.getId(), t.getUserId(), t.getTitle(), completed, t.getCreatedAt(), t.getVersion() + 1));
+      }
+      return Collections.unmodifiableList(copy);
+    });
+  }
+
+  /**
+   * Applies a versioned update: {@code title} and {@code completed} when not null, and the new {@code version}.
+   * A cached todo at another version than {@code version - 1} missed a write, so the list is dropped instead.
+   */
+  public void updated(long userId, long id, String title, Boolean completed, long version) {
+    cache.update(userId, list -> {
+      List<Todo> copy = new ArrayList<>(list);
+      for (int i = 0; i < copy.size(); i++) {
+        Todo t = copy.get(i);
+        if (t.getId() != id) continue;
+        // null drops the entry
+        if (t.getVersion() != version - 1) return null;
+        copy.set(i, new Todo(t.getId(), t.getUserId(), title != null ? title : t.getTitle(),
+            completed != null ? completed : t.isCompleted(), t.getCreatedAt(), version));
+      }
+      return Collections.unmodifiableList(copy);
+    });
+  }
+
+  public void invalidate(long userId) {
+    cache.invalidate(userId);
+  }
+
+  @Override public long hits() { return cache.hits(); }
+  @Override public long misses() { return cache.misses(); }
+  @Override public long evictions() { return cache.evictions(); }
+  @Override public long expirations() { return cache.expirations(); }
+  @Override public long rejections() { return cache.rejections(); }
+  @Override public int size() { return cache.size(); }
+  /** Estimated bytes held. */
+  @Override public long weight() { return cache.weight(); }
+
+  static long weigh(List<Todo> todos) {
+    long bytes = LIST_BYTES;
+    for (Todo t : todos) bytes += weigh(t);
+    return bytes;
+  }
+
+  private static long weigh(Todo t) {
+    return TODO_BYTES + (t.getTitle() != null ? 2L * t.getTitle().length() : 0);
+  }
+
+  public final class Fill {
+    private final long userId;
+    private final long stamp;
+    private List<Todo> rows = new ArrayList<>();
+    private long bytes = LIST_BYTES;
+
+    private Fill(long userId, long stamp) {
+      this.userId = userId;
+      this.stamp = stamp;
+    }
+
+    public void add(Todo todo) {
+      if (rows == null) return;
+      bytes += weigh(todo);
+      if (bytes > maxUserBytes) rows = null;
+      else rows.add(todo);
+    }
+
+    /** Call when the whole list was read; caches it unless the user wrote meanwhile or it was too large. */
+    public void complete() {
+      if (rows != null) cache.put(userId, Collections.unmodifiableList(rows), stamp);
+      rows = null;
+    }
+  }
+}
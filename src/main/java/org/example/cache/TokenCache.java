@@ -0,0 +1,71 @@
+package org.example.cache;
+
+import org.example.utils.JwtUtil;
+
+/**
+ * Bearer tokens that already passed signature verification, so a client reusing its token does not pay for the
+ * HMAC and the JSON parsing on every request. Entries are keyed by the token's signature part (itself an HMAC of
+ * the rest, so it needs no further hashing), but a hit also requires the whole token and the secret it was verified
+ * with to match. An entry expires at the token's exp; tokens without exp are not cached.
+ *
+ * Pass the current secret to every call: when it changes, the cache is cleared and fills that were verifying with
+ * the old secret are dropped.
+ */
+public final class TokenCache implements CacheStats {
+  private final SegmentedLruCache<String, Verified> cache;
+  private volatile String secret;
+
+  public TokenCache(int maxEntries) {
+    // no default TTL: every entry gets the time left until its exp
+    this.cache = new SegmentedLruCache<>(maxEntries, 1, 0, v -> 1);
+  }
+
+  /** The claims of {@code token} if it was verified with {@code secret} and has not expired; null otherwise. */
+  public JwtUtil.Claims claims(String token, String secret) {
+    rotate(secret);
+    Verified v = cache.get(key(token));
+    if (v == null || !v.token.equals(token) || !v.secret.equals(secret)) return null;
+    if (System.currentTimeMillis() / 1000 > v.claims.exp()) {
+      cache.invalidate(key(token));
+      return null;
+    }
+    return v.claims;
+  }
+
+  /** Take before verifying {@code token}; see {@link #put}. */
+  public long stamp(String token) {
+    return cache.stamp(key(token));
+  }
+
+  /** Caches a verified token unless the secret changed since {@code stamp} was taken. */
+  public void put(String token, String secret, long stamp, JwtUtil.Claims claims) {
+    if (claims.exp() == JwtUtil.NO_EXP) return;
+    long ttlMs = (claims.exp() + 1) * 1000 - System.currentTimeMillis();
+    if (ttlMs <= 0) return;
+    cache.put(key(token), new Verified(token, secret, claims), stamp, ttlMs);
+  }
+
+  @Override public long hits() { return cache.hits(); }
+  @Override public long misses() { return cache.misses(); }
+  @Override public long evictions() { return cache.evictions(); }
+  @Override public long expirations() { return cache.expirations(); }
+  @Override public long rejections() { return cache.rejections(); }
+  @Override public int size() { return cache.size(); }
+  @Override public long weight() { return cache.weight(); }
+
+  private void rotate(String current) {
+    if (current.equals(secret)) return;
+    synchronized (this) {
+      if (current.equals(secret)) return;
+      // also bumps every stamp, so a token verified with the old secret is not cached afterwards
+      cache.clear();
+      secret = current;
+    }
+  }
+
+  private static String key(String token) {
+    return token.substring(token.lastIndexOf('.') + 1);
+  }
+
+  private record Verified(String token, String secret, JwtUtil.Claims claims) {}
+}
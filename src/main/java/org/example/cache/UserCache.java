@@ -0,0 +1,79 @@
+package org.example.cache;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import org.example.domain.User;
+
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * User lookups by id and by email, including negative entries (with their own, shorter TTL) so repeated lookups
+ * of unknown users, e.g. credential stuffing, do not reach the database.
+ *
+ * Only the email entries hold password_hash (logins need it); id entries hold {@link User}, which has no hash and
+ * is what clients get to see. Call {@link #purgeExpired()} periodically so hashes do not stay on the heap past their
+ * TTL when nobody reads them. Callers get copies, so cached values cannot be modified.
+ */
+public final class UserCache {
+  private final SegmentedLruCache<Long, Optional<User>> byId;
+  private final SegmentedLruCache<String, Optional<JsonObject>> byEmail;
+  private final long negativeTtlMs;
+
+  public UserCache(int maxEntries, long ttlMs, long negativeTtlMs) {
+    // entries are small and similar in size, so capacity is counted in entries
+    this.byId = new SegmentedLruCache<>(maxEntries, 1, ttlMs, v -> 1);
+    this.byEmail = new SegmentedLruCache<>(maxEntries, 1, ttlMs, v -> 1);
+    this.negativeTtlMs = ttlMs > 0 ? Math.min(negativeTtlMs, ttlMs) : negativeTtlMs;
+  }
+
+  /** The user with this id (null when there is none), loading it with {@code load} on a miss. */
+  public Future<User> user(long id, Supplier<Future<User>> load) {
+    Optional<User> hit = byId.get(id);
+    if (hit != null) return Future.succeededFuture(hit.map(UserCache::copy).orElse(null));
+    long stamp = byId.stamp(id);
+    return load.get().onSuccess(user -> store(byId, id, user != null ? copy(user) : null, stamp));
+  }
+
+  /** The users row for this email including password_hash (null when there is none), loading it on a miss. */
+  public Future<JsonObject> row(String email, Supplier<Future<JsonObject>> load) {
+    Optional<JsonObject> hit = byEmail.get(email);
+    if (hit != null) return Future.succeededFuture(hit.map(UserCache::copy).orElse(null));
+    long stamp = byEmail.stamp(email);
+    return load.get().onSuccess(row -> store(byEmail, email, row != null ? copy(row) : null, stamp));
+  }
+
+  /** Drops the entries of a user that was created or changed; either argument may be null. */
+  public void invalidate(Long id, String email) {
+    if (id != null) byId.invalidate(id);
+    if (email != null) byEmail.invalidate(email);
+  }
+
+  public int purgeExpired() {
+    return byId.purgeExpired() + byEmail.purgeExpired();
+  }
+
+  public CacheStats idStats() {
+    return byId;
+  }
+
+  public CacheStats emailStats() {
+    return byEmail;
+  }
+
+  // negative entries only when negativeTtlMs > 0
+  private <K, V> void store(SegmentedLruCache<K, Optional<V>> cache, K key, V value, long stamp) {
+    if (value != null) cache.put(key, Optional.of(value), stamp);
+    else if (negativeTtlMs > 0) cache.put(key, Optional.empty(), stamp, negativeTtlMs);
+  }
+
+  // shallow: JsonObject.copy() rejects JDBC column values such as LocalDateTime; callers only replace values
+  private static JsonObject copy(JsonObject row) {
+    return new JsonObject(new LinkedHashMap<>(row.getMap()));
+  }
+
+  private static User copy(User u) {
+    return new User(u.getId(), u.getName(), u.getEmail(), u.getCreatedAt());
+  }
+}
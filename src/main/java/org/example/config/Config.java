@@ -2,6 +2,8 @@ package org.example.config;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 public class Config {
@@ -20,12 +22,110 @@ public class Config {
   }
 
   public int getServerPort() { return Integer.parseInt(prop("server.port", "8080")); }
+  /** WebVerticle instances sharing the port, each on its own event loop; 0 = one per available processor. */
+  public int getServerInstances() { return Integer.parseInt(prop("server.instances", "0")); }
+  /** Native epoll transport when available (Linux x86_64); NIO otherwise. The transport used is logged at startup. */
+  public boolean isServerNativeTransport() { return Boolean.parseBoolean(prop("server.nativeTransport", "true")); }
+  public boolean isServerTcpNoDelay() { return Boolean.parseBoolean(prop("server.tcpNoDelay", "true")); }
+  /** TCP_FASTOPEN; needs the native transport and net.ipv4.tcp_fastopen enabled on the host. */
+  public boolean isServerTcpFastOpen() { return Boolean.parseBoolean(prop("server.tcpFastOpen", "false")); }
+  /** SO_KEEPALIVE probes on accepted connections. */
+  public boolean isServerTcpKeepAlive() { return Boolean.parseBoolean(prop("server.tcpKeepAlive", "false")); }
+  /** Closes connections, including idle keep-alive ones, after this long without reads or writes; 0 = never. */
+  public int getServerIdleTimeoutSeconds() { return Integer.parseInt(prop("server.idleTimeoutSeconds", "60")); }
+  /** HTTP/2 over cleartext (h2c), by upgrade or prior knowledge; HTTP/1.1 clients are unaffected. */
+  public boolean isServerHttp2ClearText() { return Boolean.parseBoolean(prop("server.http2.clearText", "true")); }
+  /** Initial HTTP/2 flow-control window per stream. */
+  public int getServerHttp2StreamWindowBytes() { return Integer.parseInt(prop("server.http2.streamWindowBytes", "65535")); }
+  /** HTTP/2 flow-control window per connection; -1 = the protocol default (65535). */
+  public int getServerHttp2ConnectionWindowBytes() { return Integer.parseInt(prop("server.http2.connectionWindowBytes", "-1")); }
+  public long getServerHttp2MaxConcurrentStreams() { return Long.parseLong(prop("server.http2.maxConcurrentStreams", "100")); }
+  /** gzip/deflate of responses for clients that accept it; bodies below minBytes and already encoded ones are sent as is. */
+  public boolean isServerCompression() { return Boolean.parseBoolean(prop("server.compression.enabled", "true")); }
+  /** 1 (fastest) to 9 (smallest). */
+  public int getServerCompressionLevel() { return Integer.parseInt(prop("server.compression.level", "6")); }
+  public int getServerCompressionMinBytes() { return Integer.parseInt(prop("server.compression.minBytes", "1024")); }
 
   public String getJdbcUrl() { return prop("jdbc.url", "jdbc:mysql://localhost:3306/todoapp"); }
   public String getDbUser() { return prop("db.user", "exampleuser"); }
   public String getDbPass() { return prop("db.pass", "examplepass"); }
   public String getDbDriver() { return prop("db.driver", driverForUrl(getJdbcUrl())); }
   public int getDbPoolSize() { return Integer.parseInt(prop("db.pool.size", "10")); }
+  /** "jdbc" (blocking JDBC on the worker pool) or "reactive" (Vert.x reactive MySQL client). */
+  public String getDbBackend() { return prop("db.backend", "jdbc"); }
+  /** Where blocking JDBC calls run: "worker" (Vert.x worker pool) or "virtual" (one virtual thread per operation). */
+  public String getDbExecutor() { return prop("db.executor", "worker"); }
+  /** Rows read per round trip by streaming queries (see Database.stream). */
+  public int getDbStreamFetchSize() { return Integer.parseInt(prop("db.stream.fetchSize", "256")); }
+  /** Streams that may hold a connection at once; beyond that lists are read in one query (0 = no limit). */
+  public int getDbStreamMaxOpen() { return Integer.parseInt(prop("db.stream.maxOpen", "4")); }
+  /** A stream left paused by its consumer this long is closed, returning its connection (0 = never). */
+  public long getDbStreamStallTimeoutMs() { return Long.parseLong(prop("db.stream.stallTimeoutMs", "30000")); }
+  /** Group-commit batching of todo inserts: concurrent creates within the window are written as one JDBC batch. */
+  public boolean isDbBatchEnabled() { return Boolean.parseBoolean(prop("db.batch.enabled", "false")); }
+  public long getDbBatchWindowMs() { return Long.parseLong(prop("db.batch.windowMs", "2")); }
+  public int getDbBatchMaxSize() { return Integer.parseInt(prop("db.batch.maxSize", "64")); }
+  /** Comma-separated JDBC urls of read replicas (same user/password as the primary); empty to read from the primary. */
+  public List<String> getDbReplicaUrls() { return csv(prop("db.replica.urls", "")); }
+  /** "least-in-flight" or "round-robin". */
+  public String getDbReplicaStrategy() { return prop("db.replica.strategy", "least-in-flight"); }
+  /** How long a user's reads stay on the primary after that user wrote (read-your-writes). */
+  public long getDbReplicaStickyMs() { return Long.parseLong(prop("db.replica.stickyMs", "2000")); }
+  /** Comma-separated JDBC urls of todo shards; empty keeps todos in the main database. Only ever append to this list. */
+  public List<String> getDbShardUrls() { return csv(prop("db.shard.urls", "")); }
+  /** Number of shards (from the start of db.shard.urls) on the hash ring; 0 = all. Raised after a rebalance. */
+  public int getDbShardRingSize() { return Integer.parseInt(prop("db.shard.ringSize", "0")); }
+  public int getDbShardVirtualNodes() { return Integer.parseInt(prop("db.shard.virtualNodes", "64")); }
+  /** Unique per running instance (0-1023); part of every generated todo id in sharded mode. */
+  public int getDbShardNodeId() { return Integer.parseInt(prop("db.shard.nodeId", "0")); }
+  public String getDbShardLocations() { return prop("db.shard.locations", "classpath:db/shard"); }
+  /** How often each instance re-reads todo_shard_directory; writes are refused once it is three intervals old. */
+  public long getDbShardDirectoryRefreshMs() { return Long.parseLong(prop("db.shard.directoryRefreshMs", "1000")); }
+  /** Longer than any write on a shard takes: a move waits this long, plus the directory lease, before copying. */
+  public long getDbShardMoveGraceMs() { return Long.parseLong(prop("db.shard.moveGraceMs", "10000")); }
+  /** Admission control in front of the blocking executor (see Database): bounded in-flight count and wait queue. */
+  public boolean isDbBulkheadEnabled() { return Boolean.parseBoolean(prop("db.bulkhead.enabled", "true")); }
+  /** Upper bound of concurrent operations; keep it at or below the worker pool / connection pool size. */
+  public int getDbBulkheadMaxInFlight() { return Integer.parseInt(prop("db.bulkhead.maxInFlight", "20")); }
+  public int getDbBulkheadMinInFlight() { return Integer.parseInt(prop("db.bulkhead.minInFlight", "2")); }
+  public int getDbBulkheadMaxQueue() { return Integer.parseInt(prop("db.bulkhead.maxQueue", "200")); }
+  public long getDbBulkheadQueueTimeoutMs() { return Long.parseLong(prop("db.bulkhead.queueTimeoutMs", "1000")); }
+  /** Latency above which the in-flight limit is lowered (AIMD); 0 keeps the limit fixed at maxInFlight. */
+  public long getDbBulkheadTargetLatencyMs() { return Long.parseLong(prop("db.bulkhead.targetLatencyMs", "250")); }
+  /** Isolation level of Database.inTransaction: READ_COMMITTED, REPEATABLE_READ, SERIALIZABLE, ... or default (driver's). */
+  public String getDbTxIsolation() { return prop("db.tx.isolation", "default"); }
+  /** In-process cache of each user's todo list (GET /api/todos), updated by this instance's writes. */
+  public boolean isTodoCacheEnabled() { return Boolean.parseBoolean(prop("cache.todos.enabled", "true")); }
+  public long getTodoCacheMaxBytes() { return Long.parseLong(prop("cache.todos.maxBytes", "33554432")); }
+  /** Lists estimated above this are not cached. */
+  public long getTodoCacheMaxUserBytes() { return Long.parseLong(prop("cache.todos.maxUserBytes", "262144")); }
+  /** Bounds how stale a list can be when other instances write to the same database. */
+  public long getTodoCacheTtlMs() { return Long.parseLong(prop("cache.todos.ttlMs", "30000")); }
+  /** In-process cache of user lookups by id and email, including "not found" answers. */
+  public boolean isUserCacheEnabled() { return Boolean.parseBoolean(prop("cache.users.enabled", "true")); }
+  public int getUserCacheMaxEntries() { return Integer.parseInt(prop("cache.users.maxEntries", "10000")); }
+  /** Also how long a password hash may stay in memory after a login read it. */
+  public long getUserCacheTtlMs() { return Long.parseLong(prop("cache.users.ttlMs", "60000")); }
+  /** TTL of "not found" entries; 0 disables them. */
+  public long getUserCacheNegativeTtlMs() { return Long.parseLong(prop("cache.users.negativeTtlMs", "5000")); }
+  /** Encoded bodies of GET /api/todos and GET /api/users with ETags (If-None-Match answered with 304). */
+  public boolean isResponseCacheEnabled() { return Boolean.parseBoolean(prop("cache.responses.enabled", "true")); }
+  public long getResponseCacheMaxBytes() { return Long.parseLong(prop("cache.responses.maxBytes", "16777216")); }
+  public long getResponseCacheMaxEntryBytes() { return Long.parseLong(prop("cache.responses.maxEntryBytes", "262144")); }
+  public long getResponseCacheTtlMs() { return Long.parseLong(prop("cache.responses.ttlMs", "30000")); }
+  /** Most operations accepted by one POST /api/todos/batch; larger requests are rejected with 400. */
+  public int getTodoBatchMaxSize() { return Integer.parseInt(prop("todos.batch.maxSize", "100")); }
+  /** Cache-Control max-age of the /docs assets; they also carry an ETag for revalidation. */
+  public long getDocsMaxAgeSeconds() { return Long.parseLong(prop("docs.maxAgeSeconds", "86400")); }
+  public boolean isDbVirtualTracePinned() { return Boolean.parseBoolean(prop("db.virtual.tracePinned", "false")); }
+
+  private static List<String> csv(String value) {
+    List<String> items = new ArrayList<>();
+    for (String item : value.split(",")) {
+      if (!item.isBlank()) items.add(item.trim());
+    }
+    return items;
+  }
 
   private String driverForUrl(String url) {
     if (url.startsWith("jdbc:h2:")) return "org.h2.Driver";
@@ -36,6 +136,33 @@ public class Config {
 
   public String getJwtSecret() { return prop("jwt.secret", "dev-secret-change-me"); }
   public int getJwtExpMinutes() { return Integer.parseInt(prop("jwt.exp.minutes", "60")); }
+  /** Lifetime of refresh tokens; each is exchanged for a new one when used. */
+  public int getJwtRefreshDays() { return Integer.parseInt(prop("jwt.refresh.days", "30")); }
+  /** How often revocations made by other instances are picked up. */
+  public long getJwtRevocationRefreshMs() { return Long.parseLong(prop("jwt.revocation.refreshMs", "1000")); }
+  /** Each refresh re-reads revocations this far behind the latest one seen, to catch rows that committed late. */
+  public long getJwtRevocationRescanSeconds() { return Long.parseLong(prop("jwt.revocation.rescanSeconds", "60")); }
+  /** Revoked, unexpired access tokens the in-memory filter is sized for. */
+  public long getJwtRevocationExpected() { return Long.parseLong(prop("jwt.revocation.expected", "100000")); }
+  /** How often expired refresh tokens and revocations are deleted. */
+  public long getJwtTokenCleanupMs() { return Long.parseLong(prop("jwt.cleanupMs", "3600000")); }
+  /** bcrypt cost of new hashes; logins rehash passwords stored with another cost. */
+  public int getBcryptCost() { return Integer.parseInt(prop("auth.bcrypt.cost", "10")); }
+  /** Threads hashing and checking passwords; 0 = one per processor. */
+  public int getHasherThreads() { return Integer.parseInt(prop("auth.hasher.threads", "0")); }
+  /** Hashes waiting for a thread; beyond that registrations and logins get 503. */
+  public int getHasherMaxQueue() { return Integer.parseInt(prop("auth.hasher.maxQueue", "64")); }
+  /** Token buckets for login and registration per remote IP and per email; exhausted ones get 429. */
+  public boolean isAuthThrottleEnabled() { return Boolean.parseBoolean(prop("auth.throttle.enabled", "true")); }
+  public int getAuthThrottleIpBurst() { return Integer.parseInt(prop("auth.throttle.ip.burst", "20")); }
+  public double getAuthThrottleIpPerMinute() { return Double.parseDouble(prop("auth.throttle.ip.perMinute", "30")); }
+  public int getAuthThrottleEmailBurst() { return Integer.parseInt(prop("auth.throttle.email.burst", "5")); }
+  public double getAuthThrottleEmailPerMinute() { return Double.parseDouble(prop("auth.throttle.email.perMinute", "5")); }
+  /** Buckets kept per kind (IPs, emails); least recently used ones are dropped beyond that. */
+  public int getAuthThrottleMaxKeys() { return Integer.parseInt(prop("auth.throttle.maxKeys", "100000")); }
+  /** Caches verified bearer tokens until their exp, so reused tokens skip the HMAC and claim parsing. */
+  public boolean isTokenCacheEnabled() { return Boolean.parseBoolean(prop("jwt.cache.enabled", "true")); }
+  public int getTokenCacheMaxEntries() { return Integer.parseInt(prop("jwt.cache.maxEntries", "10000")); }
 
   public boolean isFlywayRepairOnStart() { return Boolean.parseBoolean(prop("flyway.repairOnStart", "false")); }
   public boolean isFlywayCleanOnStart() { return Boolean.parseBoolean(prop("flyway.cleanOnStart", "false")); }
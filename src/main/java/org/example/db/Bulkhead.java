@@ -0,0 +1,157 @@
+package org.example.db;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for database operations: at most {@code limit} run at once, up to {@code maxQueue} more wait
+ * (each for at most {@code queueTimeoutMs}), everything else fails fast with {@link DbOverloadedException}.
+ *
+ * The limit adapts to latency (AIMD): an operation slower than the target shrinks it by {@link #BACKOFF}, at most once
+ * per target interval so one burst of slow completions counts once; a fast one grows it by 1/limit, i.e. about one
+ * per limit's worth of fast operations. It stays between {@code minLimit} and {@code maxLimit}.
+ */
+final class Bulkhead {
+  private static final double BACKOFF = 0.9;
+
+  private final Vertx vertx;
+  private final int minLimit;
+  private final int maxLimit;
+  private final int maxQueue;
+  private final long queueTimeoutMs;
+  // 0 = fixed limit
+  private final long targetNanos;
+  private final long retryAfterSeconds;
+  private final ArrayDeque<Waiter<?>> queue = new ArrayDeque<>();
+  private final LongAdder rejected = new LongAdder();
+  private double limit;
+  private int inFlight;
+  private long lastDecrease;
+
+  Bulkhead(Vertx vertx, int minLimit, int maxLimit, int maxQueue, long queueTimeoutMs, long targetLatencyMs) {
+    this.vertx = vertx;
+    this.maxLimit = Math.max(1, maxLimit);
+    this.minLimit = Math.max(1, Math.min(minLimit, this.maxLimit));
+    this.maxQueue = Math.max(0, maxQueue);
+    this.queueTimeoutMs = Math.max(1, queueTimeoutMs);
+    this.targetNanos = Math.max(0, targetLatencyMs) * 1_000_000;
+    this.retryAfterSeconds = Math.max(1, (this.queueTimeoutMs + 999) / 1000);
+    this.limit = this.maxLimit;
+    this.lastDecrease = System.nanoTime();
+  }
+
+  /** Runs {@code task} once admitted; its future completes on the caller's context. */
+  <T> Future<T> submit(Supplier<Future<T>> task) {
+    Waiter<T> waiter;
+    synchronized (this) {
+      if (inFlight < (int) limit && queue.isEmpty()) {
+        inFlight++;
+        waiter = null;
+      } else if (queue.size() < maxQueue) {
+        waiter = new Waiter<>(task, vertx.getOrCreateContext());
+        queue.add(waiter);
+      } else {
+        rejected.increment();
+        return Future.failedFuture(new DbOverloadedException("database overloaded: " + inFlight + " running, "
+            + queue.size() + " queued", retryAfterSeconds));
+      }
+    }
+    if (waiter == null) return run(task);
+    waiter.timerId = vertx.setTimer(queueTimeoutMs, id -> expire(waiter));
+    return waiter.promise.future();
+  }
+
+  synchronized int limit() {
+    return (int) limit;
+  }
+
+  synchronized int inFlight() {
+    return inFlight;
+  }
+
+  synchronized int queued() {
+    return queue.size();
+  }
+
+  long rejected() {
+    return rejected.sum();
+  }
+
+  private <T> Future<T> run(Supplier<Future<T>> task) {
+    long start = System.nanoTime();
+    Future<T> result;
+    try {
+      result = task.get();
+    } catch (RuntimeException e) {
+      result = Future.failedFuture(e);
+    }
+    return result.onComplete(ar -> release(System.nanoTime() - start));
+  }
+
+  private void release(long nanos) {
+    List<Waiter<?>> admitted = new ArrayList<>(1);
+    synchronized (this) {
+      inFlight--;
+      adapt(nanos);
+      while (inFlight < (int) limit && !queue.isEmpty()) {
+        inFlight++;
+        admitted.add(queue.poll());
+      }
+    }
+    for (Waiter<?> w : admitted) {
+      vertx.cancelTimer(w.timerId);
+      w.context.runOnContext(v -> w.start());
+    }
+  }
+
+  // Called with the lock held
+  private void adapt(long nanos) {
+    if (targetNanos == 0) return;
+    if (nanos > targetNanos) {
+      long now = System.nanoTime();
+      if (now - lastDecrease >= targetNanos) {
+        limit = Math.max(minLimit, limit * BACKOFF);
+        lastDecrease = now;
+      }
+    } else if (limit < maxLimit) {
+      limit = Math.min(maxLimit, limit + 1.0 / limit);
+    }
+  }
+
+  private void expire(Waiter<?> waiter) {
+    int running;
+    synchronized (this) {
+      // already admitted: the timer lost the race against release()
+      if (!queue.remove(waiter)) return;
+      running = inFlight;
+    }
+    rejected.increment();
+    DbOverloadedException err = new DbOverloadedException("database overloaded: waited " + queueTimeoutMs
+        + " ms with " + running + " running", retryAfterSeconds);
+    waiter.context.runOnContext(v -> waiter.promise.fail(err));
+  }
+
+  private final class Waiter<T> {
+    final Supplier<Future<T>> task;
+    final Context context;
+    final Promise<T> promise = Promise.promise();
+    volatile long timerId = -1;
+
+    Waiter(Supplier<Future<T>> task, Context context) {
+      this.task = task;
+      this.context = context;
+    }
+
+    void start() {
+      run(task).onComplete(promise);
+    }
+  }
+}
@@ -1,8 +1,13 @@
 package org.example.db;
 
+import io.vertx.core.Context;
 import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.DatabaseException;
+import org.example.config.Config;
+import org.example.metrics.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,53 +15,217 @@ import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class Database {
   private static final Logger log = LoggerFactory.getLogger(Database.class);
   private final DataSource ds;
   private final Vertx vertx;
+  // null when blocking operations run on the Vert.x worker pool
+  private final ExecutorService virtualThreads;
+  private final int streamFetchSize;
+  private final int streamMaxOpen;
+  private final long streamStallTimeoutMs;
+  // streams holding (or about to hold) a connection, shared by all views
+  private final AtomicInteger openStreams;
+  private final long batchWindowMs;
+  private final int batchMaxSize;
+  private final ReplicaRouter router;
+  private final Metrics metrics;
+  // blocking operations submitted but not started yet, and currently running
+  private final LongAdder queued;
+  private final LongAdder running;
+  // null when db.bulkhead.enabled=false
+  private final Bulkhead bulkhead;
+  // Connection.TRANSACTION_* for inTransaction, TRANSACTION_NONE keeps the driver's default
+  private final int txIsolation;
+  // read-your-writes key of a forKey view, null for the root instance
+  private final Object key;
 
   public Database(DataSource ds, Vertx vertx) {
+    this(ds, vertx, new Config());
+  }
+
+  public Database(DataSource ds, Vertx vertx, Config config) {
+    this(ds, List.of(), vertx, config);
+  }
+
+  /**
+   * @param ds primary, used for all writes
+   * @param replicas read replicas for query/fetchOne/stream; empty to read from the primary
+   */
+  public Database(DataSource ds, List<DataSource> replicas, Vertx vertx, Config config) {
+    this(ds, replicas, vertx, config, new Metrics());
+  }
+
+  /** @param metrics receives the latency of every statement, keyed by its SQL */
+  public Database(DataSource ds, List<DataSource> replicas, Vertx vertx, Config config, Metrics metrics) {
     this.ds = ds;
     this.vertx = vertx;
+    this.virtualThreads = createExecutor(config);
+    this.streamFetchSize = config.getDbStreamFetchSize();
+    this.streamMaxOpen = config.getDbStreamMaxOpen();
+    this.streamStallTimeoutMs = config.getDbStreamStallTimeoutMs();
+    this.openStreams = new AtomicInteger();
+    this.batchWindowMs = config.getDbBatchWindowMs();
+    this.batchMaxSize = config.getDbBatchMaxSize();
+    this.router = new ReplicaRouter(ds, replicas, config.getDbReplicaStrategy(), config.getDbReplicaStickyMs());
+    this.metrics = metrics;
+    this.queued = new LongAdder();
+    this.running = new LongAdder();
+    this.bulkhead = config.isDbBulkheadEnabled()
+        ? new Bulkhead(vertx, config.getDbBulkheadMinInFlight(), config.getDbBulkheadMaxInFlight(), config.getDbBulkheadMaxQueue(),
+            config.getDbBulkheadQueueTimeoutMs(), config.getDbBulkheadTargetLatencyMs())
+        : null;
+    this.txIsolation = isolationLevel(config.getDbTxIsolation());
+    this.key = null;
+    if (router.hasReplicas()) {
+      log.info("Database read replicas: {} (strategy={}, stickyMs={})", replicas.size(), config.getDbReplicaStrategy(), config.getDbReplicaStickyMs());
+    }
+  }
+
+  /** View sharing all resources of {@code base}, see {@link #forKey}. */
+  protected Database(Database base, Object key) {
+    this.ds = base.ds;
+    this.vertx = base.vertx;
+    this.virtualThreads = base.virtualThreads;
+    this.streamFetchSize = base.streamFetchSize;
+    this.streamMaxOpen = base.streamMaxOpen;
+    this.streamStallTimeoutMs = base.streamStallTimeoutMs;
+    this.openStreams = base.openStreams;
+    this.batchWindowMs = base.batchWindowMs;
+    this.batchMaxSize = base.batchMaxSize;
+    this.router = base.router;
+    this.metrics = base.metrics;
+    this.queued = base.queued;
+    this.running = base.running;
+    this.bulkhead = base.bulkhead;
+    this.txIsolation = base.txIsolation;
+    this.key = key;
+  }
+
+  private static int isolationLevel(String name) {
+    switch (name.trim().toUpperCase().replace('-', '_')) {
+      case "READ_UNCOMMITTED": return Connection.TRANSACTION_READ_UNCOMMITTED;
+      case "READ_COMMITTED": return Connection.TRANSACTION_READ_COMMITTED;
+      case "REPEATABLE_READ": return Connection.TRANSACTION_REPEATABLE_READ;
+      case "SERIALIZABLE": return Connection.TRANSACTION_SERIALIZABLE;
+      case "":
+      case "DEFAULT": return Connection.TRANSACTION_NONE;
+      default:
+        log.warn("Unknown db.tx.isolation '{}', using the driver default", name);
+        return Connection.TRANSACTION_NONE;
+    }
+  }
+
+  private static ExecutorService createExecutor(Config config) {
+    String mode = config.getDbExecutor();
+    if ("virtual".equalsIgnoreCase(mode)) {
+      if (config.isDbVirtualTracePinned()) {
+        // Read by the JDK when the first virtual thread parks; prints a stack trace whenever a carrier is pinned
+        // (e.g. by synchronized blocks inside the MySQL driver)
+        System.setProperty("jdk.tracePinnedThreads", "short");
+      }
+      log.info("Database executor: virtual threads (tracePinned={})", config.isDbVirtualTracePinned());
+      return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("db-vt-", 0).factory());
+    }
+    if (!"worker".equalsIgnoreCase(mode)) log.warn("Unknown db.executor '{}', using the Vert.x worker pool", mode);
+    return null;
+  }
+
+  /** Stops the virtual thread executor, if any. The DataSources are owned (and closed) by the caller. */
+  public void close() {
+    if (virtualThreads != null) virtualThreads.shutdown();
+  }
+
+  /**
+   * Database whose reads see the writes made through it (or any other view with an equal key): after a write,
+   * reads for the same key go to the primary for db.replica.stickyMs, then back to the replicas.
+   * Typically keyed by user id. Without replicas this returns {@code this}.
+   */
+  public Database forKey(Object key) {
+    if (key == null || !hasReplicas()) return this;
+    return new Database(this, key);
+  }
+
+  /** Starts the read-your-writes window for this view's key; the write methods call this themselves. */
+  public void markWritten() {
+    router.wrote(key);
+  }
+
+  /** Blocking operations waiting for a worker (or virtual) thread. */
+  public long queuedOperations() {
+    return queued.sum();
+  }
+
+  /** Blocking operations currently running on a worker (or virtual) thread. */
+  public long runningOperations() {
+    return running.sum();
+  }
+
+  /** Current admission limit of the bulkhead (adapts to latency); -1 when disabled. */
+  public int admissionLimit() {
+    return bulkhead != null ? bulkhead.limit() : -1;
+  }
+
+  /** Operations waiting for admission by the bulkhead. */
+  public int admissionQueued() {
+    return bulkhead != null ? bulkhead.queued() : 0;
+  }
+
+  /** Operations rejected with {@link DbOverloadedException} since start. */
+  public long rejectedOperations() {
+    return bulkhead != null ? bulkhead.rejected() : 0;
+  }
+
+  protected boolean hasReplicas() {
+    return router.hasReplicas();
   }
 
   public Future<List<JsonObject>> query(String sql, Object... params) {
+    return query(sql, JSON_ROWS, params);
+  }
+
+  public Future<JsonObject> fetchOne(String sql, Object... params) {
+    return query(sql, params).map(list -> list.isEmpty() ? null : list.get(0));
+  }
+
+  /**
+   * Runs a query and maps each row with the given mapper. Column positions are resolved once per statement.
+   * The reactive backend overrides this too (see {@link ReactiveDatabase}).
+   */
+  public <T> Future<List<T>> query(String sql, RowMapper<T> mapper, Object... params) {
     return executeBlocking(() -> {
-      long start = System.currentTimeMillis();
-      try (Connection c = ds.getConnection(); PreparedStatement ps = prepare(c, sql, params); ResultSet rs = ps.executeQuery()) {
-        List<JsonObject> out = new ArrayList<>();
-        ResultSetMetaData md = rs.getMetaData();
-        int cols = md.getColumnCount();
-        while (rs.next()) {
-          JsonObject obj = new JsonObject();
-          for (int i = 1; i <= cols; i++) {
-            String name = md.getColumnLabel(i);
-            Object val = rs.getObject(i);
-            // Normalize column labels to lower-case to provide consistent keys (e.g. id, name, password_hash)
-            if (name != null) name = name.toLowerCase();
-            obj.put(name, val);
-          }
-          out.add(obj);
-        }
-        long took = System.currentTimeMillis() - start;
+      long start = System.nanoTime();
+      try (ReplicaRouter.Lease lease = router.forRead(key); Connection c = lease.dataSource().getConnection();
+           PreparedStatement ps = prepare(c, sql, params); ResultSet rs = ps.executeQuery()) {
+        List<T> out = new ArrayList<>();
+        RowMapper.Reader<T> reader = mapper.bind(rs.getMetaData());
+        while (rs.next()) out.add(reader.read(rs));
+        long took = timed(sql, start, true);
         log.info("DB query ok ({} ms): sql='{}' params={}", took, compact(sql), summarize(params));
         return out;
       } catch (Exception e) {
-        long took = System.currentTimeMillis() - start;
+        long took = timed(sql, start, false);
         log.warn("DB query fail ({} ms): sql='{}' params={} err={}", took, compact(sql), summarize(params), e.toString());
         throw e;
       }
     });
   }
 
-  public Future<JsonObject> fetchOne(String sql, Object... params) {
-    return query(sql, params).map(list -> list.isEmpty() ? null : list.get(0));
+  public <T> Future<T> fetchOne(String sql, RowMapper<T> mapper, Object... params) {
+    return query(sql, mapper, params).map(list -> list.isEmpty() ? null : list.get(0));
   }
 
   public Future<Long> insert(String sql, Object... params) {
     return executeBlocking(() -> {
-      long start = System.currentTimeMillis();
+      long start = System.nanoTime();
       try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
         bind(ps, params);
         int updated = ps.executeUpdate();
@@ -64,48 +233,289 @@ public class Database {
         try (ResultSet keys = ps.getGeneratedKeys()) {
           if (keys.next()) id = keys.getLong(1);
         }
-        long took = System.currentTimeMillis() - start;
+        long took = timed(sql, start, true);
         log.info("DB insert ok ({} ms): sql='{}' params={} rows={} id={}", took, compact(sql), summarize(params), updated, id);
+        markWritten();
         return id;
       } catch (Exception e) {
-        long took = System.currentTimeMillis() - start;
+        long took = timed(sql, start, false);
         log.warn("DB insert fail ({} ms): sql='{}' params={} err={}", took, compact(sql), summarize(params), e.toString());
         throw e;
       }
     });
   }
 
+  /**
+   * Inserts a row and builds the created value locally from the generated key, so a create costs one round trip
+   * instead of insert + re-select. Everything the caller returns must therefore be bound as a parameter
+   * (e.g. created_at computed in the application rather than CURRENT_TIMESTAMP()).
+   */
+  public <T> Future<T> insertRow(String sql, Function<Long, T> build, Object... params) {
+    return insert(sql, params).map(build);
+  }
+
   public Future<Integer> executeUpdate(String sql, Object... params) {
     return executeBlocking(() -> {
-      long start = System.currentTimeMillis();
+      long start = System.nanoTime();
       try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
         bind(ps, params);
         int updated = ps.executeUpdate();
-        long took = System.currentTimeMillis() - start;
+        long took = timed(sql, start, true);
         log.info("DB update ok ({} ms): sql='{}' params={} rows={}", took, compact(sql), summarize(params), updated);
+        markWritten();
         return updated;
       } catch (Exception e) {
-        long took = System.currentTimeMillis() - start;
+        long took = timed(sql, start, false);
         log.warn("DB update fail ({} ms): sql='{}' params={} err={}", took, compact(sql), summarize(params), e.toString());
         throw e;
       }
     });
   }
 
+  /**
+   * Inserts all rows as one JDBC batch in a single transaction and returns the generated keys in row order.
+   * Either every row is committed or none is. For MySQL, rewriteBatchedStatements=true in the JDBC url turns
+   * the batch into a single multi-row INSERT.
+   */
+  public Future<List<Long>> insertBatch(String sql, List<Object[]> rows) {
+    return executeBlocking(() -> {
+      long start = System.nanoTime();
+      try (Connection c = ds.getConnection()) {
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try (PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+          for (Object[] params : rows) {
+            bind(ps, params);
+            ps.addBatch();
+          }
+          ps.executeBatch();
+          List<Long> ids = new ArrayList<>(rows.size());
+          try (ResultSet keys = ps.getGeneratedKeys()) {
+            while (keys.next()) ids.add(keys.getLong(1));
+          }
+          if (ids.size() != rows.size()) throw new SQLException("expected " + rows.size() + " generated keys, got " + ids.size());
+          c.commit();
+          long took = timed(sql, start, true);
+          log.info("DB batch insert ok ({} ms): sql='{}' rows={}", took, compact(sql), rows.size());
+          markWritten();
+          return ids;
+        } catch (Exception e) {
+          c.rollback();
+          throw e;
+        } finally {
+          c.setAutoCommit(autoCommit);
+        }
+      } catch (Exception e) {
+        long took = timed(sql, start, false);
+        log.warn("DB batch insert fail ({} ms): sql='{}' rows={} err={}", took, compact(sql), rows.size(), e.toString());
+        throw e;
+      }
+    });
+  }
+
+  /**
+   * Runs one statement for every parameter row as a JDBC batch in a single transaction; either all rows are
+   * applied or none. Returns the update count per row.
+   */
+  public Future<int[]> executeBatch(String sql, List<Object[]> rows) {
+    return executeBlocking(() -> {
+      long start = System.nanoTime();
+      try (Connection c = ds.getConnection()) {
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+          for (Object[] params : rows) {
+            bind(ps, params);
+            ps.addBatch();
+          }
+          int[] counts = rows.isEmpty() ? new int[0] : ps.executeBatch();
+          c.commit();
+          long took = timed(sql, start, true);
+          log.info("DB batch ok ({} ms): sql='{}' rows={}", took, compact(sql), rows.size());
+          markWritten();
+          return counts;
+        } catch (Exception e) {
+          c.rollback();
+          throw e;
+        } finally {
+          c.setAutoCommit(autoCommit);
+        }
+      } catch (Exception e) {
+        long took = timed(sql, start, false);
+        log.warn("DB batch fail ({} ms): sql='{}' rows={} err={}", took, compact(sql), rows.size(), e.toString());
+        throw e;
+      }
+    });
+  }
+
+  /**
+   * Runs {@code work} in one transaction on one pinned primary connection, with the db.tx.isolation level.
+   * Commits when the returned future succeeds and rolls back when it fails (or {@code work} throws); the result
+   * is the work's result, or its failure. A failed commit fails the result.
+   */
+  public <T> Future<T> inTransaction(Function<Transaction, Future<T>> work) {
+    return inTransaction(txIsolation, work);
+  }
+
+  /**
+   * @param isolation a {@link Connection} TRANSACTION_* level; TRANSACTION_NONE keeps the connection's level.
+   * The whole transaction counts as one operation for the bulkhead, as it holds one connection throughout.
+   * Always runs over JDBC, also with the reactive backend.
+   */
+  public <T> Future<T> inTransaction(int isolation, Function<Transaction, Future<T>> work) {
+    return admit(() -> dispatch(() -> Transaction.begin(this, isolation)).compose(tx -> {
+      Future<T> result;
+      try {
+        result = work.apply(tx);
+      } catch (RuntimeException e) {
+        result = Future.failedFuture(e);
+      }
+      return result.transform(ar -> {
+        if (ar.failed()) return tx.rollback().transform(r -> Future.<T>failedFuture(ar.cause()));
+        return tx.commit().map(v -> {
+          if (tx.wrote()) markWritten();
+          return ar.result();
+        });
+      });
+    }));
+  }
+
+  /** Group-commit batcher for one INSERT statement, using this database's db.batch.* settings. */
+  public InsertBatcher batcher(String sql) {
+    return new InsertBatcher(this, sql, batchWindowMs, batchMaxSize);
+  }
+
+  // Normalize column labels to lower-case to provide consistent keys (e.g. id, name, password_hash)
+  static final RowMapper<JsonObject> JSON_ROWS = md -> {
+    int cols = md.getColumnCount();
+    String[] names = new String[cols];
+    for (int i = 0; i < cols; i++) {
+      String name = md.getColumnLabel(i + 1);
+      names[i] = name != null ? name.toLowerCase() : null;
+    }
+    return rs -> {
+      JsonObject obj = new JsonObject();
+      for (int i = 0; i < cols; i++) obj.put(names[i], rs.getObject(i + 1));
+      return obj;
+    };
+  };
+
+  /**
+   * Streams the rows of a query instead of collecting them, reading {@code db.stream.fetchSize} rows per round trip
+   * to the blocking executor. The stream honours pause/resume, so a slow consumer stops the reads; one paused for
+   * db.stream.stallTimeoutMs fails and returns its connection.
+   * For MySQL the JDBC url needs useCursorFetch=true, otherwise the driver buffers the whole result.
+   */
+  public <T> RowStream<T> stream(String sql, RowMapper<T> mapper, Object... params) {
+    return stream(streamFetchSize, sql, mapper, params);
+  }
+
+  public <T> RowStream<T> stream(int fetchSize, String sql, RowMapper<T> mapper, Object... params) {
+    openStreams.incrementAndGet();
+    return new RowStream<>(this, vertx, sql, mapper, fetchSize, streamStallTimeoutMs, params);
+  }
+
+  /**
+   * Like {@link #stream}, but null when db.stream.maxOpen streams are open already: each holds a pool connection
+   * for as long as its consumer takes, so the caller should collect the rows with {@link #query} instead.
+   */
+  public <T> RowStream<T> tryStream(String sql, RowMapper<T> mapper, Object... params) {
+    while (true) {
+      int open = openStreams.get();
+      if (streamMaxOpen > 0 && open >= streamMaxOpen) return null;
+      if (openStreams.compareAndSet(open, open + 1)) break;
+    }
+    return new RowStream<>(this, vertx, sql, mapper, streamFetchSize, streamStallTimeoutMs, params);
+  }
+
+  /** Streams created and not closed yet. */
+  public int openStreams() {
+    return openStreams.get();
+  }
+
+  // Called once by every stream when it releases its cursor
+  void streamClosed() {
+    openStreams.decrementAndGet();
+  }
+
+  Vertx vertx() {
+    return vertx;
+  }
+
+  DataSource dataSource() {
+    return ds;
+  }
+
+  /** Lease on the DataSource for a read by this view (a replica unless the key is within its write window). */
+  ReplicaRouter.Lease readSource() {
+    return router.forRead(key);
+  }
+
   private PreparedStatement prepare(Connection c, String sql, Object... params) throws SQLException {
     PreparedStatement ps = c.prepareStatement(sql);
     bind(ps, params);
     return ps;
   }
 
-  private void bind(PreparedStatement ps, Object... params) throws SQLException {
+  /** True when the failure (or one of its causes) is a unique/primary key violation, for JDBC and the reactive client. */
+  public static boolean isDuplicateKey(Throwable err) {
+    for (Throwable t = err; t != null; t = t.getCause()) {
+      if (t instanceof SQLException) {
+        SQLException e = (SQLException) t;
+        // 1062 = MySQL ER_DUP_ENTRY, 23505 = standard unique violation (H2, Postgres)
+        if (e.getErrorCode() == 1062 || "23505".equals(e.getSQLState())) return true;
+      } else if (t instanceof DatabaseException) {
+        DatabaseException e = (DatabaseException) t;
+        if (e.getErrorCode() == 1062 || "23505".equals(e.getSqlState())) return true;
+      }
+      if (t.getCause() == t) break;
+    }
+    return false;
+  }
+
+  static void bind(PreparedStatement ps, Object... params) throws SQLException {
     if (params == null) return;
     for (int i = 0; i < params.length; i++) {
       ps.setObject(i + 1, params[i]);
     }
   }
 
-  private <T> Future<T> executeBlocking(BlockingOperation<T> op) {
+  /** Records the statement latency and returns the elapsed milliseconds for the log line. */
+  protected long timed(String sql, long startNanos, boolean ok) {
+    long nanos = System.nanoTime() - startNanos;
+    metrics.recordStatement(sql, nanos, ok);
+    return nanos / 1_000_000;
+  }
+
+  /**
+   * Runs {@code op} once the bulkhead admits it; fails with {@link DbOverloadedException} when it does not.
+   * Backends that do not go through {@link #executeBlocking} wrap their statements in this.
+   */
+  protected <T> Future<T> admit(Supplier<Future<T>> op) {
+    return bulkhead != null ? bulkhead.submit(op) : op.get();
+  }
+
+  <T> Future<T> executeBlocking(BlockingOperation<T> blocking) {
+    return admit(() -> dispatch(blocking));
+  }
+
+  /** Bypasses the bulkhead; for work that frees resources (closing a stream's cursor) and must never be rejected. */
+  <T> Future<T> executeUnbounded(BlockingOperation<T> blocking) {
+    return dispatch(blocking);
+  }
+
+  private <T> Future<T> dispatch(BlockingOperation<T> blocking) {
+    queued.increment();
+    BlockingOperation<T> op = () -> {
+      queued.decrement();
+      running.increment();
+      try {
+        return blocking.get();
+      } finally {
+        running.decrement();
+      }
+    };
+    if (virtualThreads != null) return executeOnVirtualThread(op);
     return vertx.executeBlocking(promise -> {
       try {
         promise.complete(op.get());
@@ -115,11 +525,31 @@ public class Database {
     }, false);
   }
 
-  private interface BlockingOperation<T> {
+  private <T> Future<T> executeOnVirtualThread(BlockingOperation<T> op) {
+    // Complete on the caller's context so callbacks keep running on its event loop
+    Context ctx = vertx.getOrCreateContext();
+    Promise<T> promise = Promise.promise();
+    try {
+      virtualThreads.execute(() -> {
+        try {
+          T result = op.get();
+          ctx.runOnContext(v -> promise.complete(result));
+        } catch (Exception e) {
+          ctx.runOnContext(v -> promise.fail(e));
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      queued.decrement();
+      promise.fail(e);
+    }
+    return promise.future();
+  }
+
+  interface BlockingOperation<T> {
     T get() throws Exception;
   }
 
-  private static String summarize(Object[] params) {
+  static String summarize(Object[] params) {
     if (params == null) return "[]";
     StringBuilder sb = new StringBuilder("[");
     for (int i = 0; i < params.length; i++) {
@@ -134,7 +564,7 @@ public class Database {
     return sb.toString();
   }
 
-  private static String compact(String sql) {
+  static String compact(String sql) {
     return sql == null ? null : sql.replaceAll("\n+", " ").trim();
   }
 }
@@ -0,0 +1,20 @@
+package org.example.db;
+
+/**
+ * The database rejected an operation without running it because too many are in flight or queued
+ * (see db.bulkhead.*), or, with sharded todos, because the user's todos are being moved (see TodoShards).
+ * Callers should answer 503 and ask the client to retry after {@link #getRetryAfterSeconds()}.
+ */
+public class DbOverloadedException extends RuntimeException {
+  private final long retryAfterSeconds;
+
+  public DbOverloadedException(String message, long retryAfterSeconds) {
+    // thrown under load: skip the stack trace, the message says all there is to say
+    super(message, null, false, false);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
@@ -0,0 +1,39 @@
+package org.example.db;
+
+/**
+ * Time-ordered 63-bit ids for rows that cannot use AUTO_INCREMENT because the table is spread over several
+ * databases: 41 bits of milliseconds since 2024-01-01, 10 bits node id, 12 bits sequence.
+ * Ids are unique across shards as long as every running instance has its own node id (db.shard.nodeId).
+ *
+ * If the clock goes backwards the generator keeps counting from the last timestamp it used instead of waiting.
+ */
+public final class IdGenerator {
+  static final long EPOCH_MS = 1704067200000L; // 2024-01-01T00:00:00Z
+  private static final int NODE_BITS = 10;
+  private static final int SEQUENCE_BITS = 12;
+  private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+  private final long node;
+  private long lastMs = -1;
+  private long sequence;
+
+  public IdGenerator(int nodeId) {
+    if (nodeId < 0 || nodeId >= (1 << NODE_BITS)) {
+      throw new IllegalArgumentException("node id must be between 0 and " + ((1 << NODE_BITS) - 1) + ", got " + nodeId);
+    }
+    this.node = nodeId;
+  }
+
+  public synchronized long next() {
+    long now = System.currentTimeMillis() - EPOCH_MS;
+    if (now > lastMs) {
+      lastMs = now;
+      sequence = 0;
+    } else if (++sequence > MAX_SEQUENCE) {
+      // sequence exhausted for this millisecond (or clock went back): borrow the next one
+      lastMs++;
+      sequence = 0;
+    }
+    return (lastMs << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+  }
+}
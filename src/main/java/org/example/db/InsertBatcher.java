@@ -0,0 +1,123 @@
+package org.example.db;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Group commit for a single INSERT statement. Concurrent {@link #add} calls are collected for up to
+ * {@code windowMs} (or until {@code maxBatchSize} rows are waiting) and written with
+ * {@link Database#insertBatch} in one transaction. Every caller still gets its own generated id.
+ *
+ * If a batch fails, its rows are retried one after the other so that only the offending caller sees the error.
+ * A batch the bulkhead rejects is not retried: every caller gets the {@link DbOverloadedException}.
+ * Safe to use from several event loops; each future completes on the context of its caller.
+ */
+public class InsertBatcher {
+  private static final Logger log = LoggerFactory.getLogger(InsertBatcher.class);
+
+  private final Database db;
+  private final Vertx vertx;
+  private final String sql;
+  private final long windowMs;
+  private final int maxBatchSize;
+
+  private List<Entry> pending = new ArrayList<>();
+  private long timerId = -1;
+
+  InsertBatcher(Database db, String sql, long windowMs, int maxBatchSize) {
+    this.db = db;
+    this.vertx = db.vertx();
+    this.sql = sql;
+    this.windowMs = Math.max(1, windowMs);
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+  }
+
+  public Future<Long> add(Object... params) {
+    Entry entry = new Entry(params, vertx.getOrCreateContext());
+    List<Entry> full = null;
+    synchronized (this) {
+      pending.add(entry);
+      if (pending.size() >= maxBatchSize) {
+        full = takePending();
+      } else if (timerId < 0) {
+        timerId = vertx.setTimer(windowMs, id -> flushOnTimer(id));
+      }
+    }
+    if (full != null) flush(full);
+    return entry.promise.future();
+  }
+
+  private void flushOnTimer(long id) {
+    List<Entry> batch;
+    synchronized (this) {
+      if (timerId != id) return; // batch was already flushed because it was full
+      batch = takePending();
+    }
+    if (!batch.isEmpty()) flush(batch);
+  }
+
+  // Caller holds the lock
+  private List<Entry> takePending() {
+    List<Entry> batch = pending;
+    pending = new ArrayList<>();
+    if (timerId >= 0) vertx.cancelTimer(timerId);
+    timerId = -1;
+    return batch;
+  }
+
+  private void flush(List<Entry> batch) {
+    if (batch.size() == 1) {
+      insertOne(batch.get(0));
+      return;
+    }
+    List<Object[]> rows = new ArrayList<>(batch.size());
+    for (Entry e : batch) rows.add(e.params);
+    db.insertBatch(sql, rows).onComplete(ar -> {
+      if (ar.succeeded()) {
+        List<Long> ids = ar.result();
+        for (int i = 0; i < batch.size(); i++) batch.get(i).complete(ids.get(i));
+      } else if (ar.cause() instanceof DbOverloadedException) {
+        // shed by the bulkhead before it ran: retrying row by row would only add load where there is too much already
+        log.warn("Batch of {} inserts rejected: {}", batch.size(), ar.cause().getMessage());
+        for (Entry e : batch) e.fail(ar.cause());
+      } else {
+        log.warn("Batch of {} inserts failed ({}), retrying rows individually", batch.size(), ar.cause().toString());
+        Future<Void> chain = Future.succeededFuture();
+        for (Entry e : batch) chain = chain.eventually(() -> insertOne(e));
+      }
+    });
+  }
+
+  private Future<Long> insertOne(Entry e) {
+    return db.insert(sql, e.params).onComplete(ar -> {
+      if (ar.succeeded()) e.complete(ar.result());
+      else e.fail(ar.cause());
+    });
+  }
+
+  private static final class Entry {
+    final Object[] params;
+    final Context context;
+    final Promise<Long> promise = Promise.promise();
+
+    Entry(Object[] params, Context context) {
+      this.params = params;
+      this.context = context;
+    }
+
+    void complete(Long id) {
+      context.runOnContext(v -> promise.complete(id));
+    }
+
+    void fail(Throwable err) {
+      context.runOnContext(v -> promise.fail(err));
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package org.example.db;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mysqlclient.MySQLBuilder;
+import io.vertx.mysqlclient.MySQLClient;
+import io.vertx.mysqlclient.MySQLConnectOptions;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+import org.example.config.Config;
+import org.example.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Database backend that runs query/fetchOne (JsonObject and {@link RowMapper} variants), insert and executeUpdate
+ * on the Vert.x reactive MySQL client. Typed queries need a mapper with a {@link TupleMapper} (see
+ * {@link RowMapper#withTuples}); others run over JDBC.
+ * Statements are sent over the client's own non-blocking connections, so no worker thread and no
+ * JDBC connection is held while MySQL is working. The JDBC DataSource is still required for Flyway
+ * and is kept for any JDBC-specific operations of the base class.
+ * Streams, transactions and insert batches stay on JDBC.
+ * The reactive pool only talks to the primary: with read replicas configured, queries go over JDBC so they can
+ * reach them.
+ */
+public class ReactiveDatabase extends Database {
+  private static final Logger log = LoggerFactory.getLogger(ReactiveDatabase.class);
+  private final Pool pool;
+
+  public ReactiveDatabase(DataSource ds, Vertx vertx, Config config, Pool pool) {
+    super(ds, vertx, config);
+    this.pool = pool;
+  }
+
+  public ReactiveDatabase(DataSource ds, List<DataSource> replicas, Vertx vertx, Config config, Pool pool) {
+    super(ds, replicas, vertx, config);
+    this.pool = pool;
+  }
+
+  public ReactiveDatabase(DataSource ds, List<DataSource> replicas, Vertx vertx, Config config, Metrics metrics, Pool pool) {
+    super(ds, replicas, vertx, config, metrics);
+    this.pool = pool;
+  }
+
+  private ReactiveDatabase(ReactiveDatabase base, Object key) {
+    super(base, key);
+    this.pool = base.pool;
+  }
+
+  @Override
+  public Database forKey(Object key) {
+    if (key == null || !hasReplicas()) return this;
+    return new ReactiveDatabase(this, key);
+  }
+
+  public static Pool createPool(Vertx vertx, MySQLConnectOptions connectOptions, int poolSize) {
+    return MySQLBuilder.pool()
+        .with(new PoolOptions().setMaxSize(poolSize))
+        .connectingTo(connectOptions)
+        .using(vertx)
+        .build();
+  }
+
+  /**
+   * Translate a JDBC MySQL URL (jdbc:mysql://host:port/db?params) into reactive client options.
+   * JDBC driver parameters after '?' are not understood by the reactive client and are ignored.
+   */
+  public static MySQLConnectOptions connectOptions(String jdbcUrl, String user, String pass) {
+    if (jdbcUrl == null || !jdbcUrl.startsWith("jdbc:mysql://")) {
+      throw new IllegalArgumentException("reactive backend requires a jdbc:mysql:// url, got: " + jdbcUrl);
+    }
+    String rest = jdbcUrl.substring("jdbc:mysql://".length());
+    int q = rest.indexOf('?');
+    if (q >= 0) rest = rest.substring(0, q);
+    int slash = rest.indexOf('/');
+    String hostPort = slash >= 0 ? rest.substring(0, slash) : rest;
+    String database = slash >= 0 ? rest.substring(slash + 1) : "";
+
+    MySQLConnectOptions opts = new MySQLConnectOptions().setUser(user).setPassword(pass);
+    int colon = hostPort.lastIndexOf(':');
+    if (colon >= 0) {
+      opts.setHost(hostPort.substring(0, colon));
+      opts.setPort(Integer.parseInt(hostPort.substring(colon + 1)));
+    } else if (!hostPort.isBlank()) {
+      opts.setHost(hostPort);
+    }
+    if (!database.isBlank()) opts.setDatabase(database);
+    return opts;
+  }
+
+  @Override
+  public Future<List<JsonObject>> query(String sql, Object... params) {
+    if (hasReplicas()) return super.query(sql, params);
+    return admit(() -> {
+      long start = System.nanoTime();
+      return pool.preparedQuery(sql).execute(tuple(params)).map(rows -> {
+        List<JsonObject> out = new ArrayList<>(rows.size());
+        int cols = rows.columnsNames().size();
+        List<String> names = new ArrayList<>(cols);
+        // Normalize column labels to lower-case, same as the JDBC backend
+        for (String n : rows.columnsNames()) names.add(n != null ? n.toLowerCase() : null);
+        for (Row row : rows) {
+          JsonObject obj = new JsonObject();
+          for (int i = 0; i < cols; i++) obj.put(names.get(i), jdbcValue(row.getValue(i)));
+          out.add(obj);
+        }
+        log.info("DB query ok ({} ms): sql='{}' params={}", timed(sql, start, true), compact(sql), summarize(params));
+        return out;
+      }).onFailure(e -> log.warn("DB query fail ({} ms): sql='{}' params={} err={}", timed(sql, start, false), compact(sql), summarize(params), e.toString()));
+    });
+  }
+
+  @Override
+  public <T> Future<List<T>> query(String sql, RowMapper<T> mapper, Object... params) {
+    TupleMapper<T> tuples = mapper.tuples();
+    if (tuples == null || hasReplicas()) return super.query(sql, mapper, params);
+    return admit(() -> {
+      long start = System.nanoTime();
+      return pool.preparedQuery(sql).execute(tuple(params)).compose(rows -> {
+        TupleMapper.Reader<T> reader;
+        try {
+          reader = tuples.bind(rows.columnsNames());
+        } catch (SQLException e) {
+          return Future.failedFuture(e);
+        }
+        List<T> out = new ArrayList<>(rows.size());
+        for (Row row : rows) out.add(reader.read(row));
+        log.info("DB query ok ({} ms): sql='{}' params={}", timed(sql, start, true), compact(sql), summarize(params));
+        return Future.succeededFuture(out);
+      }).onFailure(e -> log.warn("DB query fail ({} ms): sql='{}' params={} err={}", timed(sql, start, false), compact(sql), summarize(params), e.toString()));
+    });
+  }
+
+  @Override
+  public Future<Long> insert(String sql, Object... params) {
+    return admit(() -> {
+      long start = System.nanoTime();
+      return pool.preparedQuery(sql).execute(tuple(params)).map(rows -> {
+        Long id = lastInsertId(rows);
+        log.info("DB insert ok ({} ms): sql='{}' params={} rows={} id={}", timed(sql, start, true), compact(sql), summarize(params), rows.rowCount(), id);
+        markWritten();
+        return id;
+      }).onFailure(e -> log.warn("DB insert fail ({} ms): sql='{}' params={} err={}", timed(sql, start, false), compact(sql), summarize(params), e.toString()));
+    });
+  }
+
+  @Override
+  public Future<Integer> executeUpdate(String sql, Object... params) {
+    return admit(() -> {
+      long start = System.nanoTime();
+      return pool.preparedQuery(sql).execute(tuple(params)).map(rows -> {
+        int updated = rows.rowCount();
+        log.info("DB update ok ({} ms): sql='{}' params={} rows={}", timed(sql, start, true), compact(sql), summarize(params), updated);
+        markWritten();
+        return updated;
+      }).onFailure(e -> log.warn("DB update fail ({} ms): sql='{}' params={} err={}", timed(sql, start, false), compact(sql), summarize(params), e.toString()));
+    });
+  }
+
+  private static Long lastInsertId(RowSet<Row> rows) {
+    Long id = rows.property(MySQLClient.LAST_INSERTED_ID);
+    // MySQL reports 0 when the statement did not generate a key
+    return id != null && id != 0L ? id : null;
+  }
+
+  // Temporal values as JDBC getObject returns them: JsonObject cannot encode java.time types, it can encode these
+  static Object jdbcValue(Object v) {
+    if (v instanceof LocalDateTime t) return Timestamp.valueOf(t);
+    if (v instanceof LocalDate d) return java.sql.Date.valueOf(d);
+    if (v instanceof LocalTime t) return Time.valueOf(t);
+    return v;
+  }
+
+  private static Tuple tuple(Object[] params) {
+    return params == null || params.length == 0 ? Tuple.tuple() : Tuple.wrap(params);
+  }
+}
@@ -0,0 +1,111 @@
+package org.example.db;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the DataSource for a read. Reads go to one of the replicas ("round-robin", or "least-in-flight" which
+ * prefers the replica with the fewest running statements), except for keys that wrote within the last
+ * {@code stickyMs}: those read from the primary so they see their own writes despite replication lag.
+ *
+ * The write window is tracked per process, so stickiness only holds while a key's requests hit the same instance.
+ */
+final class ReplicaRouter {
+  private static final int PRUNE_THRESHOLD = 10_000;
+
+  private final DataSource primary;
+  private final List<DataSource> replicas;
+  private final AtomicInteger[] inFlight;
+  private final boolean leastInFlight;
+  private final long stickyMs;
+  private final AtomicInteger next = new AtomicInteger();
+  // key -> time (ms) until which its reads stay on the primary
+  private final ConcurrentHashMap<Object, Long> sticky = new ConcurrentHashMap<>();
+  private final AtomicBoolean pruning = new AtomicBoolean();
+
+  ReplicaRouter(DataSource primary, List<DataSource> replicas, String strategy, long stickyMs) {
+    this.primary = primary;
+    this.replicas = List.copyOf(replicas);
+    this.inFlight = new AtomicInteger[this.replicas.size()];
+    for (int i = 0; i < inFlight.length; i++) inFlight[i] = new AtomicInteger();
+    this.leastInFlight = !"round-robin".equalsIgnoreCase(strategy);
+    this.stickyMs = Math.max(0, stickyMs);
+  }
+
+  boolean hasReplicas() {
+    return !replicas.isEmpty();
+  }
+
+  /** Lease on the DataSource a read for {@code key} (may be null) should use; close it when the statement is done. */
+  Lease forRead(Object key) {
+    if (replicas.isEmpty() || isSticky(key)) return new Lease(primary, null);
+    int i = leastInFlight ? leastBusy() : Math.floorMod(next.getAndIncrement(), replicas.size());
+    inFlight[i].incrementAndGet();
+    return new Lease(replicas.get(i), inFlight[i]);
+  }
+
+  /** Starts the read-your-writes window for {@code key}. */
+  void wrote(Object key) {
+    if (key == null || replicas.isEmpty() || stickyMs == 0) return;
+    long now = System.currentTimeMillis();
+    sticky.put(key, now + stickyMs);
+    if (sticky.size() > PRUNE_THRESHOLD && pruning.compareAndSet(false, true)) {
+      try {
+        sticky.values().removeIf(until -> until <= now);
+      } finally {
+        pruning.set(false);
+      }
+    }
+  }
+
+  private boolean isSticky(Object key) {
+    if (key == null) return false;
+    Long until = sticky.get(key);
+    if (until == null) return false;
+    if (until > System.currentTimeMillis()) return true;
+    sticky.remove(key, until);
+    return false;
+  }
+
+  private int leastBusy() {
+    // start at a rotating offset so ties are spread over the replicas
+    int n = replicas.size();
+    int start = Math.floorMod(next.getAndIncrement(), n);
+    int best = start;
+    int bestCount = inFlight[start].get();
+    for (int k = 1; k < n && bestCount > 0; k++) {
+      int i = (start + k) % n;
+      int count = inFlight[i].get();
+      if (count < bestCount) {
+        best = i;
+        bestCount = count;
+      }
+    }
+    return best;
+  }
+
+  static final class Lease implements AutoCloseable {
+    private final DataSource dataSource;
+    private final AtomicInteger counter;
+    private boolean closed;
+
+    private Lease(DataSource dataSource, AtomicInteger counter) {
+      this.dataSource = dataSource;
+      this.counter = counter;
+    }
+
+    DataSource dataSource() {
+      return dataSource;
+    }
+
+    @Override
+    public synchronized void close() {
+      if (closed) return;
+      closed = true;
+      if (counter != null) counter.decrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package org.example.db;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Maps JDBC rows straight into a typed value, without building a JsonObject per row.
+ * {@link #bind(ResultSetMetaData)} is called once per statement to resolve column positions;
+ * the returned {@link Reader} is then applied to every row.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+  Reader<T> bind(ResultSetMetaData md) throws SQLException;
+
+  @FunctionalInterface
+  interface Reader<T> {
+    T read(ResultSet rs) throws SQLException;
+  }
+
+  /** Mapper for reactive client rows, or null when only JDBC rows are read (the reactive backend then uses JDBC). */
+  default TupleMapper<T> tuples() {
+    return null;
+  }
+
+  /** {@code jdbc}, which also maps reactive client rows with {@code tuples}. */
+  static <T> RowMapper<T> withTuples(RowMapper<T> jdbc, TupleMapper<T> tuples) {
+    return new RowMapper<>() {
+      @Override
+      public Reader<T> bind(ResultSetMetaData md) throws SQLException {
+        return jdbc.bind(md);
+      }
+
+      @Override
+      public TupleMapper<T> tuples() {
+        return tuples;
+      }
+    };
+  }
+
+  /** Mapper for readers that access columns by position and need no metadata. */
+  static <T> RowMapper<T> of(Reader<T> reader) {
+    return md -> reader;
+  }
+
+  /** 1-based position of the column with the given label (case-insensitive), or 0 when absent. */
+  static int column(ResultSetMetaData md, String label) throws SQLException {
+    for (int i = 1, n = md.getColumnCount(); i <= n; i++) {
+      if (label.equalsIgnoreCase(md.getColumnLabel(i))) return i;
+    }
+    return 0;
+  }
+
+  /** Like {@link #column} but fails the statement when the column is missing. */
+  static int requiredColumn(ResultSetMetaData md, String label) throws SQLException {
+    int col = column(md, label);
+    if (col == 0) throw new SQLException("column not found in result: " + label);
+    return col;
+  }
+
+  /** Nullable BIGINT read without boxing through getObject. */
+  static Long nullableLong(ResultSet rs, int col) throws SQLException {
+    long v = rs.getLong(col);
+    return rs.wasNull() ? null : v;
+  }
+
+  /**
+   * TIMESTAMP column as an Instant, treating the stored wall-clock time as UTC
+   * (the columns are TIMESTAMP without time zone).
+   */
+  static Instant utcInstant(ResultSet rs, int col) throws SQLException {
+    Timestamp ts = rs.getTimestamp(col);
+    if (ts == null) return null;
+    LocalDateTime ldt = ts.toLocalDateTime();
+    return ldt.toInstant(ZoneOffset.UTC);
+  }
+}
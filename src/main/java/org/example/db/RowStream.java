@@ -0,0 +1,281 @@
+package org.example.db;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.streams.ReadStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Query result delivered as a {@link ReadStream}. Rows are read from an open JDBC cursor in chunks of
+ * {@code fetchSize} on the blocking executor, and the next chunk is only read once the consumer has asked
+ * for more (pause/resume/fetch), so at most one chunk is held in memory regardless of the result size.
+ *
+ * The JDBC connection stays checked out until the last row was read, the query failed or {@link #close()} was called.
+ * A consumer that keeps the stream paused for {@code stallTimeoutMs} fails it with a {@link TimeoutException}, which
+ * returns the connection.
+ */
+public class RowStream<T> implements ReadStream<T> {
+  private static final Logger log = LoggerFactory.getLogger(RowStream.class);
+
+  private final Database db;
+  private final Context context;
+  private final String sql;
+  private final Object[] params;
+  private final RowMapper<T> mapper;
+  private final int fetchSize;
+  private final long stallTimeoutMs;
+
+  // Owned by the blocking executor; only one chunk read runs at a time
+  private Connection conn;
+  private PreparedStatement ps;
+  private ResultSet rs;
+  private RowMapper.Reader<T> reader;
+  private ReplicaRouter.Lease lease;
+  // counted in Database.openStreams until released
+  private boolean counted = true;
+
+  // Event-loop state
+  private final ArrayDeque<T> pending = new ArrayDeque<>();
+  private Handler<T> handler;
+  private Handler<Void> endHandler;
+  private Handler<Throwable> exceptionHandler;
+  private long demand = Long.MAX_VALUE;
+  private boolean reading;
+  private boolean exhausted;
+  private boolean closed;
+  // the first chunk read has been submitted
+  private boolean opened;
+  private long rows;
+  private long start;
+  // timer failing the stream while paused, -1 when not armed
+  private long stallTimer = -1;
+
+  RowStream(Database db, Vertx vertx, String sql, RowMapper<T> mapper, int fetchSize, long stallTimeoutMs, Object... params) {
+    this.db = db;
+    this.context = vertx.getOrCreateContext();
+    this.sql = sql;
+    this.mapper = mapper;
+    this.fetchSize = Math.max(1, fetchSize);
+    this.stallTimeoutMs = stallTimeoutMs;
+    this.params = params;
+    this.start = System.nanoTime();
+  }
+
+  @Override
+  public synchronized RowStream<T> exceptionHandler(Handler<Throwable> handler) {
+    this.exceptionHandler = handler;
+    return this;
+  }
+
+  @Override
+  public RowStream<T> handler(Handler<T> handler) {
+    synchronized (this) {
+      this.handler = handler;
+    }
+    if (handler != null) context.runOnContext(v -> drain());
+    else close();
+    return this;
+  }
+
+  @Override
+  public synchronized RowStream<T> pause() {
+    demand = 0L;
+    if (stallTimeoutMs > 0 && stallTimer < 0 && !closed) stallTimer = context.owner().setTimer(stallTimeoutMs, id -> stalled());
+    return this;
+  }
+
+  @Override
+  public RowStream<T> resume() {
+    return fetch(Long.MAX_VALUE);
+  }
+
+  @Override
+  public RowStream<T> fetch(long amount) {
+    synchronized (this) {
+      demand = Long.MAX_VALUE - demand <= amount ? Long.MAX_VALUE : demand + amount;
+      if (stallTimer >= 0) {
+        context.owner().cancelTimer(stallTimer);
+        stallTimer = -1;
+      }
+    }
+    context.runOnContext(v -> drain());
+    return this;
+  }
+
+  @Override
+  public synchronized RowStream<T> endHandler(Handler<Void> endHandler) {
+    this.endHandler = endHandler;
+    return this;
+  }
+
+  /** Stops reading and releases the cursor and connection. Safe to call more than once. */
+  public Future<Void> close() {
+    synchronized (this) {
+      if (closed) return Future.succeededFuture();
+      closed = true;
+      pending.clear();
+      // a chunk read in progress releases the resources itself once it sees the stream is closed
+      if (reading) return Future.succeededFuture();
+    }
+    return releaseAsync();
+  }
+
+  // Runs on the context: hands buffered rows to the handler while there is demand, then reads the next chunk
+  private void drain() {
+    while (true) {
+      T row;
+      Handler<T> h;
+      synchronized (this) {
+        if (closed || handler == null || demand == 0L) return;
+        row = pending.poll();
+        if (row == null) break;
+        if (demand != Long.MAX_VALUE) demand--;
+        h = handler;
+      }
+      h.handle(row);
+    }
+    Handler<Void> end = null;
+    synchronized (this) {
+      if (exhausted) {
+        if (!closed) {
+          closed = true;
+          end = endHandler;
+        }
+      } else if (!reading) {
+        reading = true;
+        readChunk();
+      }
+    }
+    if (end != null) {
+      log.info("DB stream ok ({} ms): sql='{}' params={} rows={}", db.timed(sql, start, true), Database.compact(sql), Database.summarize(params), rows);
+      end.handle(null);
+    }
+  }
+
+  private void readChunk() {
+    boolean first;
+    synchronized (this) {
+      first = !opened;
+      opened = true;
+    }
+    // only opening the cursor goes through the bulkhead: later chunks already hold a connection and must be
+    // able to finish to give it back
+    Database.BlockingOperation<Chunk<T>> read = () -> {
+      if (isClosed()) {
+        release();
+        return null;
+      }
+      if (rs == null) open();
+      List<T> chunk = new ArrayList<>(fetchSize);
+      boolean more = true;
+      while (chunk.size() < fetchSize && (more = rs.next())) chunk.add(reader.read(rs));
+      if (!more || isClosed()) release();
+      return new Chunk<>(chunk, !more);
+    };
+    (first ? db.executeBlocking(read) : db.executeUnbounded(read)).onComplete(ar -> {
+      if (ar.failed()) {
+        fail(ar.cause());
+        return;
+      }
+      Chunk<T> chunk = ar.result();
+      synchronized (this) {
+        reading = false;
+        if (chunk == null) return;
+        if (closed) {
+          // closed while the chunk was being read: make sure the cursor is released
+          releaseAsync();
+          return;
+        }
+        pending.addAll(chunk.rows);
+        rows += chunk.rows.size();
+        exhausted = chunk.last;
+      }
+      drain();
+    });
+  }
+
+  private void open() throws Exception {
+    try {
+      lease = db.readSource();
+      conn = lease.dataSource().getConnection();
+      ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      ps.setFetchSize(fetchSize);
+      Database.bind(ps, params);
+      rs = ps.executeQuery();
+      reader = mapper.bind(rs.getMetaData());
+    } catch (Exception e) {
+      release();
+      throw e;
+    }
+  }
+
+  private void stalled() {
+    synchronized (this) {
+      stallTimer = -1;
+      // once exhausted the cursor is released already
+      if (closed || exhausted || demand != 0L) return;
+    }
+    fail(new TimeoutException("stream paused by its consumer for more than " + stallTimeoutMs + " ms"));
+  }
+
+  private void fail(Throwable err) {
+    Handler<Throwable> h;
+    synchronized (this) {
+      reading = false;
+      if (closed) return;
+      closed = true;
+      pending.clear();
+      h = exceptionHandler;
+    }
+    log.warn("DB stream fail ({} ms): sql='{}' params={} err={}", db.timed(sql, start, false), Database.compact(sql), Database.summarize(params), err.toString());
+    releaseAsync();
+    if (h != null) h.handle(err);
+  }
+
+  private Future<Void> releaseAsync() {
+    return db.executeUnbounded(() -> {
+      release();
+      return null;
+    });
+  }
+
+  private synchronized boolean isClosed() {
+    return closed;
+  }
+
+  private synchronized void release() {
+    try { if (rs != null) rs.close(); } catch (Exception ignored) {}
+    try { if (ps != null) ps.close(); } catch (Exception ignored) {}
+    try { if (conn != null) conn.close(); } catch (Exception ignored) {}
+    if (lease != null) lease.close();
+    if (counted) {
+      counted = false;
+      db.streamClosed();
+    }
+    rs = null;
+    ps = null;
+    conn = null;
+    lease = null;
+  }
+
+  private static final class Chunk<T> {
+    final List<T> rows;
+    final boolean last;
+
+    Chunk(List<T> rows, boolean last) {
+      this.rows = rows;
+      this.last = last;
+    }
+  }
+}
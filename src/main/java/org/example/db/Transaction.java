@@ -0,0 +1,214 @@
+package org.example.db;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One JDBC connection on the primary, pinned for the duration of {@link Database#inTransaction}. Statements run
+ * one after the other in the order they were called, also when the caller does not wait for the previous one.
+ * The handle is only valid inside the function passed to inTransaction; afterwards every call fails.
+ */
+public final class Transaction {
+  private static final Logger log = LoggerFactory.getLogger(Transaction.class);
+  private final Database db;
+  private final Connection conn;
+  private final boolean autoCommit;
+  private final int isolation;
+  // completes when the last submitted statement finished; guarded by this
+  private Future<?> tail = Future.succeededFuture();
+  private boolean finished;
+  private volatile boolean wrote;
+
+  private Transaction(Database db, Connection conn, boolean autoCommit, int isolation) {
+    this.db = db;
+    this.conn = conn;
+    this.autoCommit = autoCommit;
+    this.isolation = isolation;
+  }
+
+  // Blocking: checks a connection out and starts the transaction
+  static Transaction begin(Database db, int isolation) throws SQLException {
+    Connection c = db.dataSource().getConnection();
+    try {
+      boolean autoCommit = c.getAutoCommit();
+      int previous = c.getTransactionIsolation();
+      if (isolation != Connection.TRANSACTION_NONE && isolation != previous) c.setTransactionIsolation(isolation);
+      c.setAutoCommit(false);
+      return new Transaction(db, c, autoCommit, previous);
+    } catch (SQLException | RuntimeException e) {
+      c.close();
+      throw e;
+    }
+  }
+
+  public Future<List<JsonObject>> query(String sql, Object... params) {
+    return query(sql, Database.JSON_ROWS, params);
+  }
+
+  public <T> Future<List<T>> query(String sql, RowMapper<T> mapper, Object... params) {
+    return run("query", sql, params, () -> {
+      try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        Database.bind(ps, params);
+        try (ResultSet rs = ps.executeQuery()) {
+          List<T> out = new ArrayList<>();
+          RowMapper.Reader<T> reader = mapper.bind(rs.getMetaData());
+          while (rs.next()) out.add(reader.read(rs));
+          return out;
+        }
+      }
+    });
+  }
+
+  public Future<JsonObject> fetchOne(String sql, Object... params) {
+    return query(sql, params).map(list -> list.isEmpty() ? null : list.get(0));
+  }
+
+  public <T> Future<T> fetchOne(String sql, RowMapper<T> mapper, Object... params) {
+    return query(sql, mapper, params).map(list -> list.isEmpty() ? null : list.get(0));
+  }
+
+  public Future<Long> insert(String sql, Object... params) {
+    return run("insert", sql, params, () -> {
+      wrote = true;
+      try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        Database.bind(ps, params);
+        ps.executeUpdate();
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+          return keys.next() ? keys.getLong(1) : null;
+        }
+      }
+    });
+  }
+
+  /** See {@link Database#insertRow}. */
+  public <T> Future<T> insertRow(String sql, Function<Long, T> build, Object... params) {
+    return insert(sql, params).map(build);
+  }
+
+  public Future<Integer> executeUpdate(String sql, Object... params) {
+    return run("update", sql, params, () -> {
+      wrote = true;
+      try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        Database.bind(ps, params);
+        return ps.executeUpdate();
+      }
+    });
+  }
+
+  /** Runs the statement once per parameter row as one JDBC batch; returns the update count per row. */
+  public Future<int[]> executeBatch(String sql, List<Object[]> rows) {
+    return run("batch", sql, null, () -> {
+      wrote = true;
+      if (rows.isEmpty()) return new int[0];
+      try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        for (Object[] params : rows) {
+          Database.bind(ps, params);
+          ps.addBatch();
+        }
+        return ps.executeBatch();
+      }
+    });
+  }
+
+  /** Inserts all rows as one JDBC batch and returns the generated keys in row order (see {@link Database#insertBatch}). */
+  public Future<List<Long>> insertBatch(String sql, List<Object[]> rows) {
+    return run("batch insert", sql, null, () -> {
+      wrote = true;
+      if (rows.isEmpty()) return new ArrayList<>();
+      try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        for (Object[] params : rows) {
+          Database.bind(ps, params);
+          ps.addBatch();
+        }
+        ps.executeBatch();
+        List<Long> ids = new ArrayList<>(rows.size());
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+          while (keys.next()) ids.add(keys.getLong(1));
+        }
+        if (ids.size() != rows.size()) throw new SQLException("expected " + rows.size() + " generated keys, got " + ids.size());
+        return ids;
+      }
+    });
+  }
+
+  boolean wrote() {
+    return wrote;
+  }
+
+  /** Commits once every submitted statement finished, then returns the connection to the pool. */
+  Future<Void> commit() {
+    return end(true);
+  }
+
+  Future<Void> rollback() {
+    return end(false);
+  }
+
+  private Future<Void> end(boolean commit) {
+    Future<?> previous;
+    synchronized (this) {
+      if (finished) return Future.succeededFuture();
+      finished = true;
+      previous = tail;
+    }
+    // statements still running are part of the transaction: wait for them, whatever their outcome
+    return previous.transform(ar -> db.executeUnbounded(() -> {
+      long start = System.nanoTime();
+      try {
+        if (commit) conn.commit();
+        else conn.rollback();
+        log.info("DB tx {} ({} ms)", commit ? "commit" : "rollback", (System.nanoTime() - start) / 1_000_000);
+        return null;
+      } catch (SQLException e) {
+        log.warn("DB tx {} fail ({} ms): err={}", commit ? "commit" : "rollback", (System.nanoTime() - start) / 1_000_000, e.toString());
+        if (commit) {
+          try { conn.rollback(); } catch (SQLException ignored) {}
+        }
+        throw e;
+      } finally {
+        close();
+      }
+    }));
+  }
+
+  private void close() {
+    try {
+      conn.setAutoCommit(autoCommit);
+      if (conn.getTransactionIsolation() != isolation) conn.setTransactionIsolation(isolation);
+    } catch (SQLException ignored) {
+      // the pool resets or evicts the connection itself
+    }
+    try { conn.close(); } catch (SQLException ignored) {}
+  }
+
+  private <R> Future<R> run(String kind, String sql, Object[] params, Database.BlockingOperation<R> op) {
+    synchronized (this) {
+      if (finished) return Future.failedFuture(new IllegalStateException("transaction already finished"));
+      // serialized: JDBC connections do not support concurrent statements
+      Future<R> next = tail.transform(ar -> db.executeUnbounded(() -> {
+        long start = System.nanoTime();
+        try {
+          R result = op.get();
+          log.info("DB tx {} ok ({} ms): sql='{}' params={}", kind, db.timed(sql, start, true), Database.compact(sql), Database.summarize(params));
+          return result;
+        } catch (Exception e) {
+          log.warn("DB tx {} fail ({} ms): sql='{}' params={} err={}", kind, db.timed(sql, start, false), Database.compact(sql), Database.summarize(params), e.toString());
+          throw e;
+        }
+      }));
+      tail = next;
+      return next;
+    }
+  }
+}
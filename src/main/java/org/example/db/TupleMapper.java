@@ -0,0 +1,58 @@
+package org.example.db;
+
+import io.vertx.sqlclient.Tuple;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Reactive client counterpart of {@link RowMapper}: maps Vert.x SQL client rows straight into a typed value.
+ * {@link #bind(List)} is called once per statement with the column names to resolve positions (0-based);
+ * the returned {@link Reader} then reads every row by index. Attach one to a RowMapper with {@link RowMapper#withTuples}.
+ */
+@FunctionalInterface
+public interface TupleMapper<T> {
+  Reader<T> bind(List<String> columns) throws SQLException;
+
+  @FunctionalInterface
+  interface Reader<T> {
+    T read(Tuple row);
+  }
+
+  /** 0-based position of the column with the given name (case-insensitive), or -1 when absent. */
+  static int column(List<String> columns, String label) {
+    for (int i = 0, n = columns.size(); i < n; i++) {
+      if (label.equalsIgnoreCase(columns.get(i))) return i;
+    }
+    return -1;
+  }
+
+  /** Like {@link #column} but fails the statement when the column is missing. */
+  static int requiredColumn(List<String> columns, String label) throws SQLException {
+    int col = column(columns, label);
+    if (col < 0) throw new SQLException("column not found in result: " + label);
+    return col;
+  }
+
+  /** MySQL BOOLEAN is TINYINT(1), which the client returns as a number; NULL reads as false like JDBC getBoolean. */
+  static boolean bool(Tuple row, int col) {
+    Object v = row.getValue(col);
+    return v instanceof Number n ? n.longValue() != 0 : Boolean.TRUE.equals(v);
+  }
+
+  /** TIMESTAMP column as an Instant, treating the stored wall-clock time as UTC (see {@link RowMapper#utcInstant}). */
+  static Instant utcInstant(Tuple row, int col) {
+    LocalDateTime ldt = row.getLocalDateTime(col);
+    return ldt != null ? ldt.toInstant(ZoneOffset.UTC) : null;
+  }
+
+  /** TIMESTAMP column as an Instant in the JVM time zone, as JDBC getTimestamp reads it. */
+  static Instant localInstant(Tuple row, int col) {
+    LocalDateTime ldt = row.getLocalDateTime(col);
+    return ldt != null ? ldt.atZone(ZoneId.systemDefault()).toInstant() : null;
+  }
+}
@@ -1,6 +1,8 @@
 package org.example.domain;
 
 import io.vertx.core.json.JsonObject;
+import org.example.db.RowMapper;
+import org.example.db.TupleMapper;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -14,6 +16,51 @@ public class Todo {
   private String title;
   private boolean completed;
   private Instant createdAt;
+  // bumped by every update of the row; a new row has version 1
+  private long version = 1;
+
+  /**
+   * Reads id, user_id, title, completed, created_at and (when selected) version columns directly from the ResultSet,
+   * or from the reactive client's rows by index.
+   */
+  public static final RowMapper<Todo> MAPPER = RowMapper.withTuples(md -> {
+    int id = RowMapper.requiredColumn(md, "id");
+    int userId = RowMapper.requiredColumn(md, "user_id");
+    int title = RowMapper.requiredColumn(md, "title");
+    int completed = RowMapper.requiredColumn(md, "completed");
+    int createdAt = RowMapper.requiredColumn(md, "created_at");
+    int version = RowMapper.column(md, "version");
+    return rs -> new Todo(
+        RowMapper.nullableLong(rs, id),
+        RowMapper.nullableLong(rs, userId),
+        rs.getString(title),
+        rs.getBoolean(completed),
+        RowMapper.utcInstant(rs, createdAt),
+        version != 0 ? rs.getLong(version) : 1);
+  }, columns -> {
+    int id = TupleMapper.requiredColumn(columns, "id");
+    int userId = TupleMapper.requiredColumn(columns, "user_id");
+    int title = TupleMapper.requiredColumn(columns, "title");
+    int completed = TupleMapper.requiredColumn(columns, "completed");
+    int createdAt = TupleMapper.requiredColumn(columns, "created_at");
+    int version = TupleMapper.column(columns, "version");
+    return row -> {
+      Long v = version >= 0 ? row.getLong(version) : null;
+      return new Todo(row.getLong(id), row.getLong(userId), row.getString(title), TupleMapper.bool(row, completed),
+          TupleMapper.utcInstant(row, createdAt), v != null ? v : 1);
+    };
+  });
+
+  public Todo() {}
+
+  public Todo(Long id, Long userId, String title, boolean completed, Instant createdAt) {
+    this(id, userId, title, completed, createdAt, 1);
+  }
+
+  public Todo(Long id, Long userId, String title, boolean completed, Instant createdAt, long version) {
+    this.id = id; this.userId = userId; this.title = title; this.completed = completed; this.createdAt = createdAt;
+    this.version = version;
+  }
 
   public static Todo fromRow(JsonObject row) {
     Todo t = new Todo();
@@ -24,6 +71,8 @@ public class Todo {
     t.completed = comp instanceof Boolean ? (Boolean) comp : (comp != null && Integer.valueOf(comp.toString()) != 0);
     Object ca = row.getValue("CREATED_AT") != null ? row.getValue("CREATED_AT") : row.getValue("created_at");
     t.createdAt = parseInstantSafely(ca);
+    Long version = row.getLong("VERSION") != null ? row.getLong("VERSION") : row.getLong("version");
+    if (version != null) t.version = version;
     return t;
   }
 
@@ -58,7 +107,8 @@ public class Todo {
         .put("user_id", userId)
         .put("title", title)
         .put("completed", completed)
-        .put("created_at", createdAt != null ? createdAt.toString() : null);
+        .put("created_at", createdAt != null ? createdAt.toString() : null)
+        .put("version", version);
   }
 
   // getters
@@ -67,4 +117,10 @@ public class Todo {
   public String getTitle() { return title; }
   public boolean isCompleted() { return completed; }
   public Instant getCreatedAt() { return createdAt; }
+  public long getVersion() { return version; }
+
+  /** The version as an HTTP entity tag, sent in ETag and expected in If-Match. */
+  public String etag() { return etag(version); }
+
+  public static String etag(long version) { return "\"" + version + "\""; }
 }
@@ -1,7 +1,10 @@
 package org.example.domain;
 
 import io.vertx.core.json.JsonObject;
+import org.example.db.RowMapper;
+import org.example.db.TupleMapper;
 
+import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -12,6 +15,24 @@ public class User {
   private String email;
   private Instant createdAt;
 
+  /** Reads id, name, email and created_at columns directly from the ResultSet, or from the reactive client's rows by index. */
+  public static final RowMapper<User> MAPPER = RowMapper.withTuples(md -> {
+    int id = RowMapper.requiredColumn(md, "id");
+    int name = RowMapper.requiredColumn(md, "name");
+    int email = RowMapper.requiredColumn(md, "email");
+    int createdAt = RowMapper.requiredColumn(md, "created_at");
+    return rs -> {
+      Timestamp ts = rs.getTimestamp(createdAt);
+      return new User(RowMapper.nullableLong(rs, id), rs.getString(name), rs.getString(email), ts != null ? ts.toInstant() : null);
+    };
+  }, columns -> {
+    int id = TupleMapper.requiredColumn(columns, "id");
+    int name = TupleMapper.requiredColumn(columns, "name");
+    int email = TupleMapper.requiredColumn(columns, "email");
+    int createdAt = TupleMapper.requiredColumn(columns, "created_at");
+    return row -> new User(row.getLong(id), row.getString(name), row.getString(email), TupleMapper.localInstant(row, createdAt));
+  });
+
   public User() {}
 
   public User(Long id, String name, String email, Instant createdAt) {
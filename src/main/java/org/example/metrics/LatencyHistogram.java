@@ -0,0 +1,59 @@
+package org.example.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency distribution since start. {@link #record} is wait-free (HdrHistogram {@link Recorder} plus LongAdders),
+ * so it can be called from any thread on the hot path; only {@link #snapshot()} takes a lock, to fold the
+ * recorder's interval histogram into the running total.
+ */
+public final class LatencyHistogram {
+  /** Quantiles reported by {@link Snapshot}. */
+  public static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+  // 1 us .. 10 min with 2 significant digits (1% error, ~20 KB per histogram); slower values are clamped
+  private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+  private final Recorder recorder = new Recorder(1, MAX_MICROS, 2);
+  private final Histogram total = new Histogram(1, MAX_MICROS, 2);
+  private final LongAdder sumNanos = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private Histogram interval;
+
+  public void record(long nanos) {
+    long micros = Math.max(1, Math.min(MAX_MICROS, nanos / 1_000));
+    recorder.recordValue(micros);
+    sumNanos.add(nanos);
+  }
+
+  public void recordError() {
+    errors.increment();
+  }
+
+  public synchronized Snapshot snapshot() {
+    interval = recorder.getIntervalHistogram(interval);
+    total.add(interval);
+    double[] values = new double[QUANTILES.length];
+    for (int i = 0; i < QUANTILES.length; i++) values[i] = total.getValueAtPercentile(QUANTILES[i] * 100) / 1e6;
+    return new Snapshot(total.getTotalCount(), sumNanos.sum() / 1e9, errors.sum(), values);
+  }
+
+  /** Cumulative values since start; latencies in seconds. */
+  public static final class Snapshot {
+    public final long count;
+    public final double sumSeconds;
+    public final long errors;
+    /** Latency at each of {@link #QUANTILES}. */
+    public final double[] quantiles;
+
+    Snapshot(long count, double sumSeconds, long errors, double[] quantiles) {
+      this.count = count;
+      this.sumSeconds = sumSeconds;
+      this.errors = errors;
+      this.quantiles = quantiles;
+    }
+  }
+}
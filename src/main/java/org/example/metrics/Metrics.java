@@ -0,0 +1,212 @@
+package org.example.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Application metrics rendered in the Prometheus text format by {@link #scrape()}:
+ * latency summaries per SQL statement and per HTTP route, event-loop lag and registered gauges
+ * (Hikari pools, database executor queue).
+ *
+ * Recording never blocks: histograms are looked up in a ConcurrentHashMap and record wait-free.
+ */
+public class Metrics {
+  // bounds the number of label values when callers pass unexpected input (e.g. generated SQL)
+  private static final int MAX_SERIES = 500;
+  private static final String OTHER = "other";
+
+  private final Map<String, LatencyHistogram> statements = new ConcurrentHashMap<>();
+  // raw SQL -> shape, so the hot path does a map lookup instead of a regex
+  private final Map<String, String> shapes = new ConcurrentHashMap<>();
+  private final Map<String, LatencyHistogram> requests = new ConcurrentHashMap<>();
+  private final LatencyHistogram eventLoopLag = new LatencyHistogram();
+  private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+  /** Records one SQL statement; {@code sql} is the statement text with ? placeholders, so it already is the shape. */
+  public void recordStatement(String sql, long nanos, boolean ok) {
+    String shape = sql == null ? OTHER : shapes.get(sql);
+    if (shape == null) shape = shapes.size() < MAX_SERIES ? shapes.computeIfAbsent(sql, Metrics::shape) : OTHER;
+    LatencyHistogram h = series(statements, shape);
+    h.record(nanos);
+    if (!ok) h.recordError();
+  }
+
+  /** Records one HTTP request; {@code route} is the route pattern (e.g. /api/todos/:id), not the request path. */
+  public void recordRequest(String method, String route, int status, long nanos) {
+    series(requests, method + ' ' + route + ' ' + status).record(nanos);
+  }
+
+  public void gauge(String name, String help, String labels, DoubleSupplier value) {
+    gauges.add(new Gauge(name, help, labels, value));
+  }
+
+  /** Active/idle/pending/total connections of a Hikari pool, labelled with {@code pool}. */
+  public void registerPool(String pool, HikariDataSource ds) {
+    String labels = "pool=\"" + escape(pool) + "\"";
+    gauge("hikari_connections_active", "Connections in use", labels, () -> pool(ds, HikariPoolMXBean::getActiveConnections));
+    gauge("hikari_connections_idle", "Idle connections", labels, () -> pool(ds, HikariPoolMXBean::getIdleConnections));
+    gauge("hikari_connections_pending", "Threads waiting for a connection", labels, () -> pool(ds, HikariPoolMXBean::getThreadsAwaitingConnection));
+    gauge("hikari_connections_total", "Open connections", labels, () -> pool(ds, HikariPoolMXBean::getTotalConnections));
+    gauge("hikari_connections_max", "Maximum pool size", labels, ds::getMaximumPoolSize);
+  }
+
+  /**
+   * Measures how late a timer fires on the calling context's event loop, every {@code intervalMs}.
+   * Lag means handlers on that loop are blocking or the loop is saturated. Stop the returned monitor when the
+   * verticle is undeployed.
+   */
+  public EventLoopMonitor monitorEventLoop(Vertx vertx, long intervalMs) {
+    EventLoopMonitor monitor = new EventLoopMonitor(vertx, intervalMs);
+    monitor.schedule();
+    return monitor;
+  }
+
+  public final class EventLoopMonitor {
+    private final Vertx vertx;
+    private final long intervalMs;
+    private volatile long timerId = -1;
+    private volatile boolean stopped;
+
+    private EventLoopMonitor(Vertx vertx, long intervalMs) {
+      this.vertx = vertx;
+      this.intervalMs = intervalMs;
+    }
+
+    // one-shot timers, so each measurement is relative to when it was scheduled
+    private void schedule() {
+      long expected = System.nanoTime() + intervalMs * 1_000_000;
+      timerId = vertx.setTimer(intervalMs, id -> {
+        eventLoopLag.record(Math.max(0, System.nanoTime() - expected));
+        if (!stopped) schedule();
+      });
+    }
+
+    public void stop() {
+      stopped = true;
+      vertx.cancelTimer(timerId);
+    }
+  }
+
+  public String scrape() {
+    StringBuilder sb = new StringBuilder(8192);
+    summary(sb, "db_statement_seconds", "SQL statement latency", "statement", statements);
+    errors(sb, "db_statement_errors_total", "Failed SQL statements", "statement", statements);
+    requestSummary(sb);
+    sb.append("# HELP event_loop_lag_seconds Delay of a periodic timer on the event loop\n");
+    sb.append("# TYPE event_loop_lag_seconds summary\n");
+    sample(sb, "event_loop_lag_seconds", "", eventLoopLag.snapshot());
+
+    // all samples of a metric have to follow its HELP/TYPE lines
+    Map<String, List<Gauge>> byName = new LinkedHashMap<>();
+    for (Gauge g : gauges) byName.computeIfAbsent(g.name, k -> new ArrayList<>()).add(g);
+    for (List<Gauge> group : byName.values()) {
+      Gauge first = group.get(0);
+      sb.append("# HELP ").append(first.name).append(' ').append(first.help).append('\n');
+      sb.append("# TYPE ").append(first.name).append(" gauge\n");
+      for (Gauge g : group) {
+        sb.append(g.name);
+        if (!g.labels.isEmpty()) sb.append('{').append(g.labels).append('}');
+        sb.append(' ').append(format(g.value.getAsDouble())).append('\n');
+      }
+    }
+    return sb.toString();
+  }
+
+  private void requestSummary(StringBuilder sb) {
+    sb.append("# HELP http_server_request_seconds HTTP request latency by route\n");
+    sb.append("# TYPE http_server_request_seconds summary\n");
+    for (Map.Entry<String, LatencyHistogram> e : sorted(requests)) {
+      String[] parts = e.getKey().split(" ", 3);
+      String labels = parts.length == 3
+          ? "method=\"" + escape(parts[0]) + "\",route=\"" + escape(parts[1]) + "\",status=\"" + parts[2] + "\""
+          : "route=\"" + escape(e.getKey()) + "\"";
+      sample(sb, "http_server_request_seconds", labels, e.getValue().snapshot());
+    }
+  }
+
+  private static void summary(StringBuilder sb, String name, String help, String label, Map<String, LatencyHistogram> series) {
+    sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    sb.append("# TYPE ").append(name).append(" summary\n");
+    for (Map.Entry<String, LatencyHistogram> e : sorted(series)) {
+      sample(sb, name, label + "=\"" + escape(e.getKey()) + "\"", e.getValue().snapshot());
+    }
+  }
+
+  private static void errors(StringBuilder sb, String name, String help, String label, Map<String, LatencyHistogram> series) {
+    sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    sb.append("# TYPE ").append(name).append(" counter\n");
+    for (Map.Entry<String, LatencyHistogram> e : sorted(series)) {
+      sb.append(name).append('{').append(label).append("=\"").append(escape(e.getKey())).append("\"} ")
+          .append(e.getValue().snapshot().errors).append('\n');
+    }
+  }
+
+  private static void sample(StringBuilder sb, String name, String labels, LatencyHistogram.Snapshot s) {
+    String sep = labels.isEmpty() ? "" : ",";
+    for (int i = 0; i < LatencyHistogram.QUANTILES.length; i++) {
+      sb.append(name).append('{').append(labels).append(sep).append("quantile=\"").append(LatencyHistogram.QUANTILES[i])
+          .append("\"} ").append(format(s.quantiles[i])).append('\n');
+    }
+    String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+    sb.append(name).append("_sum").append(braces).append(' ').append(format(s.sumSeconds)).append('\n');
+    sb.append(name).append("_count").append(braces).append(' ').append(s.count).append('\n');
+  }
+
+  private static LatencyHistogram series(Map<String, LatencyHistogram> map, String key) {
+    LatencyHistogram h = map.get(key);
+    if (h != null) return h;
+    if (map.size() >= MAX_SERIES) key = OTHER;
+    return map.computeIfAbsent(key, k -> new LatencyHistogram());
+  }
+
+  private static List<Map.Entry<String, LatencyHistogram>> sorted(Map<String, LatencyHistogram> map) {
+    List<Map.Entry<String, LatencyHistogram>> entries = new ArrayList<>(map.entrySet());
+    entries.sort(Map.Entry.comparingByKey());
+    return entries;
+  }
+
+  private static double pool(HikariDataSource ds, ToIntFunction<HikariPoolMXBean> stat) {
+    HikariPoolMXBean bean = ds.getHikariPoolMXBean();
+    return bean != null ? stat.applyAsInt(bean) : Double.NaN;
+  }
+
+  // Collapse whitespace so the same statement written over several lines is one series
+  static String shape(String sql) {
+    if (sql == null) return OTHER;
+    return sql.replaceAll("\\s+", " ").trim();
+  }
+
+  static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static String format(double v) {
+    if (Double.isNaN(v)) return "NaN";
+    if (v == (long) v) return Long.toString((long) v);
+    return Double.toString(v);
+  }
+
+  private static final class Gauge {
+    final String name;
+    final String help;
+    final String labels;
+    final DoubleSupplier value;
+
+    Gauge(String name, String help, String labels, DoubleSupplier value) {
+      this.name = name;
+      this.help = help;
+      this.labels = labels;
+      this.value = value;
+    }
+  }
+}
@@ -2,28 +2,199 @@ package org.example.repository;
 
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonObject;
+import org.example.config.Config;
 import org.example.db.Database;
+import org.example.db.InsertBatcher;
+import org.example.db.RowMapper;
+import org.example.db.RowStream;
+import org.example.db.Transaction;
+import org.example.domain.Todo;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
+/**
+ * Reads and writes are keyed by user id, so a user reads their own writes when read replicas are configured.
+ * In sharded mode every statement goes to the user's shard (see {@link TodoShards}) and ids come from the application.
+ * The {@link Transaction} overloads run inside {@link #inTransaction}, which opens the transaction on the user's database.
+ */
 public class TodoRepository {
+  private static final String COLUMNS = "id, user_id, title, completed, created_at, version";
+  private static final String INSERT_WITH_TIMESTAMP = "INSERT INTO todos(user_id, title, completed, created_at) VALUES(?, ?, FALSE, ?)";
+  private static final String INSERT_WITH_ID = "INSERT INTO todos(id, user_id, title, completed, created_at) VALUES(?, ?, ?, FALSE, ?)";
+  private static final String MARK_COMPLETED = "UPDATE todos SET completed = ?, version = version + 1 WHERE id = ? AND user_id = ?";
+  // applied only while the row still has the version the client read; no lock is held between the read and this
+  private static final String UPDATE_IF_VERSION = ", version = version + 1 WHERE id = ? AND user_id = ? AND version = ?";
+  private static final String UPDATE_TITLE = "UPDATE todos SET title = ?" + UPDATE_IF_VERSION;
+  private static final String UPDATE_COMPLETED = "UPDATE todos SET completed = ?" + UPDATE_IF_VERSION;
+  private static final String UPDATE_TITLE_COMPLETED = "UPDATE todos SET title = ?, completed = ?" + UPDATE_IF_VERSION;
+  private static final String DELETE = "DELETE FROM todos WHERE id = ? AND user_id = ?";
+  // exactly one of db and shards is set
   private final Database db;
+  private final TodoShards shards;
+  // null unless db.batch.enabled (not used in sharded mode)
+  private final InsertBatcher batcher;
 
-  public TodoRepository(Database db) { this.db = db; }
+  public TodoRepository(Database db) { this(db, false); }
+
+  public TodoRepository(Database db, Config config) { this(db, config.isDbBatchEnabled()); }
+
+  public TodoRepository(TodoShards shards) {
+    this.db = null;
+    this.shards = shards;
+    this.batcher = null;
+  }
+
+  private TodoRepository(Database db, boolean batchInserts) {
+    this.db = db;
+    this.shards = null;
+    this.batcher = batchInserts ? db.batcher(INSERT_WITH_TIMESTAMP) : null;
+  }
 
   public Future<List<JsonObject>> listByUser(long userId) {
-    return db.query("SELECT id, user_id, title, completed, created_at FROM todos WHERE user_id = ? ORDER BY id", userId);
+    return reader(userId).query("SELECT " + COLUMNS + " FROM todos WHERE user_id = ? ORDER BY id", userId);
+  }
+
+  public Future<List<Todo>> listTodos(long userId) {
+    return reader(userId).query("SELECT " + COLUMNS + " FROM todos WHERE user_id = ? ORDER BY id", Todo.MAPPER, userId);
+  }
+
+  /** Null when too many streams are open on the database; then read the list with {@link #listTodos}. */
+  public RowStream<Todo> streamByUser(long userId) {
+    return reader(userId).tryStream("SELECT " + COLUMNS + " FROM todos WHERE user_id = ? ORDER BY id", Todo.MAPPER, userId);
   }
 
   public Future<Long> create(long userId, String title) {
-    return db.insert("INSERT INTO todos(user_id, title, completed, created_at) VALUES(?, ?, FALSE, CURRENT_TIMESTAMP())", userId, title);
+    if (shards != null) return createTodo(userId, title).map(Todo::getId);
+    return db.forKey(userId).insert("INSERT INTO todos(user_id, title, completed, created_at) VALUES(?, ?, FALSE, CURRENT_TIMESTAMP())", userId, title);
+  }
+
+  /**
+   * Creates a todo and returns it, built locally from the generated id so no re-select is needed.
+   * With batching enabled the insert joins a group commit.
+   */
+  public Future<Todo> createTodo(long userId, String title) {
+    // TIMESTAMP columns hold UTC wall-clock time at second precision (see Todo.MAPPER)
+    Instant createdAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+    LocalDateTime ts = LocalDateTime.ofInstant(createdAt, ZoneOffset.UTC);
+    if (shards != null) {
+      long id = shards.nextId();
+      return shards.write(userId, d -> d.executeUpdate(INSERT_WITH_ID, id, userId, title, ts))
+          .map(n -> new Todo(id, userId, title, false, createdAt));
+    }
+    if (batcher == null) {
+      return db.forKey(userId).insertRow(INSERT_WITH_TIMESTAMP, id -> new Todo(id, userId, title, false, createdAt), userId, title, ts);
+    }
+    return batcher.add(userId, title, ts)
+        .onSuccess(id -> db.forKey(userId).markWritten())
+        .map(id -> new Todo(id, userId, title, false, createdAt));
+  }
+
+  public Future<Todo> createTodo(Transaction tx, long userId, String title) {
+    Instant createdAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+    LocalDateTime ts = LocalDateTime.ofInstant(createdAt, ZoneOffset.UTC);
+    if (shards != null) {
+      long id = shards.nextId();
+      return tx.executeUpdate(INSERT_WITH_ID, id, userId, title, ts).map(n -> new Todo(id, userId, title, false, createdAt));
+    }
+    return tx.insertRow(INSERT_WITH_TIMESTAMP, id -> new Todo(id, userId, title, false, createdAt), userId, title, ts);
   }
 
   public Future<Integer> markCompleted(long userId, long id, boolean completed) {
-    return db.executeUpdate("UPDATE todos SET completed = ? WHERE id = ? AND user_id = ?", completed, id, userId);
+    return write(userId, d -> d.executeUpdate(MARK_COMPLETED, completed, id, userId));
+  }
+
+  public Future<Integer> markCompleted(Transaction tx, long userId, long id, boolean completed) {
+    return tx.executeUpdate(MARK_COMPLETED, completed, id, userId);
+  }
+
+  /**
+   * Sets the non-null fields and bumps the version, provided the todo is the user's and still at {@code version}.
+   * Returns the updated row count: 0 means a concurrent update won, or there is no such todo (see {@link #findVersion}).
+   */
+  public Future<Integer> updateIfVersion(long userId, long id, long version, String title, Boolean completed) {
+    if (title != null && completed != null) {
+      return write(userId, d -> d.executeUpdate(UPDATE_TITLE_COMPLETED, title, completed, id, userId, version));
+    }
+    if (title != null) return write(userId, d -> d.executeUpdate(UPDATE_TITLE, title, id, userId, version));
+    return write(userId, d -> d.executeUpdate(UPDATE_COMPLETED, completed, id, userId, version));
+  }
+
+  /** Current version of the user's todo, or null when there is none. Call after a write: reads then go to the primary. */
+  public Future<Long> findVersion(long userId, long id) {
+    return write(userId, d -> d.fetchOne("SELECT version FROM todos WHERE id = ? AND user_id = ?",
+        RowMapper.of(rs -> rs.getLong(1)), id, userId));
+  }
+
+  /** Inserts the todos as one JDBC batch and returns them in title order. */
+  public Future<List<Todo>> createTodos(Transaction tx, long userId, List<String> titles) {
+    Instant createdAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+    LocalDateTime ts = LocalDateTime.ofInstant(createdAt, ZoneOffset.UTC);
+    List<Object[]> rows = new ArrayList<>(titles.size());
+    if (shards != null) {
+      List<Long> ids = new ArrayList<>(titles.size());
+      for (String title : titles) {
+        long id = shards.nextId();
+        ids.add(id);
+        rows.add(new Object[]{id, userId, title, ts});
+      }
+      return tx.executeBatch(INSERT_WITH_ID, rows).map(counts -> todos(ids, userId, titles, createdAt));
+    }
+    for (String title : titles) rows.add(new Object[]{userId, title, ts});
+    return tx.insertBatch(INSERT_WITH_TIMESTAMP, rows).map(ids -> todos(ids, userId, titles, createdAt));
+  }
+
+  /** Sets {@code completed[i]} on todo {@code ids[i]} as one JDBC batch; returns the updated row count per id. */
+  public Future<int[]> markCompleted(Transaction tx, long userId, List<Long> ids, List<Boolean> completed) {
+    List<Object[]> rows = new ArrayList<>(ids.size());
+    for (int i = 0; i < ids.size(); i++) rows.add(new Object[]{completed.get(i), ids.get(i), userId});
+    return tx.executeBatch(MARK_COMPLETED, rows);
+  }
+
+  /** Deletes the user's todos as one JDBC batch; returns the deleted row count per id. */
+  public Future<int[]> deleteTodos(Transaction tx, long userId, List<Long> ids) {
+    List<Object[]> rows = new ArrayList<>(ids.size());
+    for (Long id : ids) rows.add(new Object[]{id, userId});
+    return tx.executeBatch(DELETE, rows);
   }
 
   public Future<JsonObject> findByIdForUser(long userId, long id) {
-    return db.fetchOne("SELECT id, user_id, title, completed, created_at FROM todos WHERE id = ? AND user_id = ?", id, userId);
+    return reader(userId).fetchOne("SELECT " + COLUMNS + " FROM todos WHERE id = ? AND user_id = ?", id, userId);
+  }
+
+  public Future<Todo> findTodo(long userId, long id) {
+    return reader(userId).fetchOne("SELECT " + COLUMNS + " FROM todos WHERE id = ? AND user_id = ?", Todo.MAPPER, id, userId);
+  }
+
+  public Future<Todo> findTodo(Transaction tx, long userId, long id) {
+    return tx.fetchOne("SELECT " + COLUMNS + " FROM todos WHERE id = ? AND user_id = ?", Todo.MAPPER, id, userId);
+  }
+
+  public Future<List<Todo>> listTodos(Transaction tx, long userId) {
+    return tx.query("SELECT " + COLUMNS + " FROM todos WHERE user_id = ? ORDER BY id", Todo.MAPPER, userId);
+  }
+
+  /** Runs {@code work} in one transaction on the database holding the user's todos (counts as a write of the user). */
+  public <T> Future<T> inTransaction(long userId, Function<Transaction, Future<T>> work) {
+    return write(userId, d -> d.inTransaction(work));
+  }
+
+  private static List<Todo> todos(List<Long> ids, long userId, List<String> titles, Instant createdAt) {
+    List<Todo> out = new ArrayList<>(ids.size());
+    for (int i = 0; i < ids.size(); i++) out.add(new Todo(ids.get(i), userId, titles.get(i), false, createdAt));
+    return out;
+  }
+
+  private Database reader(long userId) {
+    return shards != null ? shards.forUser(userId) : db.forKey(userId);
+  }
+
+  private <T> Future<T> write(long userId, Function<Database, Future<T>> op) {
+    return shards != null ? shards.write(userId, op) : op.apply(db.forKey(userId));
   }
 }
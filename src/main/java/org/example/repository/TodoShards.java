@@ -0,0 +1,450 @@
+package org.example.repository;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import org.example.db.Database;
+import org.example.db.DbOverloadedException;
+import org.example.db.IdGenerator;
+import org.example.db.RowMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Placement of todos over several shard databases. A user's todos live on one shard, chosen by a consistent hash
+ * of the user id over the first {@code ringSize} shards (with {@code virtualNodes} points per shard on the ring)
+ * unless the user was moved: moves are recorded in the todo_shard_directory table of the main database and take
+ * precedence over the ring.
+ *
+ * Adding a shard: append its url, keep db.shard.ringSize at the old count, run {@link #rebalance(int)} with the new
+ * count (which moves and records every user whose owner changes), then raise db.shard.ringSize. Operators run moves
+ * with {@link org.example.ShardAdmin} while the servers keep running.
+ *
+ * Moves are safe with several instances running, once each has called {@link #start}. A move first marks the user's
+ * directory row as moving. Every instance re-reads changed directory rows each refresh interval and refuses the
+ * writes of a user marked moving with {@link DbOverloadedException} (503, retried by the client). An instance
+ * whose last successful refresh is older than {@link #LEASE_REFRESHES} intervals refuses all writes, as it may have
+ * missed a mark. The mover waits for that lease plus the move grace period, so writes admitted before the mark
+ * have finished, then copies the rows and records the new shard with the mark cleared. The old rows are deleted
+ * one lease later, so instances that have not seen the switch yet still read complete data.
+ *
+ * Writes for a user go through {@link #write}, which also holds this instance's writes of the user while the rows
+ * are copied. Reads are never blocked; they keep using the old shard until the move switches over.
+ */
+public class TodoShards {
+  private static final Logger log = LoggerFactory.getLogger(TodoShards.class);
+  private static final long RING_SEED = 0x9E3779B97F4A7C15L;
+  /** An instance refuses writes when its directory is older than this many refresh intervals. */
+  public static final int LEASE_REFRESHES = 3;
+  // directory rows are read back this far behind the latest moved_at seen (see TokenRevocations)
+  private static final Duration RESCAN = Duration.ofMinutes(1);
+  private static final int MOVE_BATCH = 100;
+  private static final String PLACEMENT_COLUMNS = "user_id, shard, moving, moved_at";
+  private static final RowMapper<Placement> PLACEMENT = RowMapper.of(rs ->
+      new Placement(rs.getLong(1), rs.getInt(2), rs.getBoolean(3), rs.getTimestamp(4).toInstant()));
+  private static final String COPY_COLUMNS = "id, user_id, title, completed, created_at, version";
+  private static final RowMapper<Object[]> COPY_ROW = md -> {
+    int cols = md.getColumnCount();
+    return rs -> {
+      Object[] row = new Object[cols];
+      for (int i = 0; i < cols; i++) row[i] = rs.getObject(i + 1);
+      return row;
+    };
+  };
+
+  private final Database directory;
+  private final List<Database> shards;
+  private final TreeMap<Long, Integer> ring;
+  private final int virtualNodes;
+  private final IdGenerator ids;
+  // user id -> directory row, for users that were moved (or are being moved) off their ring position
+  private final Map<Long, Placement> moved = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Long, WriteGate> gates = new ConcurrentHashMap<>();
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+  // latest moved_at read
+  private volatile Instant cursor = Instant.EPOCH;
+  // set by start(); until then writes are not leased and moves do not wait for other instances
+  private volatile Vertx vertx;
+  private volatile long leaseNanos;
+  private volatile long fenceMs;
+  // System.nanoTime() at which the last successful refresh started
+  private volatile long refreshedAt;
+
+  /**
+   * @param directory main database holding todo_shard_directory
+   * @param shards shard databases; a shard's number is its position in this list, so only ever append to it
+   */
+  public TodoShards(Database directory, List<Database> shards, int ringSize, int virtualNodes, IdGenerator ids) {
+    if (shards.isEmpty()) throw new IllegalArgumentException("at least one shard is required");
+    if (ringSize <= 0 || ringSize > shards.size()) ringSize = shards.size();
+    this.directory = directory;
+    this.shards = List.copyOf(shards);
+    this.ids = ids;
+    this.virtualNodes = Math.max(1, virtualNodes);
+    this.ring = buildRing(ringSize, this.virtualNodes);
+  }
+
+  public int size() {
+    return shards.size();
+  }
+
+  /** Loads the moved users from todo_shard_directory; call once before serving requests ({@link #start} does). */
+  public Future<Void> loadDirectory() {
+    return refresh().onSuccess(v -> log.info("Todo shards: {} shards, {} moved users", shards.size(), moved.size()));
+  }
+
+  /**
+   * Loads the directory, then re-reads it every {@code refreshMs}. From then on writes are refused while the
+   * directory is stale, and moves started here wait for the lease plus {@code moveGraceMs} after marking a user.
+   *
+   * @param moveGraceMs longer than any single write or transaction on a shard takes
+   */
+  public Future<Void> start(Vertx vertx, long refreshMs, long moveGraceMs) {
+    long interval = Math.max(100, refreshMs);
+    return loadDirectory().onSuccess(v -> {
+      this.vertx = vertx;
+      this.fenceMs = LEASE_REFRESHES * interval + Math.max(0, moveGraceMs);
+      this.leaseNanos = Duration.ofMillis(LEASE_REFRESHES * interval).toNanos();
+      vertx.setPeriodic(interval, id -> refresh()
+          .onFailure(err -> log.warn("Todo shard directory refresh failed: {}", err.getMessage())));
+    });
+  }
+
+  /** Reads the directory rows changed since the last refresh; a call while one is running does nothing. */
+  public Future<Void> refresh() {
+    if (!refreshing.compareAndSet(false, true)) return Future.succeededFuture();
+    long started = System.nanoTime();
+    Instant since = cursor.equals(Instant.EPOCH) ? cursor : cursor.minus(RESCAN);
+    return directory.query("SELECT " + PLACEMENT_COLUMNS + " FROM todo_shard_directory WHERE moved_at >= ?", PLACEMENT, localTime(since))
+        .<Void>map(rows -> {
+          rows.forEach(this::apply);
+          refreshedAt = started;
+          return null;
+        })
+        .onComplete(ar -> refreshing.set(false));
+  }
+
+  /** Shard number holding the user's todos. */
+  public int shardOf(long userId) {
+    Placement pinned = moved.get(userId);
+    if (pinned != null) return pinned.shard();
+    return ringOwner(userId);
+  }
+
+  /** Shard the hash ring assigns to the user, regardless of moves. */
+  public int ringOwner(long userId) {
+    return owner(ring, userId);
+  }
+
+  public Database forUser(long userId) {
+    return shards.get(shardOf(userId));
+  }
+
+  /** New todo id, unique over all shards. */
+  public long nextId() {
+    return ids.next();
+  }
+
+  /**
+   * Runs a write against the user's shard, waiting first while this instance copies the user's rows. Fails with
+   * {@link DbOverloadedException} while the user is marked moving or the directory is stale.
+   */
+  public <T> Future<T> write(long userId, Function<Database, Future<T>> op) {
+    Future<Void> blocked = enter(userId);
+    if (blocked != null) return blocked.compose(v -> write(userId, op));
+    DbOverloadedException refused = refusal(userId);
+    if (refused != null) {
+      leave(userId);
+      return Future.failedFuture(refused);
+    }
+    Future<T> result;
+    try {
+      result = op.apply(forUser(userId));
+    } catch (RuntimeException e) {
+      result = Future.failedFuture(e);
+    }
+    return result.onComplete(ar -> leave(userId));
+  }
+
+  /**
+   * Moves a user's todos to {@code target}: marks the user moving, waits until no instance admits their writes,
+   * holds this instance's writes, copies the rows, records the new placement, releases the writes (which now go to
+   * the target) and finally deletes the rows from the old shard. If the copy fails the mark is cleared and the
+   * user's writes resume on the old shard; should that fail too, they are refused until the move is run again.
+   */
+  public Future<Void> moveUser(long userId, int target) {
+    if (target < 0 || target >= shards.size()) return Future.failedFuture("unknown shard " + target);
+    return moveUsers(List.of(new long[]{userId, target})).mapEmpty();
+  }
+
+  /**
+   * Moves every user whose todos are not where a ring over the first {@code ringSize} shards would put them.
+   * Users are marked and moved {@value #MOVE_BATCH} at a time, each batch waiting once for the lease; only one
+   * user's rows are copied at any moment. Returns the number of moves.
+   */
+  public Future<Integer> rebalance(int ringSize) {
+    if (ringSize <= 0 || ringSize > shards.size()) return Future.failedFuture("ring size must be between 1 and " + shards.size());
+    TreeMap<Long, Integer> target = buildRing(ringSize, virtualNodes);
+    return refresh()
+        .compose(v -> directory.query("SELECT id FROM users ORDER BY id", RowMapper.of(rs -> rs.getLong(1))))
+        .compose(userIds -> {
+          List<long[]> moves = new ArrayList<>();
+          for (long userId : userIds) {
+            int owner = owner(target, userId);
+            if (shardOf(userId) != owner || isMoving(userId)) moves.add(new long[]{userId, owner});
+          }
+          Future<Integer> chain = Future.succeededFuture(0);
+          for (int from = 0; from < moves.size(); from += MOVE_BATCH) {
+            List<long[]> batch = moves.subList(from, Math.min(moves.size(), from + MOVE_BATCH));
+            chain = chain.compose(done -> moveUsers(batch).map(n -> done + n));
+          }
+          return chain;
+        })
+        .onSuccess(moves -> log.info("Rebalanced todo shards for a ring of {}: {} users moved", ringSize, moves));
+  }
+
+  // Moves each {userId, target} pair; returns the number of users moved
+  private Future<Integer> moveUsers(List<long[]> moves) {
+    long start = System.currentTimeMillis();
+    List<long[]> pending = new ArrayList<>(moves.size());
+    for (long[] m : moves) {
+      if (shardOf(m[0]) != m[1] || isMoving(m[0])) pending.add(m);
+    }
+    if (pending.isEmpty()) return Future.succeededFuture(0);
+    // a user already marked by an aborted move is copied from where the directory still places them
+    int[] sources = new int[pending.size()];
+    for (int i = 0; i < sources.length; i++) sources[i] = shardOf(pending.get(i)[0]);
+
+    Future<Void> marked = Future.succeededFuture();
+    for (int i = 0; i < sources.length; i++) {
+      long userId = pending.get(i)[0];
+      int source = sources[i];
+      marked = marked.compose(v -> record(userId, source, true));
+    }
+    Future<Integer> chain = marked.compose(v -> fence()).map(v -> 0);
+    for (int i = 0; i < sources.length; i++) {
+      long userId = pending.get(i)[0];
+      int target = (int) pending.get(i)[1];
+      int source = sources[i];
+      chain = chain.compose(done -> move(userId, source, target).map(n -> done + 1));
+    }
+    return chain
+        .recover(err -> unmark(pending).compose(v -> Future.failedFuture(err)))
+        // instances that have not seen the switch yet keep reading the old shard until their lease runs out
+        .compose(done -> fence().map(done))
+        .compose(done -> {
+          Future<Void> deleted = Future.succeededFuture();
+          for (int i = 0; i < sources.length; i++) {
+            long userId = pending.get(i)[0];
+            int source = sources[i];
+            if (source == pending.get(i)[1]) continue;
+            deleted = deleted.compose(v -> shards.get(source).executeUpdate("DELETE FROM todos WHERE user_id = ?", userId)
+                .<Void>mapEmpty()
+                .otherwise(err -> {
+                  // the copy is live already; rows left on the old shard are unreachable and removed by a later move
+                  log.warn("Moved user {} but could not delete old rows on shard {}: {}", userId, source, err.getMessage());
+                  return null;
+                }));
+          }
+          return deleted.map(done);
+        })
+        .onSuccess(done -> log.info("Moved todos of {} users ({} ms)", done, System.currentTimeMillis() - start))
+        .onFailure(err -> log.warn("Moving todos of {} users failed: {}", pending.size(), err.getMessage()));
+  }
+
+  // Copies one marked user's rows and switches them over to the target; leaves the old rows in place
+  private Future<Void> move(long userId, int source, int target) {
+    long start = System.currentTimeMillis();
+    log.info("Moving todos of user {} from shard {} to {}", userId, source, target);
+    // only the mark of an aborted move to be cleared
+    if (source == target) return record(userId, target, false);
+    return closeGate(userId)
+        .compose(v -> copy(userId, shards.get(source), shards.get(target)))
+        .compose(count -> record(userId, target, false).map(count))
+        .eventually(() -> openGate(userId))
+        .onSuccess(count -> log.info("Moved {} todos of user {} to shard {} ({} ms)", count, userId, target, System.currentTimeMillis() - start))
+        .onFailure(err -> log.warn("Move of user {} to shard {} failed: {}", userId, target, err.getMessage()))
+        .mapEmpty();
+  }
+
+  // Copies the user's rows; returns the number of rows copied
+  private Future<Integer> copy(long userId, Database from, Database to) {
+    return from.query("SELECT " + COPY_COLUMNS + " FROM todos WHERE user_id = ? ORDER BY id", COPY_ROW, userId)
+        .compose(rows -> to.inTransaction(tx -> tx.executeUpdate("DELETE FROM todos WHERE user_id = ?", userId) // leftovers of an aborted move
+                .compose(n -> tx.executeBatch("INSERT INTO todos(" + COPY_COLUMNS + ") VALUES(?, ?, ?, ?, ?, ?)", rows)))
+            .map(n -> rows.size()));
+  }
+
+  // Writes the user's directory row (moved_at from the database clock) and applies it here
+  private Future<Void> record(long userId, int shard, boolean moving) {
+    return directory.executeUpdate(
+            "INSERT INTO todo_shard_directory(user_id, shard, moving, moved_at) VALUES(?, ?, ?, CURRENT_TIMESTAMP) "
+                + "ON DUPLICATE KEY UPDATE shard = VALUES(shard), moving = VALUES(moving), moved_at = VALUES(moved_at)",
+            userId, shard, moving)
+        .compose(n -> directory.fetchOne("SELECT " + PLACEMENT_COLUMNS + " FROM todo_shard_directory WHERE user_id = ?", PLACEMENT, userId))
+        .map(p -> {
+          if (p != null) apply(p);
+          return null;
+        });
+  }
+
+  // Clears the marks of users not switched yet, so their writes resume on the old shard; the target's copy of their
+  // rows is replaced by the next move
+  private Future<Void> unmark(List<long[]> users) {
+    Future<Void> chain = Future.succeededFuture();
+    for (long[] m : users) {
+      long userId = m[0];
+      chain = chain.compose(v -> isMoving(userId) ? record(userId, shardOf(userId), false) : Future.<Void>succeededFuture())
+          .otherwise(err -> {
+            log.warn("Could not clear the move mark of user {}, its writes stay refused: {}", userId, err.getMessage());
+            return null;
+          });
+    }
+    return chain;
+  }
+
+  // Completes once every instance has either seen the latest marks or stopped admitting writes, and writes
+  // admitted before them have finished
+  private Future<Void> fence() {
+    Vertx v = vertx;
+    if (v == null) return Future.succeededFuture();
+    Promise<Void> waited = Promise.promise();
+    v.setTimer(fenceMs, id -> waited.complete());
+    return waited.future();
+  }
+
+  // Newer rows win; a refresh that read a row before this instance switched it must not undo the switch
+  private void apply(Placement p) {
+    if (p.shard() >= shards.size()) {
+      log.warn("todo_shard_directory places user {} on unknown shard {}, using the hash ring", p.userId(), p.shard());
+      return;
+    }
+    moved.merge(p.userId(), p, (old, fresh) -> {
+      int c = fresh.movedAt().compareTo(old.movedAt());
+      return c > 0 || (c == 0 && !fresh.moving()) ? fresh : old;
+    });
+    if (p.movedAt().isAfter(cursor)) cursor = p.movedAt();
+  }
+
+  private boolean isMoving(long userId) {
+    Placement p = moved.get(userId);
+    return p != null && p.moving();
+  }
+
+  private DbOverloadedException refusal(long userId) {
+    if (isMoving(userId)) return new DbOverloadedException("todos of user " + userId + " are being moved to another shard", 1);
+    long lease = leaseNanos;
+    if (lease > 0 && System.nanoTime() - refreshedAt > lease) {
+      return new DbOverloadedException("todo shard directory is stale, refusing writes", 1);
+    }
+    return null;
+  }
+
+  private static LocalDateTime localTime(Instant instant) {
+    return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+  }
+
+  // Returns a future to wait on when the user's writes are held, otherwise registers the write and returns null
+  private Future<Void> enter(long userId) {
+    List<Future<Void>> blocked = new ArrayList<>(1);
+    gates.compute(userId, (k, g) -> {
+      if (g == null) g = new WriteGate();
+      if (g.closed != null) blocked.add(g.closed.future());
+      else g.inFlight++;
+      return g;
+    });
+    return blocked.isEmpty() ? null : blocked.get(0);
+  }
+
+  private void leave(long userId) {
+    List<Promise<Void>> drained = new ArrayList<>(1);
+    gates.computeIfPresent(userId, (k, g) -> {
+      if (--g.inFlight > 0) return g;
+      if (g.drained != null) {
+        drained.add(g.drained);
+        g.drained = null;
+      }
+      return g.closed == null ? null : g;
+    });
+    drained.forEach(Promise::complete);
+  }
+
+  // Holds new writes for the user and completes once the running ones finished
+  private Future<Void> closeGate(long userId) {
+    List<Future<Void>> result = new ArrayList<>(1);
+    gates.compute(userId, (k, g) -> {
+      if (g == null) g = new WriteGate();
+      if (g.closed != null) {
+        result.add(Future.failedFuture("a move of user " + userId + " is already in progress"));
+        return g;
+      }
+      g.closed = Promise.promise();
+      if (g.inFlight == 0) {
+        result.add(Future.succeededFuture());
+      } else {
+        g.drained = Promise.promise();
+        result.add(g.drained.future());
+      }
+      return g;
+    });
+    return result.get(0);
+  }
+
+  private Future<Void> openGate(long userId) {
+    List<Promise<Void>> released = new ArrayList<>(1);
+    gates.computeIfPresent(userId, (k, g) -> {
+      if (g.closed != null) released.add(g.closed);
+      g.closed = null;
+      g.drained = null;
+      return g.inFlight == 0 ? null : g;
+    });
+    released.forEach(Promise::complete);
+    return Future.succeededFuture();
+  }
+
+  private static TreeMap<Long, Integer> buildRing(int shardCount, int virtualNodes) {
+    TreeMap<Long, Integer> ring = new TreeMap<>();
+    for (int shard = 0; shard < shardCount; shard++) {
+      // separate domain from user ids: mix() is a bijection, so equal inputs would land exactly on a ring point
+      for (int v = 0; v < virtualNodes; v++) ring.put(mix(RING_SEED * (shard + 1) + v), shard);
+    }
+    return ring;
+  }
+
+  private static int owner(TreeMap<Long, Integer> ring, long userId) {
+    Map.Entry<Long, Integer> e = ring.ceilingEntry(mix(userId));
+    return (e != null ? e : ring.firstEntry()).getValue();
+  }
+
+  // 64-bit finalizer from MurmurHash3: spreads sequential user ids evenly over the ring
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private record Placement(long userId, int shard, boolean moving, Instant movedAt) {}
+
+  private static final class WriteGate {
+    int inFlight;
+    // set while a move holds the user's writes
+    Promise<Void> closed;
+    // completed when inFlight drops to zero while closed
+    Promise<Void> drained;
+  }
+}
@@ -0,0 +1,94 @@
+package org.example.repository;
+
+import io.vertx.core.Future;
+import org.example.db.Database;
+import org.example.db.RowMapper;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Refresh tokens and revoked access token ids. Refresh tokens are only stored as a hash, so a leaked table does not
+ * hand out sessions.
+ */
+public class TokenRepository {
+  // TIMESTAMP columns hold JVM-local wall-clock time, like users.created_at
+  private static final RowMapper<RefreshToken> REFRESH_TOKEN = RowMapper.of(rs ->
+      new RefreshToken(rs.getLong(1), rs.getLong(2), rs.getTimestamp(3).toInstant(), rs.getBoolean(4)));
+  private static final RowMapper<Revocation> REVOCATION = RowMapper.of(rs ->
+      new Revocation(rs.getLong(1), rs.getString(2), rs.getTimestamp(3).toInstant(), rs.getTimestamp(4).toInstant()));
+
+  private final Database db;
+
+  public TokenRepository(Database db) {
+    this.db = db;
+  }
+
+  public Future<Long> saveRefreshToken(long userId, String tokenHash, Instant expiresAt) {
+    return db.forKey(tokenHash).insert("INSERT INTO refresh_tokens(user_id, token_hash, expires_at) VALUES(?, ?, ?)",
+        userId, tokenHash, localTime(expiresAt));
+  }
+
+  /**
+   * Marks an unexpired, unrevoked refresh token as used; returns 1 when this call did, 0 when the token is unknown,
+   * expired or was already used.
+   */
+  public Future<Integer> consumeRefreshToken(String tokenHash, Instant now) {
+    return db.forKey(tokenHash).executeUpdate(
+        "UPDATE refresh_tokens SET revoked = TRUE WHERE token_hash = ? AND revoked = FALSE AND expires_at > ?",
+        tokenHash, localTime(now));
+  }
+
+  /** The refresh token with this hash, used or not, or null. */
+  public Future<RefreshToken> findRefreshToken(String tokenHash) {
+    // keyed by the hash: read right after consumeRefreshToken, so it must see that write
+    return db.forKey(tokenHash).fetchOne("SELECT id, user_id, expires_at, revoked FROM refresh_tokens WHERE token_hash = ?",
+        REFRESH_TOKEN, tokenHash);
+  }
+
+  public Future<Integer> revokeRefreshToken(long userId, String tokenHash) {
+    return db.forKey(tokenHash).executeUpdate("UPDATE refresh_tokens SET revoked = TRUE WHERE token_hash = ? AND user_id = ?",
+        tokenHash, userId);
+  }
+
+  public Future<Integer> revokeAllRefreshTokens(long userId) {
+    return db.executeUpdate("UPDATE refresh_tokens SET revoked = TRUE WHERE user_id = ? AND revoked = FALSE", userId);
+  }
+
+  /**
+   * Records a revoked access token id; revoking one twice is not an error. revoked_at is left to the database
+   * clock, so all instances compare it against values from the same clock (see {@link #revokedSince}).
+   */
+  public Future<Void> revokeJti(String jti, Instant expiresAt) {
+    return db.insert("INSERT INTO revoked_tokens(jti, expires_at) VALUES(?, ?)", jti, localTime(expiresAt))
+        .<Void>mapEmpty()
+        .recover(err -> Database.isDuplicateKey(err) ? Future.succeededFuture() : Future.failedFuture(err));
+  }
+
+  /**
+   * Revocations after ({@code revokedAt}, {@code afterId}) in (revoked_at, id) order: revoked at {@code revokedAt}
+   * with a higher id, or revoked later. Start with {@code afterId} 0 to include everything revoked at that time.
+   */
+  public Future<List<Revocation>> revokedSince(Instant revokedAt, long afterId, int limit) {
+    LocalDateTime t = localTime(revokedAt);
+    return db.query("SELECT id, jti, expires_at, revoked_at FROM revoked_tokens WHERE revoked_at > ? OR (revoked_at = ? AND id > ?) "
+        + "ORDER BY revoked_at, id LIMIT " + Math.max(1, limit), REVOCATION, t, t, afterId);
+  }
+
+  /** Deletes refresh tokens and revocations that expired before {@code before}; returns the rows deleted. */
+  public Future<Integer> deleteExpired(Instant before) {
+    LocalDateTime t = localTime(before);
+    return db.executeUpdate("DELETE FROM refresh_tokens WHERE expires_at < ?", t)
+        .compose(a -> db.executeUpdate("DELETE FROM revoked_tokens WHERE expires_at < ?", t).map(b -> a + b));
+  }
+
+  private static LocalDateTime localTime(Instant instant) {
+    return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+  }
+
+  public record RefreshToken(long id, long userId, Instant expiresAt, boolean revoked) {}
+
+  public record Revocation(long id, String jti, Instant expiresAt, Instant revokedAt) {}
+}
@@ -2,35 +2,134 @@ package org.example.repository;
 
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonObject;
+import org.example.cache.UserCache;
 import org.example.db.Database;
+import org.example.db.Transaction;
+import org.example.domain.User;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.function.Function;
 
+/**
+ * With a {@link UserCache}, findUser and findByEmail are served from it (including "not found") and the create
+ * methods invalidate the new user's entries.
+ */
 public class UserRepository implements UserRepositoryPort {
   private final Database db;
+  // null when cache.users.enabled=false
+  private final UserCache cache;
 
-  public UserRepository(Database db) { this.db = db; }
+  public UserRepository(Database db) { this(db, null); }
+
+  public UserRepository(Database db, UserCache cache) {
+    this.db = db;
+    this.cache = cache;
+  }
 
   @Override
   public Future<List<JsonObject>> list() {
     return db.query("SELECT id, name, email, created_at FROM users ORDER BY id");
   }
 
+  @Override
+  public Future<List<User>> listUsers() {
+    return db.query("SELECT id, name, email, created_at FROM users ORDER BY id", User.MAPPER);
+  }
+
   @Override
   public Future<JsonObject> findById(long id) {
     return db.fetchOne("SELECT id, name, email, created_at FROM users WHERE id = ?", id);
   }
 
+  @Override
+  public Future<User> findUser(long id) {
+    if (cache != null) return cache.user(id, () -> loadUser(id));
+    return loadUser(id);
+  }
+
+  private Future<User> loadUser(long id) {
+    return db.fetchOne("SELECT id, name, email, created_at FROM users WHERE id = ?", User.MAPPER, id);
+  }
+
   @Override
   public Future<Long> create(String name, String email) {
-    return db.insert("INSERT INTO users(name, email, created_at) VALUES(?, ?, CURRENT_TIMESTAMP())", name, email);
+    return db.insert("INSERT INTO users(name, email, created_at) VALUES(?, ?, CURRENT_TIMESTAMP())", name, email)
+        .onSuccess(id -> invalidate(id, email));
+  }
+
+  @Override
+  public Future<User> createUser(String name, String email) {
+    Instant createdAt = now();
+    return db.forKey(email).insertRow("INSERT INTO users(name, email, created_at) VALUES(?, ?, ?)",
+        id -> new User(id, name, email, createdAt), name, email, localTime(createdAt))
+        .onSuccess(user -> invalidate(user.getId(), email));
   }
 
+  /** The users row including password_hash; never hand it to clients as is. */
   public Future<JsonObject> findByEmail(String email) {
-    return db.fetchOne("SELECT id, name, email, created_at, password_hash FROM users WHERE email = ?", email);
+    if (cache != null) return cache.row(email, () -> loadByEmail(email));
+    return loadByEmail(email);
+  }
+
+  private Future<JsonObject> loadByEmail(String email) {
+    // keyed by email so a login right after registering reads from the primary
+    return db.forKey(email).fetchOne("SELECT id, name, email, created_at, password_hash FROM users WHERE email = ?", email);
   }
 
   public Future<Long> createWithPassword(String name, String email, String passwordHash) {
-    return db.insert("INSERT INTO users(name, email, password_hash, created_at) VALUES(?, ?, ?, CURRENT_TIMESTAMP())", name, email, passwordHash);
+    return db.forKey(email).insert("INSERT INTO users(name, email, password_hash, created_at) VALUES(?, ?, ?, CURRENT_TIMESTAMP())", name, email, passwordHash)
+        .onSuccess(id -> invalidate(id, email));
+  }
+
+  /** Single-statement variant of createWithPassword; fails with a duplicate key error when the email is taken. */
+  public Future<User> createUserWithPassword(String name, String email, String passwordHash) {
+    Instant createdAt = now();
+    return db.forKey(email).insertRow("INSERT INTO users(name, email, password_hash, created_at) VALUES(?, ?, ?, ?)",
+        id -> new User(id, name, email, createdAt), name, email, passwordHash, localTime(createdAt))
+        .onSuccess(user -> invalidate(user.getId(), email));
+  }
+
+  /** Replaces the password hash unless it changed since {@code oldHash} was read; returns the rows updated. */
+  public Future<Integer> updatePasswordHash(long id, String email, String oldHash, String newHash) {
+    return db.forKey(email).executeUpdate("UPDATE users SET password_hash = ? WHERE id = ? AND password_hash = ?", newHash, id, oldHash)
+        .onSuccess(n -> invalidate(id, email));
+  }
+
+  /** Runs {@code work} in one transaction; reads by {@code email} see its writes afterwards (see Database.forKey). */
+  public <T> Future<T> inTransaction(String email, Function<Transaction, Future<T>> work) {
+    // lookups cached while the transaction ran may predate its commit
+    return db.forKey(email).inTransaction(work).onComplete(ar -> invalidate(null, email));
+  }
+
+  public Future<JsonObject> findByEmail(Transaction tx, String email) {
+    return tx.fetchOne("SELECT id, name, email, created_at, password_hash FROM users WHERE email = ?", email);
+  }
+
+  public Future<User> findUser(Transaction tx, long id) {
+    return tx.fetchOne("SELECT id, name, email, created_at FROM users WHERE id = ?", User.MAPPER, id);
+  }
+
+  public Future<User> createUserWithPassword(Transaction tx, String name, String email, String passwordHash) {
+    Instant createdAt = now();
+    return tx.insertRow("INSERT INTO users(name, email, password_hash, created_at) VALUES(?, ?, ?, ?)",
+        id -> new User(id, name, email, createdAt), name, email, passwordHash, localTime(createdAt))
+        .onSuccess(user -> invalidate(user.getId(), email));
+  }
+
+  private void invalidate(Long id, String email) {
+    if (cache != null) cache.invalidate(id, email);
+  }
+
+  // users.created_at is read back in the JVM time zone (see User.MAPPER), so it is written the same way
+  private static Instant now() {
+    return Instant.now().truncatedTo(ChronoUnit.SECONDS);
+  }
+
+  private static LocalDateTime localTime(Instant instant) {
+    return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
   }
 }
@@ -2,12 +2,28 @@ package org.example.repository;
 
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonObject;
+import org.example.domain.User;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 public interface UserRepositoryPort {
   Future<java.util.List<io.vertx.core.json.JsonObject>> list();
   Future<JsonObject> findById(long id);
   Future<Long> create(String name, String email);
+
+  // Typed lookups; implementations backed by a Database map rows directly instead of going through JsonObject
+  default Future<List<User>> listUsers() {
+    return list().map(rows -> rows.stream().map(User::fromRow).collect(Collectors.toList()));
+  }
+
+  default Future<User> findUser(long id) {
+    return findById(id).map(User::fromRow);
+  }
+
+  /** Creates a user and returns it; the default re-reads the row, Database-backed implementations build it locally. */
+  default Future<User> createUser(String name, String email) {
+    return create(name, email).compose(this::findUser);
+  }
 }
 
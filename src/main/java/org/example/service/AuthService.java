@@ -3,47 +3,92 @@ package org.example.service;
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonObject;
 import org.example.config.Config;
+import org.example.db.Database;
+import org.example.domain.User;
+import org.example.repository.TokenRepository;
 import org.example.repository.UserRepository;
+import org.example.utils.PasswordHasher;
 import org.example.utils.PasswordUtil;
 import org.example.utils.JwtUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
 
+/**
+ * Registration and login. Logins issue a short-lived access token (a JWT with a jti, so it can be revoked) and,
+ * with a {@link TokenRepository}, a refresh token: an opaque random string, stored hashed, that {@link #refresh}
+ * exchanges for a new pair exactly once. Presenting a used refresh token again revokes all of the user's refresh
+ * tokens, since one of the two holders is not the user.
+ */
 public class AuthService {
   private static final Logger log = LoggerFactory.getLogger(AuthService.class);
+  private static final SecureRandom random = new SecureRandom();
   private final UserRepository users;
   private final Config config;
+  // null hashes and checks passwords on the calling thread
+  private final PasswordHasher hasher;
+  // both null: logins only issue access tokens, which cannot be revoked
+  private final TokenRepository tokens;
+  private final TokenRevocations revocations;
 
   public AuthService(UserRepository users, Config config) {
+    this(users, config, null);
+  }
+
+  public AuthService(UserRepository users, Config config, PasswordHasher hasher) {
+    this(users, config, hasher, null, null);
+  }
+
+  public AuthService(UserRepository users, Config config, PasswordHasher hasher, TokenRepository tokens,
+                     TokenRevocations revocations) {
     this.users = users;
     this.config = config;
+    this.hasher = hasher;
+    this.tokens = tokens;
+    this.revocations = revocations;
+  }
+
+  /** What a login or refresh hands out; {@code refreshToken} is null without refresh token support. */
+  public record Tokens(String accessToken, String refreshToken, long expiresInSeconds) {
+    public JsonObject toJson() {
+      JsonObject out = new JsonObject().put("token", accessToken).put("expiresIn", expiresInSeconds);
+      if (refreshToken != null) out.put("refreshToken", refreshToken);
+      return out;
+    }
   }
 
-  public Future<JsonObject> register(String name, String email, String password) {
+  public Future<User> register(String name, String email, String password) {
     log.info("Register start: email={}", email);
     if (name == null || name.isBlank()) return Future.failedFuture("name is required");
     if (email == null || email.isBlank()) return Future.failedFuture("email is required");
     if (password == null || password.length() < 6) return Future.failedFuture("password must be at least 6 chars");
-    return users.findByEmail(email).compose(existing -> {
-      if (existing != null) {
-        log.warn("Register failed: email already in use: {}", email);
-        return Future.failedFuture("email already in use");
-      }
-      String hash = PasswordUtil.hash(password);
+    Future<String> hashed = hasher != null ? hasher.hash(password) : Future.succeededFuture(PasswordUtil.hash(password));
+    return hashed.compose(hash -> {
       log.debug("Register creating user: email={} (hashLen={})", email, hash.length());
-      return users.createWithPassword(name, email, hash)
-          .compose(id -> users.findByEmail(email))
-          .onSuccess(row -> log.info("Register success: email={} id={}", email, row != null ? coerceLong(row, "id", "ID") : null))
-          .onFailure(err -> log.warn("Register DB failure for {}: {}", email, err.getMessage()));
-    });
+      // The UNIQUE constraint on users.email does the duplicate check, so registering is a single insert
+      return users.createUserWithPassword(name, email, hash)
+          .recover(err -> {
+            if (Database.isDuplicateKey(err)) {
+              log.warn("Register failed: email already in use: {}", email);
+              return Future.failedFuture("email already in use");
+            }
+            log.warn("Register DB failure for {}: {}", email, err.getMessage());
+            return Future.failedFuture(err);
+          });
+    }).onSuccess(user -> log.info("Register success: email={} id={}", email, user.getId()));
   }
 
-  public Future<String> login(String email, String password) {
+  public Future<Tokens> login(String email, String password) {
     log.info("Login start: email={}", email);
     if (email == null || password == null) return Future.failedFuture("invalid credentials");
     return users.findByEmail(email).compose(row -> {
@@ -57,28 +102,92 @@ public class AuthService {
         log.warn("Login failed: no password set for {} (seeded user?)", email);
         return Future.failedFuture("invalid credentials");
       }
-      boolean ok = PasswordUtil.verify(password, stored);
-
-      if (!ok) {
-        log.warn("Login failed: bad password for {}", email);
-        return Future.failedFuture("invalid credentials");
-      }
       Long idBoxed = coerceLong(row, "id", "ID");
-      if (idBoxed == null) {
-        log.warn("Login failed: user id missing for {}", email);
-        return Future.failedFuture("invalid credentials");
-      }
-      long userId = idBoxed;
-      long exp = Instant.now().plus(config.getJwtExpMinutes(), ChronoUnit.MINUTES).getEpochSecond();
-      Map<String, Object> claims = new HashMap<>();
-      claims.put("sub", String.valueOf(userId));
-      claims.put("exp", exp);
-      String token = JwtUtil.sign(claims, config.getJwtSecret());
-      log.info("Login success: email={} sub={} exp={}s", email, userId, exp);
-      return Future.succeededFuture(token);
+      String hash = stored;
+      Future<Boolean> checked = hasher != null ? hasher.verify(password, hash) : Future.succeededFuture(PasswordUtil.verify(password, hash));
+      return checked.compose(ok -> {
+        if (!ok) {
+          log.warn("Login failed: bad password for {}", email);
+          return Future.failedFuture("invalid credentials");
+        }
+        if (idBoxed == null) {
+          log.warn("Login failed: user id missing for {}", email);
+          return Future.failedFuture("invalid credentials");
+        }
+        if (hasher != null && hasher.needsRehash(hash)) rehash(idBoxed, email, password, hash);
+        log.info("Login success: email={} sub={}", email, idBoxed);
+        return issue(idBoxed);
+      });
     });
   }
 
+  // Replaces a hash made with another cost; the login does not wait for it, and a failure only means it is retried
+  // on the next login
+  private void rehash(long userId, String email, String password, String oldHash) {
+    hasher.hash(password)
+        .compose(newHash -> users.updatePasswordHash(userId, email, oldHash, newHash))
+        .onSuccess(n -> log.info("Password rehashed: email={} cost={} updated={}", email, hasher.cost(), n))
+        .onFailure(err -> log.warn("Password rehash failed for {}: {}", email, err.getMessage()));
+  }
+
+  /** Exchanges an unused refresh token for a new access and refresh token. */
+  public Future<Tokens> refresh(String refreshToken) {
+    if (tokens == null) return Future.failedFuture("refresh tokens are disabled");
+    if (refreshToken == null || refreshToken.isBlank()) return Future.failedFuture("invalid refresh token");
+    String hash = sha256(refreshToken);
+    // the conditional update is what makes a refresh token single-use, also under concurrent refreshes
+    return tokens.consumeRefreshToken(hash, Instant.now())
+        .compose(used -> tokens.findRefreshToken(hash).compose(row -> {
+          if (used == 1 && row != null) {
+            log.info("Refresh success: sub={}", row.userId());
+            return issue(row.userId());
+          }
+          if (row != null && row.revoked()) {
+            log.warn("Refresh token reused: sub={}, revoking all of the user's refresh tokens", row.userId());
+            return tokens.revokeAllRefreshTokens(row.userId()).compose(n -> Future.failedFuture("invalid refresh token"));
+          }
+          log.warn("Refresh failed: unknown or expired refresh token");
+          return Future.failedFuture("invalid refresh token");
+        }));
+  }
+
+  /** Revokes the access token {@code jti} until its exp and, if given, the user's {@code refreshToken}. */
+  public Future<Void> logout(long userId, String jti, long exp, String refreshToken) {
+    Future<Void> access = revocations != null && jti != null ? revocations.revoke(jti, exp) : Future.succeededFuture();
+    Future<Integer> refresh = tokens != null && refreshToken != null
+        ? tokens.revokeRefreshToken(userId, sha256(refreshToken)) : Future.succeededFuture(0);
+    return Future.all(access, refresh).<Void>mapEmpty()
+        .onSuccess(v -> log.info("Logout: sub={} jti={} refreshRevoked={}", userId, jti, refresh.result()));
+  }
+
+  private Future<Tokens> issue(long userId) {
+    long expiresIn = config.getJwtExpMinutes() * 60L;
+    long exp = Instant.now().plus(expiresIn, ChronoUnit.SECONDS).getEpochSecond();
+    Map<String, Object> claims = new HashMap<>();
+    claims.put("sub", String.valueOf(userId));
+    claims.put("exp", exp);
+    claims.put("jti", randomToken(16));
+    String access = JwtUtil.sign(claims, config.getJwtSecret());
+    if (tokens == null) return Future.succeededFuture(new Tokens(access, null, expiresIn));
+    String refresh = randomToken(32);
+    Instant refreshExp = Instant.now().plus(config.getJwtRefreshDays(), ChronoUnit.DAYS);
+    return tokens.saveRefreshToken(userId, sha256(refresh), refreshExp).map(id -> new Tokens(access, refresh, expiresIn));
+  }
+
+  private static String randomToken(int bytes) {
+    byte[] b = new byte[bytes];
+    random.nextBytes(b);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(b);
+  }
+
+  private static String sha256(String token) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   private static Long coerceLong(JsonObject row, String... keys) {
     for (String k : keys) {
       Long v = row.getLong(k);
@@ -1,34 +1,243 @@
 package org.example.service;
 
 import io.vertx.core.Future;
+import org.example.cache.TodoListCache;
+import org.example.db.RowStream;
 import org.example.domain.Todo;
 import org.example.repository.TodoRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 public class TodoService {
   private static final Logger log = LoggerFactory.getLogger(TodoService.class);
+
+  /** One operation of {@link #batch}: create needs a title; complete, uncomplete and delete need an id. */
+  public record BatchOp(String op, Long id, String title) {}
+
+  /** What happened to one operation; {@code todo} is set for a create, {@code error} when it was not applied. */
+  public record BatchResult(BatchOp op, BatchStatus status, Todo todo, String error) {
+    public boolean applied() {
+      return status == BatchStatus.CREATED || status == BatchStatus.UPDATED || status == BatchStatus.DELETED;
+    }
+  }
+
+  public enum BatchStatus { CREATED, UPDATED, DELETED, INVALID, NOT_FOUND, NOT_APPLIED }
+
+  /** Outcome of {@link #update}: the todo's version after it (the new one, or the current one on a conflict). */
+  public record UpdateResult(UpdateStatus status, Long version) {}
+
+  public enum UpdateStatus { UPDATED, CONFLICT, NOT_FOUND }
+
   private final TodoRepository repo;
+  // null when cache.todos.enabled=false
+  private final TodoListCache cache;
 
-  public TodoService(TodoRepository repo) { this.repo = repo; }
+  public TodoService(TodoRepository repo) { this(repo, null); }
+
+  public TodoService(TodoRepository repo, TodoListCache cache) {
+    this.repo = repo;
+    this.cache = cache;
+  }
 
   public Future<List<Todo>> list(long userId) {
+    List<Todo> cached = cached(userId);
+    if (cached != null) return Future.succeededFuture(cached);
     log.info("TodoService.list start userId={}", userId);
-    return repo.listByUser(userId).map(rows -> rows.stream().map(Todo::fromRow).collect(Collectors.toList()))
-        .onSuccess(list -> log.info("TodoService.list ok userId={} count={}", userId, list.size()))
+    long stamp = cache != null ? cache.stamp(userId) : 0;
+    return repo.listTodos(userId)
+        .onSuccess(list -> {
+          log.info("TodoService.list ok userId={} count={}", userId, list.size());
+          if (cache != null) cache.put(userId, stamp, list);
+        })
         .onFailure(err -> log.warn("TodoService.list fail userId={}: {}", userId, err.getMessage()));
   }
 
+  /** The user's todos if they are cached, otherwise null (then use {@link #stream} and {@link #cacheFill}). */
+  public List<Todo> cached(long userId) {
+    if (cache == null) return null;
+    List<Todo> list = cache.get(userId);
+    if (list != null) log.debug("TodoService.list cache hit userId={} count={}", userId, list.size());
+    return list;
+  }
+
+  /** Collector that caches a streamed list once it was read completely; null when caching is off. */
+  public TodoListCache.Fill cacheFill(long userId) {
+    return cache != null ? cache.fill(userId) : null;
+  }
+
+  /**
+   * Streams the user's todos in id order; the caller must consume or close the stream. Null when too many streams
+   * hold connections already: then read the list with {@link #list}.
+   */
+  public RowStream<Todo> stream(long userId) {
+    RowStream<Todo> rows = repo.streamByUser(userId);
+    log.info("TodoService.stream {} userId={}", rows != null ? "start" : "unavailable", userId);
+    return rows;
+  }
+
   public Future<Todo> create(long userId, String title) {
     log.info("TodoService.create start userId={} title='{}'", userId, title);
     if (title == null || title.isBlank()) return Future.failedFuture("title is required");
-    return repo.create(userId, title)
-        .compose(id -> repo.findByIdForUser(userId, id))
-        .map(Todo::fromRow)
-        .onSuccess(t -> log.info("TodoService.create ok userId={} id={}", userId, t != null ? t.getId() : null))
-        .onFailure(err -> log.warn("TodoService.create fail userId={}: {}", userId, err.getMessage()));
+    return repo.createTodo(userId, title)
+        .onSuccess(t -> {
+          log.info("TodoService.create ok userId={} id={}", userId, t != null ? t.getId() : null);
+          if (cache != null && t != null) cache.created(t);
+        })
+        .onFailure(err -> {
+          if (cache != null) cache.invalidate(userId);
+          log.warn("TodoService.create fail userId={}: {}", userId, err.getMessage());
+        });
+  }
+
+  /** Returns the number of updated rows: 0 when the todo does not exist or belongs to someone else. */
+  public Future<Integer> markCompleted(long userId, long id, boolean completed) {
+    return repo.markCompleted(userId, id, completed)
+        .onSuccess(n -> {
+          log.info("TodoService.markCompleted userId={} id={} completed={} rows={}", userId, id, completed, n);
+          if (cache != null && n > 0) cache.completed(userId, id, completed);
+        })
+        .onFailure(err -> {
+          // the row may or may not have changed
+          if (cache != null) cache.invalidate(userId);
+          log.warn("TodoService.markCompleted fail userId={} id={}: {}", userId, id, err.getMessage());
+        });
+  }
+
+  /**
+   * Sets the non-null fields if the todo is still at {@code version}, in one conditional UPDATE: no lock and no
+   * read before the write. The todo is only read when nothing was updated, to tell a conflict from a missing todo.
+   * Fails with IllegalArgumentException when there is nothing to set or the title is blank.
+   */
+  public Future<UpdateResult> update(long userId, long id, long version, String title, Boolean completed) {
+    if (title == null && completed == null) return Future.failedFuture(new IllegalArgumentException("title or completed is required"));
+    if (title != null && title.isBlank()) return Future.failedFuture(new IllegalArgumentException("title must not be blank"));
+    return repo.updateIfVersion(userId, id, version, title, completed)
+        .compose(n -> {
+          if (n > 0) {
+            if (cache != null) cache.updated(userId, id, title, completed, version + 1);
+            return Future.succeededFuture(new UpdateResult(UpdateStatus.UPDATED, version + 1));
+          }
+          return repo.findVersion(userId, id).map(current -> current == null
+              ? new UpdateResult(UpdateStatus.NOT_FOUND, null)
+              : new UpdateResult(UpdateStatus.CONFLICT, current));
+        })
+        .onSuccess(r -> log.info("TodoService.update userId={} id={} ifVersion={} {} version={}", userId, id, version, r.status(), r.version()))
+        .onFailure(err -> {
+          // the row may or may not have changed
+          if (cache != null) cache.invalidate(userId);
+          log.warn("TodoService.update fail userId={} id={}: {}", userId, id, err.getMessage());
+        });
+  }
+
+  /**
+   * Applies the operations in one transaction, one JDBC batch per statement: inserts, then completion changes, then
+   * deletes. An id may appear only once, so the grouping cannot change the outcome. Invalid operations and ids that
+   * are not the user's todos are reported per operation; when {@code atomic}, any such operation rolls back all
+   * others (reported as NOT_APPLIED), otherwise the rest is committed. A database error fails the whole batch.
+   */
+  public Future<List<BatchResult>> batch(long userId, List<BatchOp> ops, boolean atomic) {
+    BatchResult[] results = new BatchResult[ops.size()];
+    List<Integer> creates = new ArrayList<>();
+    List<Integer> marks = new ArrayList<>();
+    List<Integer> deletes = new ArrayList<>();
+    Set<Long> ids = new HashSet<>();
+    boolean invalid = false;
+    for (int i = 0; i < ops.size(); i++) {
+      BatchOp op = ops.get(i);
+      String error = validate(op, ids);
+      if (error != null) {
+        results[i] = new BatchResult(op, BatchStatus.INVALID, null, error);
+        invalid = true;
+      } else if (op.op().equals("create")) {
+        creates.add(i);
+      } else if (op.op().equals("delete")) {
+        deletes.add(i);
+      } else {
+        marks.add(i);
+      }
+    }
+    if ((atomic && invalid) || creates.size() + marks.size() + deletes.size() == 0) {
+      return Future.succeededFuture(notApplied(results, ops));
+    }
+    log.info("TodoService.batch start userId={} creates={} marks={} deletes={} atomic={}",
+        userId, creates.size(), marks.size(), deletes.size(), atomic);
+    return repo.inTransaction(userId, tx -> {
+          Future<List<Todo>> created = creates.isEmpty() ? Future.succeededFuture(List.of())
+              : repo.createTodos(tx, userId, creates.stream().map(i -> ops.get(i).title()).toList());
+          return created.compose(todos -> {
+            for (int j = 0; j < todos.size(); j++) {
+              int i = creates.get(j);
+              results[i] = new BatchResult(ops.get(i), BatchStatus.CREATED, todos.get(j), null);
+            }
+            return marks.isEmpty() ? Future.succeededFuture(new int[0]) : repo.markCompleted(tx, userId,
+                marks.stream().map(i -> ops.get(i).id()).toList(),
+                marks.stream().map(i -> ops.get(i).op().equals("complete")).toList());
+          }).compose(counts -> {
+            counted(results, ops, marks, counts, BatchStatus.UPDATED);
+            return deletes.isEmpty() ? Future.succeededFuture(new int[0])
+                : repo.deleteTodos(tx, userId, deletes.stream().map(i -> ops.get(i).id()).toList());
+          }).compose(counts -> {
+            counted(results, ops, deletes, counts, BatchStatus.DELETED);
+            if (atomic && Arrays.stream(results).anyMatch(r -> !r.applied())) return Future.failedFuture(new Rejected());
+            return Future.succeededFuture(Arrays.asList(results));
+          });
+        })
+        .recover(err -> err instanceof Rejected ? Future.succeededFuture(notApplied(results, ops)) : Future.failedFuture(err))
+        .onComplete(ar -> {
+          // a batch touches many rows of the list: reload it rather than patch it
+          if (cache != null) cache.invalidate(userId);
+        })
+        .onSuccess(list -> log.info("TodoService.batch ok userId={} applied={} of {}",
+            userId, list.stream().filter(BatchResult::applied).count(), list.size()))
+        .onFailure(err -> log.warn("TodoService.batch fail userId={}: {}", userId, err.getMessage()));
+  }
+
+  private static String validate(BatchOp op, Set<Long> ids) {
+    if (op.op() == null) return "op is required";
+    switch (op.op()) {
+      case "create":
+        return op.title() == null || op.title().isBlank() ? "title is required" : null;
+      case "complete":
+      case "uncomplete":
+      case "delete":
+        if (op.id() == null) return "id is required";
+        return ids.add(op.id()) ? null : "id appears more than once in the batch";
+      default:
+        return "unknown op '" + op.op() + "'";
+    }
+  }
+
+  private static void counted(BatchResult[] results, List<BatchOp> ops, List<Integer> indexes, int[] counts, BatchStatus ok) {
+    for (int j = 0; j < indexes.size(); j++) {
+      int i = indexes.get(j);
+      // drivers may report SUCCESS_NO_INFO (-2) instead of a count
+      results[i] = counts[j] != 0
+          ? new BatchResult(ops.get(i), ok, null, null)
+          : new BatchResult(ops.get(i), BatchStatus.NOT_FOUND, null, "todo not found");
+    }
+  }
+
+  // Everything not rejected already is reported as rolled back
+  private static List<BatchResult> notApplied(BatchResult[] results, List<BatchOp> ops) {
+    for (int i = 0; i < results.length; i++) {
+      BatchResult r = results[i];
+      if (r == null || r.applied()) {
+        results[i] = new BatchResult(ops.get(i), BatchStatus.NOT_APPLIED, null, "not applied: another operation failed");
+      }
+    }
+    return Arrays.asList(results);
+  }
+
+  // Rolls an atomic batch back; the per-operation results are already filled in
+  private static final class Rejected extends RuntimeException {
+    Rejected() {
+      super("batch rejected", null, false, false);
+    }
   }
 }
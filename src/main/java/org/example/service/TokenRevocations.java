@@ -0,0 +1,138 @@
+package org.example.service;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.example.cache.BloomFilter;
+import org.example.repository.TokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Revoked access token ids (jti), held in memory so checking a request never queries the database: a Bloom filter
+ * answers "not revoked" for almost every token, and an exact set confirms the rest. Revocations made through this
+ * instance apply at once; those of other instances once {@link #refresh} has read them, which {@link #start} does
+ * every refresh interval.
+ *
+ * A refresh reads the rows revoked since the latest revoked_at it has seen, minus a rescan window: revoked_at is
+ * taken when the row is inserted but the row only becomes visible at commit, so a row can show up behind later ones
+ * already read. Any row committed within the window after its revoked_at is picked up.
+ *
+ * Entries are dropped once their token has expired, since an expired token is rejected anyway.
+ */
+public final class TokenRevocations {
+  private static final Logger log = LoggerFactory.getLogger(TokenRevocations.class);
+  private static final int BATCH = 1000;
+  private static final long DEFAULT_RESCAN_SECONDS = 60;
+  private static final double FALSE_POSITIVE_RATE = 0.01;
+
+  private final TokenRepository repo;
+  private final long expected;
+  // every read goes back this far behind the cursor (re-adding a jti is harmless)
+  private final Duration rescan;
+  // jti -> exp (epoch seconds)
+  private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+  // replaced (under the lock) when pruned or outgrown; adds also take the lock so a rebuild cannot miss one
+  private volatile BloomFilter bloom;
+  // guarded by this
+  private long sizedFor;
+  private long removedSinceRebuild;
+  // latest revoked_at read
+  private volatile Instant cursor = Instant.EPOCH;
+
+  public TokenRevocations(TokenRepository repo, long expected) { this(repo, expected, DEFAULT_RESCAN_SECONDS); }
+
+  /**
+   * @param expected revocations alive at once the filter is sized for; it is rebuilt larger when outgrown
+   * @param rescanSeconds how far each refresh reads back behind the latest revocation it has seen
+   */
+  public TokenRevocations(TokenRepository repo, long expected, long rescanSeconds) {
+    this.repo = repo;
+    this.expected = Math.max(1024, expected);
+    this.rescan = Duration.ofSeconds(Math.max(0, rescanSeconds));
+    this.sizedFor = this.expected;
+    this.bloom = new BloomFilter(sizedFor, FALSE_POSITIVE_RATE);
+  }
+
+  public boolean isRevoked(String jti) {
+    return jti != null && bloom.mightContain(jti) && revoked.containsKey(jti);
+  }
+
+  /** Records the revocation in the database, then applies it here. */
+  public Future<Void> revoke(String jti, long expEpochSeconds) {
+    return repo.revokeJti(jti, Instant.ofEpochSecond(expEpochSeconds)).onSuccess(v -> add(jti, expEpochSeconds));
+  }
+
+  /** Loads every revocation, then refreshes every {@code refreshMs} and deletes expired rows every {@code cleanupMs}. */
+  public Future<Void> start(Vertx vertx, long refreshMs, long cleanupMs) {
+    return refresh().onSuccess(v -> {
+      log.info("Token revocations loaded: {} active", revoked.size());
+      vertx.setPeriodic(Math.max(100, refreshMs), id -> refresh()
+          .onFailure(err -> log.warn("Token revocation refresh failed: {}", err.getMessage())));
+      vertx.setPeriodic(Math.max(1000, cleanupMs), id -> repo.deleteExpired(Instant.now().minus(Duration.ofMinutes(1)))
+          .onFailure(err -> log.warn("Token cleanup failed: {}", err.getMessage())));
+    });
+  }
+
+  /** Reads the revocations added since the last refresh; a call while one is running does nothing. */
+  public Future<Void> refresh() {
+    if (!refreshing.compareAndSet(false, true)) return Future.succeededFuture();
+    Instant since = cursor.equals(Instant.EPOCH) ? cursor : cursor.minus(rescan);
+    return readFrom(since, 0).onComplete(ar -> {
+      prune();
+      refreshing.set(false);
+    });
+  }
+
+  public int size() {
+    return revoked.size();
+  }
+
+  private Future<Void> readFrom(Instant since, long afterId) {
+    return repo.revokedSince(since, afterId, BATCH).compose(rows -> {
+      long now = Instant.now().getEpochSecond();
+      for (TokenRepository.Revocation r : rows) {
+        long exp = r.expiresAt().getEpochSecond();
+        if (exp >= now) add(r.jti(), exp);
+        if (r.revokedAt().isAfter(cursor)) cursor = r.revokedAt();
+      }
+      if (rows.size() < BATCH) return Future.<Void>succeededFuture();
+      TokenRepository.Revocation last = last(rows);
+      return readFrom(last.revokedAt(), last.id());
+    });
+  }
+
+  private synchronized void add(String jti, long exp) {
+    revoked.put(jti, exp);
+    if (revoked.size() > sizedFor) rebuild();
+    else bloom.add(jti);
+  }
+
+  // Drops expired entries; the filter is rebuilt once they are a sizeable part of what it holds
+  private synchronized void prune() {
+    long now = Instant.now().getEpochSecond();
+    int before = revoked.size();
+    revoked.values().removeIf(exp -> exp < now);
+    removedSinceRebuild += before - revoked.size();
+    if (removedSinceRebuild > Math.max(1024, revoked.size())) rebuild();
+  }
+
+  private void rebuild() {
+    sizedFor = Math.max(expected, 2L * revoked.size());
+    BloomFilter fresh = new BloomFilter(sizedFor, FALSE_POSITIVE_RATE);
+    revoked.keySet().forEach(fresh::add);
+    bloom = fresh;
+    removedSinceRebuild = 0;
+  }
+
+  private static <T> T last(List<T> list) {
+    return list.get(list.size() - 1);
+  }
+}
@@ -7,7 +7,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class UserService {
   private static final Logger log = LoggerFactory.getLogger(UserService.class);
@@ -17,14 +16,14 @@ public class UserService {
 
   public Future<List<User>> list() {
     log.info("UserService.list start");
-    return repo.list().map(rows -> rows.stream().map(User::fromRow).collect(Collectors.toList()))
+    return repo.listUsers()
         .onSuccess(list -> log.info("UserService.list ok count={}", list.size()))
         .onFailure(err -> log.warn("UserService.list fail: {}", err.getMessage()));
   }
 
   public Future<User> get(long id) {
     log.info("UserService.get start id={}", id);
-    return repo.findById(id).map(User::fromRow)
+    return repo.findUser(id)
         .onSuccess(u -> log.info("UserService.get ok id={} found={}", id, u != null))
         .onFailure(err -> log.warn("UserService.get fail id={}: {}", id, err.getMessage()));
   }
@@ -33,9 +32,7 @@ public class UserService {
     log.info("UserService.create start name={} email={}", name, email);
     if (name == null || name.isBlank()) return Future.failedFuture("name is required");
     if (email == null || email.isBlank()) return Future.failedFuture("email is required");
-    return repo.create(name, email)
-        .compose(id -> repo.findById(id))
-        .map(User::fromRow)
+    return repo.createUser(name, email)
         .onSuccess(u -> log.info("UserService.create ok id={}", u != null ? u.getId() : null))
         .onFailure(err -> log.warn("UserService.create fail email={}: {}", email, err.getMessage()));
   }
@@ -0,0 +1,18 @@
+package org.example.utils;
+
+/**
+ * {@link PasswordHasher} rejected a hash or check because its threads are busy and its queue is full
+ * (see auth.hasher.*). Callers should answer 503 and ask the client to retry after {@link #getRetryAfterSeconds()}.
+ */
+public class HasherOverloadedException extends RuntimeException {
+  private final long retryAfterSeconds;
+
+  public HasherOverloadedException(String message, long retryAfterSeconds) {
+    super(message, null, false, false);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
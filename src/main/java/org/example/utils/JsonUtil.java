@@ -1,15 +1,44 @@
 package org.example.utils;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import io.vertx.core.buffer.Buffer;
+import org.example.domain.Todo;
+import org.example.domain.User;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * JSON helpers. The {@link Todo} and {@link User} encoders are the response path: they write UTF-8 straight into
+ * the Buffer that is sent (and cached), with no JsonObject per row, no JsonArray and no intermediate String. Each
+ * thread keeps one Jackson generator, with its recycled output buffer, and points it at the Buffer being filled.
+ * The output is the same as encoding {@code toJson()} of each row.
+ */
 public class JsonUtil {
   private static final ObjectMapper mapper = new ObjectMapper()
       .registerModule(new JavaTimeModule())
       .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+  private static final ThreadLocal<Encoder> encoder = ThreadLocal.withInitial(Encoder::new);
+
+  private static final SerializedString ID = new SerializedString("id");
+  private static final SerializedString USER_ID = new SerializedString("user_id");
+  private static final SerializedString TITLE = new SerializedString("title");
+  private static final SerializedString COMPLETED = new SerializedString("completed");
+  private static final SerializedString CREATED_AT = new SerializedString("created_at");
+  private static final SerializedString VERSION = new SerializedString("version");
+  private static final SerializedString NAME = new SerializedString("name");
+  private static final SerializedString EMAIL = new SerializedString("email");
+  // initial Buffer capacity per row; the Buffer grows when a row is longer
+  private static final int TODO_BYTES = 128;
+  private static final int USER_BYTES = 112;
 
   public static String toJson(Object obj) {
     try {
@@ -22,5 +51,127 @@ public class JsonUtil {
   public static Buffer toBuffer(Object obj) {
     return Buffer.buffer(toJson(obj));
   }
-}
 
+  public static Buffer todos(List<Todo> todos) {
+    return encode(2 + todos.size() * TODO_BYTES, g -> {
+      g.writeStartArray();
+      for (Todo t : todos) writeTodo(g, t);
+      g.writeEndArray();
+    });
+  }
+
+  public static Buffer todo(Todo todo) {
+    return encode(TODO_BYTES, g -> writeTodo(g, todo));
+  }
+
+  /** One row of a JSON array written in chunks: "[" before the first row, "," before the others. */
+  public static Buffer todoElement(Todo todo, boolean first) {
+    return encode(1 + TODO_BYTES, g -> {
+      g.writeRaw(first ? '[' : ',');
+      writeTodo(g, todo);
+    });
+  }
+
+  public static Buffer users(List<User> users) {
+    return encode(2 + users.size() * USER_BYTES, g -> {
+      g.writeStartArray();
+      for (User u : users) writeUser(g, u);
+      g.writeEndArray();
+    });
+  }
+
+  public static Buffer user(User user) {
+    return encode(USER_BYTES, g -> writeUser(g, user));
+  }
+
+  private static void writeTodo(JsonGenerator g, Todo t) throws IOException {
+    g.writeStartObject();
+    g.writeFieldName(ID);
+    writeLong(g, t.getId());
+    g.writeFieldName(USER_ID);
+    writeLong(g, t.getUserId());
+    g.writeFieldName(TITLE);
+    g.writeString(t.getTitle());
+    g.writeFieldName(COMPLETED);
+    g.writeBoolean(t.isCompleted());
+    g.writeFieldName(CREATED_AT);
+    writeInstant(g, t.getCreatedAt());
+    g.writeFieldName(VERSION);
+    g.writeNumber(t.getVersion());
+    g.writeEndObject();
+  }
+
+  private static void writeUser(JsonGenerator g, User u) throws IOException {
+    g.writeStartObject();
+    g.writeFieldName(ID);
+    writeLong(g, u.getId());
+    g.writeFieldName(NAME);
+    g.writeString(u.getName());
+    g.writeFieldName(EMAIL);
+    g.writeString(u.getEmail());
+    g.writeFieldName(CREATED_AT);
+    writeInstant(g, u.getCreatedAt());
+    g.writeEndObject();
+  }
+
+  private static void writeLong(JsonGenerator g, Long value) throws IOException {
+    if (value == null) g.writeNull();
+    else g.writeNumber(value);
+  }
+
+  private static void writeInstant(JsonGenerator g, Instant value) throws IOException {
+    if (value == null) g.writeNull();
+    else g.writeString(value.toString());
+  }
+
+  private static Buffer encode(int sizeHint, Writes writes) {
+    return encoder.get().encode(sizeHint, writes);
+  }
+
+  private interface Writes {
+    void write(JsonGenerator g) throws IOException;
+  }
+
+  /** A thread's generator and the Buffer it currently writes to. */
+  private static final class Encoder extends OutputStream {
+    private final JsonGenerator generator;
+    private Buffer target;
+
+    Encoder() {
+      try {
+        generator = mapper.getFactory().createGenerator(this);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      // every encode writes a root value; nothing goes between them
+      generator.setRootValueSeparator(null);
+    }
+
+    Buffer encode(int sizeHint, Writes writes) {
+      Buffer out = Buffer.buffer(sizeHint);
+      target = out;
+      try {
+        writes.write(generator);
+        generator.flush();
+        return out;
+      } catch (IOException | RuntimeException e) {
+        // the generator may hold half a value: start over with a new one
+        encoder.remove();
+        if (e instanceof IOException io) throw new UncheckedIOException(io);
+        throw (RuntimeException) e;
+      } finally {
+        target = null;
+      }
+    }
+
+    @Override
+    public void write(int b) {
+      target.appendByte((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      target.appendBytes(b, off, len);
+    }
+  }
+}
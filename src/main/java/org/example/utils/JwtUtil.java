@@ -1,70 +1,218 @@
 package org.example.utils;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Map;
 
+/**
+ * HS256 tokens. {@link #verifyClaims} is the request path: it works on per-thread buffers and a per-thread
+ * {@link Mac} that is only re-keyed when the secret changes, compares the signature in constant time without
+ * building Strings, and reads just sub, exp and jti with a streaming parser.
+ */
 public class JwtUtil {
   private static final ObjectMapper mapper = new ObjectMapper();
+  private static final JsonFactory json = mapper.getFactory();
+  private static final String HEADER64 = b64Url("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+  private static final byte[] ENCODE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(StandardCharsets.US_ASCII);
+  private static final int[] DECODE = new int[128];
+  private static final int SIG_BYTES = 32;
+  // unpadded base64url of 32 bytes
+  private static final int SIG_CHARS = 43;
+  private static final ThreadLocal<Codec> codec = ThreadLocal.withInitial(Codec::new);
 
-  private static String b64Url(byte[] bytes) {
-    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+  static {
+    Arrays.fill(DECODE, -1);
+    for (int i = 0; i < ENCODE.length; i++) DECODE[ENCODE[i]] = i;
   }
 
-  private static byte[] b64UrlDecode(String s) {
-    return Base64.getUrlDecoder().decode(s);
+  /** Exp of a token that has none. */
+  public static final long NO_EXP = Long.MAX_VALUE;
+
+  /** The claims requests are authorized by; {@code sub} and {@code jti} are null when absent, {@code exp} is {@link #NO_EXP}. */
+  public record Claims(String sub, long exp, String jti) {}
+
+  private static String b64Url(byte[] bytes) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
   }
 
   public static String sign(Map<String, Object> claims, String secret) {
     try {
-      String headerJson = "{\"alg\":\"HS256\",\"typ\":\"JWT\"}";
-      String payloadJson = mapper.writeValueAsString(claims);
-      String header64 = b64Url(headerJson.getBytes(StandardCharsets.UTF_8));
-      String payload64 = b64Url(payloadJson.getBytes(StandardCharsets.UTF_8));
-      String signingInput = header64 + "." + payload64;
-      String sig = hmacSha256(signingInput, secret);
-      return signingInput + "." + sig;
-    } catch (Exception e) {
+      String payload64 = b64Url(mapper.writeValueAsBytes(claims));
+      Codec c = codec.get();
+      int n = HEADER64.length() + 1 + payload64.length();
+      byte[] in = c.input(n + 1 + SIG_CHARS);
+      ascii(HEADER64, in, 0);
+      in[HEADER64.length()] = '.';
+      ascii(payload64, in, HEADER64.length() + 1);
+      in[n] = '.';
+      c.hmac(secret, in, n);
+      encodeSignature(c.sig, in, n + 1);
+      return new String(in, 0, n + 1 + SIG_CHARS, StandardCharsets.US_ASCII);
+    } catch (IOException | GeneralSecurityException e) {
       throw new RuntimeException(e);
     }
   }
 
+  /** All claims of a valid token; prefer {@link #verifyClaims} when only sub, exp and jti are needed. */
   public static Map<String, Object> verify(String token, String secret) {
+    Codec c = check(token, secret);
     try {
-      String[] parts = token.split("\\.");
-      if (parts.length != 3) throw new IllegalArgumentException("Invalid token");
-      String signingInput = parts[0] + "." + parts[1];
-      String expectedSig = hmacSha256(signingInput, secret);
-      if (!constantTimeEquals(expectedSig, parts[2])) throw new IllegalArgumentException("Bad signature");
-      byte[] payloadBytes = b64UrlDecode(parts[1]);
-      @SuppressWarnings("unchecked") Map<String, Object> claims = mapper.readValue(payloadBytes, Map.class);
+      @SuppressWarnings("unchecked") Map<String, Object> claims = mapper.readValue(c.payload, 0, c.payloadLength, Map.class);
       Object exp = claims.get("exp");
-      if (exp instanceof Number) {
-        long expEpoch = ((Number) exp).longValue();
-        if (Instant.now().getEpochSecond() > expEpoch) throw new IllegalArgumentException("Token expired");
-      }
+      if (exp instanceof Number n) checkExp(n.longValue());
       return claims;
-    } catch (Exception e) {
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Invalid token", e);
+    }
+  }
+
+  /** Sub, exp and jti of a valid token; throws IllegalArgumentException when the token is malformed, forged or expired. */
+  public static Claims verifyClaims(String token, String secret) {
+    Codec c = check(token, secret);
+    String sub = null;
+    String jti = null;
+    long exp = NO_EXP;
+    try (JsonParser p = json.createParser(c.payload, 0, c.payloadLength)) {
+      if (p.nextToken() != JsonToken.START_OBJECT) throw new IllegalArgumentException("Invalid token");
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String name = p.currentName();
+        JsonToken value = p.nextToken();
+        if ("sub".equals(name) && value.isScalarValue() && value != JsonToken.VALUE_NULL) sub = p.getValueAsString();
+        else if ("exp".equals(name) && value.isNumeric()) exp = p.getValueAsLong();
+        else if ("jti".equals(name) && value == JsonToken.VALUE_STRING) jti = p.getText();
+        else p.skipChildren();
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Invalid token", e);
+    }
+    if (exp != NO_EXP) checkExp(exp);
+    return new Claims(sub, exp, jti);
+  }
+
+  // Verifies the signature and leaves the decoded payload in the thread's codec
+  private static Codec check(String token, String secret) {
+    int dot1 = token.indexOf('.');
+    int dot2 = dot1 < 0 ? -1 : token.indexOf('.', dot1 + 1);
+    if (dot2 < 0 || token.indexOf('.', dot2 + 1) >= 0) throw new IllegalArgumentException("Invalid token");
+    Codec c = codec.get();
+    byte[] in = c.input(token.length());
+    for (int i = 0; i < dot2; i++) {
+      char ch = token.charAt(i);
+      if (ch >= 128) throw new IllegalArgumentException("Invalid token");
+      in[i] = (byte) ch;
+    }
+    try {
+      c.hmac(secret, in, dot2);
+    } catch (GeneralSecurityException e) {
       throw new RuntimeException(e);
     }
+    encodeSignature(c.sig, c.expected, 0);
+    // the length is not secret; the content is compared without an early exit
+    if (token.length() - dot2 - 1 != SIG_CHARS) throw new IllegalArgumentException("Bad signature");
+    int diff = 0;
+    for (int i = 0; i < SIG_CHARS; i++) diff |= c.expected[i] ^ token.charAt(dot2 + 1 + i);
+    if (diff != 0) throw new IllegalArgumentException("Bad signature");
+    c.decodePayload(in, dot1 + 1, dot2);
+    return c;
   }
 
-  private static String hmacSha256(String data, String secret) throws Exception {
-    Mac mac = Mac.getInstance("HmacSHA256");
-    mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
-    return b64Url(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+  private static void checkExp(long exp) {
+    if (Instant.now().getEpochSecond() > exp) throw new IllegalArgumentException("Token expired");
   }
 
-  private static boolean constantTimeEquals(String a, String b) {
-    if (a.length() != b.length()) return false;
-    int res = 0;
-    for (int i = 0; i < a.length(); i++) res |= a.charAt(i) ^ b.charAt(i);
-    return res == 0;
+  private static void ascii(String s, byte[] out, int offset) {
+    for (int i = 0, n = s.length(); i < n; i++) out[offset + i] = (byte) s.charAt(i);
   }
-}
 
+  // 32 bytes -> 43 base64url chars, no padding
+  private static void encodeSignature(byte[] sig, byte[] out, int offset) {
+    int o = offset;
+    int i = 0;
+    for (; i + 3 <= SIG_BYTES; i += 3) {
+      int b = (sig[i] & 0xff) << 16 | (sig[i + 1] & 0xff) << 8 | (sig[i + 2] & 0xff);
+      out[o++] = ENCODE[b >>> 18];
+      out[o++] = ENCODE[(b >>> 12) & 0x3f];
+      out[o++] = ENCODE[(b >>> 6) & 0x3f];
+      out[o++] = ENCODE[b & 0x3f];
+    }
+    int b = (sig[i] & 0xff) << 8 | (sig[i + 1] & 0xff);
+    out[o++] = ENCODE[b >>> 10];
+    out[o++] = ENCODE[(b >>> 4) & 0x3f];
+    out[o] = ENCODE[(b << 2) & 0x3f];
+  }
+
+  /** Buffers and the keyed Mac of one thread; tokens are verified on the event loop, so these are few. */
+  private static final class Codec {
+    private final Mac mac;
+    private String secret;
+    private final byte[] sig = new byte[SIG_BYTES];
+    private final byte[] expected = new byte[SIG_CHARS];
+    private byte[] input = new byte[512];
+    private byte[] payload = new byte[384];
+    private int payloadLength;
+
+    Codec() {
+      try {
+        mac = Mac.getInstance("HmacSHA256");
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    byte[] input(int length) {
+      if (input.length < length) input = new byte[Math.max(length, input.length * 2)];
+      return input;
+    }
+
+    void hmac(String secret, byte[] data, int length) throws GeneralSecurityException {
+      if (!secret.equals(this.secret)) {
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        this.secret = secret;
+      }
+      mac.update(data, 0, length);
+      mac.doFinal(sig, 0);
+    }
+
+    // base64url (padding optional) from data[from, to) into payload
+    void decodePayload(byte[] data, int from, int to) {
+      while (to > from && data[to - 1] == '=') to--;
+      int n = to - from;
+      if (n % 4 == 1) throw new IllegalArgumentException("Invalid token");
+      int length = n / 4 * 3 + Math.max(0, n % 4 - 1);
+      if (payload.length < length) payload = new byte[Math.max(length, payload.length * 2)];
+      int o = 0;
+      int bits = 0;
+      int count = 0;
+      for (int i = from; i < to; i++) {
+        int d = data[i] < 0 ? -1 : DECODE[data[i]];
+        if (d < 0) throw new IllegalArgumentException("Invalid token");
+        bits = bits << 6 | d;
+        if (++count == 4) {
+          payload[o++] = (byte) (bits >>> 16);
+          payload[o++] = (byte) (bits >>> 8);
+          payload[o++] = (byte) bits;
+          bits = 0;
+          count = 0;
+        }
+      }
+      if (count == 2) {
+        payload[o++] = (byte) (bits >>> 4);
+      } else if (count == 3) {
+        payload[o++] = (byte) (bits >>> 10);
+        payload[o++] = (byte) (bits >>> 2);
+      }
+      payloadLength = o;
+    }
+  }
+}
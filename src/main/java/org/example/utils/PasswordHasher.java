@@ -0,0 +1,103 @@
+package org.example.utils;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * bcrypt off the event loop, on a fixed pool of threads with a bounded queue: a hash or check that finds both full
+ * fails immediately with {@link HasherOverloadedException} instead of piling up behind a login storm. Results
+ * complete on the caller's context.
+ *
+ * New hashes use the configured cost; {@link #needsRehash} tells which stored hashes use another one.
+ */
+public final class PasswordHasher {
+  private final Vertx vertx;
+  private final int cost;
+  private final ThreadPoolExecutor pool;
+  private final LongAdder rejected = new LongAdder();
+
+  /**
+   * @param threads 0 = one per available processor
+   * @param maxQueue hashes waiting for a thread; more are rejected
+   * @param cost bcrypt log rounds of new hashes
+   */
+  public PasswordHasher(Vertx vertx, int threads, int maxQueue, int cost) {
+    this.vertx = vertx;
+    this.cost = cost;
+    int n = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    BlockingQueue<Runnable> queue = maxQueue > 0 ? new ArrayBlockingQueue<>(maxQueue) : new SynchronousQueue<>();
+    AtomicInteger ids = new AtomicInteger();
+    this.pool = new ThreadPoolExecutor(n, n, 0, TimeUnit.MILLISECONDS, queue, r -> {
+      Thread t = new Thread(r, "bcrypt-" + ids.getAndIncrement());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  public Future<String> hash(String password) {
+    if (password == null) return Future.failedFuture(new IllegalArgumentException("password must not be null"));
+    return submit(() -> PasswordUtil.hash(password, cost));
+  }
+
+  public Future<Boolean> verify(String password, String hash) {
+    return submit(() -> PasswordUtil.verify(password, hash));
+  }
+
+  /** Whether {@code hash} was made with another cost than the configured one; rehash it after a successful check. */
+  public boolean needsRehash(String hash) {
+    int stored = PasswordUtil.cost(hash);
+    return stored > 0 && stored != cost;
+  }
+
+  public int cost() {
+    return cost;
+  }
+
+  public int queued() {
+    return pool.getQueue().size();
+  }
+
+  public int running() {
+    return pool.getActiveCount();
+  }
+
+  public long rejected() {
+    return rejected.sum();
+  }
+
+  public void close() {
+    pool.shutdown();
+  }
+
+  private <T> Future<T> submit(Callable<T> task) {
+    Context ctx = vertx.getOrCreateContext();
+    Promise<T> promise = Promise.promise();
+    try {
+      pool.execute(() -> {
+        try {
+          T result = task.call();
+          ctx.runOnContext(v -> promise.complete(result));
+        } catch (Exception e) {
+          ctx.runOnContext(v -> promise.fail(e));
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      rejected.increment();
+      return Future.failedFuture(new HasherOverloadedException("password hashing overloaded: " + pool.getActiveCount()
+          + " running, " + pool.getQueue().size() + " queued", 1));
+    }
+    return promise.future();
+  }
+}
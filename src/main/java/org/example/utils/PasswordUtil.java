@@ -19,6 +19,28 @@ public class PasswordUtil {
     return BCrypt.hashpw(password, BCrypt.gensalt());
   }
 
+  /**
+   * Hashes with an explicit cost; each step doubles the CPU work.
+   * @param logRounds bcrypt cost, 4 to 31
+   */
+  public static String hash(String password, int logRounds) {
+    if (password == null) throw new IllegalArgumentException("password must not be null");
+    return BCrypt.hashpw(password, BCrypt.gensalt(logRounds));
+  }
+
+  /**
+   * The cost a bcrypt hash was made with.
+   * @return log rounds, or -1 if {@code hash} is not a bcrypt hash
+   */
+  public static int cost(String hash) {
+    // $2a$10$<salt and hash>
+    if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$' || hash.charAt(6) != '$') return -1;
+    char tens = hash.charAt(4);
+    char ones = hash.charAt(5);
+    if (tens < '0' || tens > '9' || ones < '0' || ones > '9') return -1;
+    return (tens - '0') * 10 + (ones - '0');
+  }
+
   /**
    * Verifies a plain password against a stored bcrypt hash.
    * @param password plain password
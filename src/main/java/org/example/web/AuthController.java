@@ -2,7 +2,9 @@ package org.example.web;
 
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.SocketAddress;
 import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
 import org.example.service.AuthService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,8 +12,20 @@ import org.slf4j.LoggerFactory;
 public class AuthController implements Controller {
   private static final Logger log = LoggerFactory.getLogger(AuthController.class);
   private final AuthService auth;
+  // null when cache.responses.enabled=false; a registration changes GET /api/users
+  private final ResponseCache responses;
+  // null when auth.throttle.enabled=false
+  private final AuthThrottle throttle;
 
-  public AuthController(AuthService auth) { this.auth = auth; }
+  public AuthController(AuthService auth) { this(auth, null); }
+
+  public AuthController(AuthService auth, ResponseCache responses) { this(auth, responses, null); }
+
+  public AuthController(AuthService auth, ResponseCache responses, AuthThrottle throttle) {
+    this.auth = auth;
+    this.responses = responses;
+    this.throttle = throttle;
+  }
 
   @Override
   public void mount(Router router, Vertx vertx) {
@@ -22,16 +36,16 @@ public class AuthController implements Controller {
       String password = body != null ? body.getString("password") : null;
       // Avoid logging passwords; log minimal context
       log.info("Register attempt for {} from {}", email, ctx.request().remoteAddress());
-      auth.register(name, email, password).onSuccess(row -> {
-        JsonObject out = new JsonObject()
-            .put("id", row.getLong("id"))
-            .put("name", row.getString("name"))
-            .put("email", row.getString("email"))
-            .put("created_at", row.getValue("created_at"));
+      if (throttled(ctx, email)) return;
+      auth.register(name, email, password).onComplete(ar -> {
+        if (responses != null) responses.invalidate(UsersController.USERS_KEY);
+      }).onSuccess(user -> {
+        JsonObject out = user.toJson();
         log.info("Register success for {} (id={})", email, out.getLong("id"));
         ctx.response().setStatusCode(201).putHeader("content-type", "application/json").end(out.encode());
       }).onFailure(err -> {
         log.warn("Register failed for {}: {}", email, err.getMessage());
+        if (overloaded(ctx, err)) return;
         error(ctx, 400, err.getMessage());
       });
     });
@@ -42,17 +56,60 @@ public class AuthController implements Controller {
       String password = body != null ? body.getString("password") : null;
       // Safe logging: do not log the password
       log.info("Login attempt for {} at {} from {}", email, ctx.request().path(), ctx.request().remoteAddress());
-      auth.login(email, password).onSuccess(token -> {
+      if (throttled(ctx, email)) return;
+      auth.login(email, password).onSuccess(tokens -> {
         log.info("Login success for {}", email);
-        ctx.response().putHeader("content-type", "application/json").end(new JsonObject().put("token", token).encode());
+        ctx.response().putHeader("content-type", "application/json").end(tokens.toJson().encode());
       }).onFailure(err -> {
         log.warn("Login failed for {}: {}", email, err.getMessage());
+        if (overloaded(ctx, err)) return;
         error(ctx, 401, "invalid credentials");
       });
     });
+
+    router.post("/api/auth/refresh").handler(ctx -> {
+      JsonObject body = ctx.body().asJsonObject();
+      String refreshToken = body != null ? body.getString("refreshToken") : null;
+      // no bcrypt here, but every attempt is a lookup: limited per IP like logins
+      if (throttled(ctx, null)) return;
+      auth.refresh(refreshToken).onSuccess(tokens ->
+          ctx.response().putHeader("content-type", "application/json").end(tokens.toJson().encode())
+      ).onFailure(err -> {
+        log.warn("Refresh failed from {}: {}", ctx.request().remoteAddress(), err.getMessage());
+        if (overloaded(ctx, err)) return;
+        error(ctx, 401, "invalid refresh token");
+      });
+    });
+
+    // behind AuthHandler (see WebVerticle), which puts the access token's claims on the context
+    router.post("/api/auth/logout").handler(ctx -> {
+      JsonObject body = ctx.body().asJsonObject();
+      String refreshToken = body != null ? body.getString("refreshToken") : null;
+      Long userId = ctx.get("userId");
+      Long exp = ctx.get("tokenExp");
+      auth.logout(userId, ctx.get("jti"), exp, refreshToken).onSuccess(v ->
+          ctx.response().setStatusCode(204).end()
+      ).onFailure(err -> {
+        log.warn("Logout failed for user {}: {}", userId, err.getMessage());
+        if (overloaded(ctx, err)) return;
+        error(ctx, 500, "logout failed");
+      });
+    });
+  }
+
+  // Answers 429 when the client's IP or the email ran out of attempts; checked before any lookup or hashing
+  private boolean throttled(RoutingContext ctx, String email) {
+    if (throttle == null) return false;
+    SocketAddress remote = ctx.request().remoteAddress();
+    long retryAfter = throttle.acquire(remote != null ? remote.host() : null, email);
+    if (retryAfter == 0) return false;
+    log.warn("Auth throttled: email={} remote={} retryAfter={}s", email, remote, retryAfter);
+    ctx.response().putHeader("Retry-After", String.valueOf(retryAfter));
+    error(ctx, 429, "too many attempts, retry later");
+    return true;
   }
 
-  private void error(io.vertx.ext.web.RoutingContext ctx, int code, String msg) {
+  private void error(RoutingContext ctx, int code, String msg) {
     ctx.response().setStatusCode(code).putHeader("content-type", "application/json").end(new JsonObject().put("error", msg).encode());
   }
 }
@@ -1,18 +1,30 @@
 package org.example.web;
 
 import io.vertx.ext.web.RoutingContext;
+import org.example.cache.TokenCache;
 import org.example.config.Config;
+import org.example.service.TokenRevocations;
 import org.example.utils.JwtUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Map;
-
 public class AuthHandler implements io.vertx.core.Handler<RoutingContext> {
   private static final Logger log = LoggerFactory.getLogger(AuthHandler.class);
   private final Config config;
+  // verified tokens; null verifies every request
+  private final TokenCache tokens;
+  // revoked jti; null when tokens cannot be revoked
+  private final TokenRevocations revocations;
+
+  public AuthHandler(Config config) { this(config, null); }
 
-  public AuthHandler(Config config) { this.config = config; }
+  public AuthHandler(Config config, TokenCache tokens) { this(config, tokens, null); }
+
+  public AuthHandler(Config config, TokenCache tokens, TokenRevocations revocations) {
+    this.config = config;
+    this.tokens = tokens;
+    this.revocations = revocations;
+  }
 
   @Override
   public void handle(RoutingContext ctx) {
@@ -24,15 +36,17 @@ public class AuthHandler implements io.vertx.core.Handler<RoutingContext> {
     }
     String token = auth.substring("Bearer ".length());
     try {
-      Map<String,Object> claims = JwtUtil.verify(token, config.getJwtSecret());
-      Object sub = claims.get("sub");
-      if (sub == null) {
+      JwtUtil.Claims claims = claims(token);
+      if (claims.sub() == null) {
         log.warn("Auth denied: no sub claim path={} remote={}", ctx.request().path(), ctx.request().remoteAddress());
         unauthorized(ctx, "Invalid token");
         return;
       }
-      long userId = Long.parseLong(sub.toString());
+      long userId = Long.parseLong(claims.sub());
       ctx.put("userId", userId);
+      // for logout
+      ctx.put("jti", claims.jti());
+      ctx.put("tokenExp", claims.exp());
       log.info("Auth ok: userId={} path={} remote={}", userId, ctx.request().path(), ctx.request().remoteAddress());
       ctx.next();
     } catch (RuntimeException ex) {
@@ -41,6 +55,20 @@ public class AuthHandler implements io.vertx.core.Handler<RoutingContext> {
     }
   }
 
+  // The token's claims; throws when the token is invalid, expired or revoked. Neither path queries the database
+  JwtUtil.Claims claims(String token) {
+    String secret = config.getJwtSecret();
+    JwtUtil.Claims claims = tokens != null ? tokens.claims(token, secret) : null;
+    if (claims == null) {
+      long stamp = tokens != null ? tokens.stamp(token) : 0;
+      claims = JwtUtil.verifyClaims(token, secret);
+      if (tokens != null) tokens.put(token, secret, stamp, claims);
+    }
+    // after the cache: a cached token can be revoked later
+    if (revocations != null && revocations.isRevoked(claims.jti())) throw new IllegalArgumentException("Token revoked");
+    return claims;
+  }
+
   private void unauthorized(RoutingContext ctx, String msg) {
     ctx.response().setStatusCode(401).putHeader("content-type", "application/json").end(new io.vertx.core.json.JsonObject().put("error", msg).encode());
   }
@@ -0,0 +1,116 @@
+package org.example.web;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets for login and registration, one per remote IP and one per email, checked before the request reaches
+ * the database or bcrypt. Buckets live in striped LRU maps of bounded size: a key evicted by newer ones starts over
+ * with a full bucket, so the bound is sized above the number of clients active within a refill period.
+ */
+public final class AuthThrottle {
+  private final Buckets perIp;
+  private final Buckets perEmail;
+  private final LongAdder throttled = new LongAdder();
+
+  /**
+   * @param ipBurst attempts an IP may make at once
+   * @param ipPerMinute attempts an IP regains per minute
+   * @param emailBurst attempts against one email at once, from any IP
+   * @param emailPerMinute attempts per email regained per minute
+   * @param maxKeys buckets kept per kind
+   */
+  public AuthThrottle(int ipBurst, double ipPerMinute, int emailBurst, double emailPerMinute, int maxKeys) {
+    this.perIp = new Buckets(ipBurst, ipPerMinute, maxKeys);
+    this.perEmail = new Buckets(emailBurst, emailPerMinute, maxKeys);
+  }
+
+  /** Takes one attempt from both buckets; returns 0 when allowed, else the seconds until the next attempt is. */
+  public long acquire(String ip, String email) {
+    long now = System.nanoTime();
+    long wait = ip != null ? perIp.acquire(ip, now) : 0;
+    if (wait == 0 && email != null) wait = perEmail.acquire(email.trim().toLowerCase(Locale.ROOT), now);
+    if (wait == 0) return 0;
+    throttled.increment();
+    return Math.max(1, (wait + 999_999_999) / 1_000_000_000);
+  }
+
+  public long throttled() {
+    return throttled.sum();
+  }
+
+  public int size() {
+    return perIp.size() + perEmail.size();
+  }
+
+  private static final class Buckets {
+    private static final int STRIPES = 16;
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    Buckets(int burst, double perMinute, int maxKeys) {
+      this.capacity = Math.max(1, burst);
+      this.tokensPerNano = Math.max(perMinute, 0.001) / 60_000_000_000d;
+      for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe(Math.max(1, maxKeys / STRIPES));
+    }
+
+    // 0 when a token was taken, else the nanoseconds until one is available
+    long acquire(String key, long now) {
+      int h = key.hashCode();
+      Stripe stripe = stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+      synchronized (stripe) {
+        Bucket b = stripe.get(key);
+        if (b == null) {
+          b = new Bucket(capacity, now);
+          stripe.put(key, b);
+        } else {
+          b.tokens = Math.min(capacity, b.tokens + (now - b.updated) * tokensPerNano);
+          b.updated = now;
+        }
+        if (b.tokens >= 1) {
+          b.tokens -= 1;
+          return 0;
+        }
+        return (long) Math.ceil((1 - b.tokens) / tokensPerNano);
+      }
+    }
+
+    int size() {
+      int n = 0;
+      for (Stripe s : stripes) {
+        synchronized (s) {
+          n += s.size();
+        }
+      }
+      return n;
+    }
+  }
+
+  private static final class Stripe extends LinkedHashMap<String, Bucket> {
+    private final int maxKeys;
+
+    Stripe(int maxKeys) {
+      super(16, 0.75f, true);
+      this.maxKeys = maxKeys;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+      return size() > maxKeys;
+    }
+  }
+
+  private static final class Bucket {
+    double tokens;
+    long updated;
+
+    Bucket(double tokens, long updated) {
+      this.tokens = tokens;
+      this.updated = updated;
+    }
+  }
+}
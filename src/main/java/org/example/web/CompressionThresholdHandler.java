@@ -0,0 +1,38 @@
+package org.example.web;
+
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.Locale;
+
+/**
+ * Keeps small responses out of the server's compression, which otherwise compresses every body the client accepts
+ * compressed: below {@code minBytes} the gzip header and the CPU cost outweigh the saving. Responses that may be
+ * compressed get {@code Vary: Accept-Encoding}, so caches keep the encodings apart.
+ */
+public class CompressionThresholdHandler implements io.vertx.core.Handler<RoutingContext> {
+  private final long minBytes;
+
+  public CompressionThresholdHandler(long minBytes) { this.minBytes = minBytes; }
+
+  @Override
+  public void handle(RoutingContext ctx) {
+    ctx.addHeadersEndHandler(v -> {
+      HttpServerResponse response = ctx.response();
+      // already encoded (e.g. the pre-gzipped docs): left alone by the compressor anyway
+      if (response.headers().contains(HttpHeaders.CONTENT_ENCODING)) return;
+      String length = response.headers().get(HttpHeaders.CONTENT_LENGTH);
+      if (length != null && Long.parseLong(length) < minBytes) {
+        // "identity" tells Vert.x not to compress; it is removed before the headers are sent
+        response.putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+      } else {
+        String vary = response.headers().get(HttpHeaders.VARY);
+        if (vary == null || !vary.toLowerCase(Locale.ROOT).contains("accept-encoding")) {
+          response.headers().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+      }
+    });
+    ctx.next();
+  }
+}
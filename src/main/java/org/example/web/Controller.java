@@ -1,8 +1,25 @@
 package org.example.web;
 
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.example.db.DbOverloadedException;
+import org.example.utils.HasherOverloadedException;
 
 public interface Controller {
   void mount(Router router, Vertx vertx);
+
+  /** Answers 503 with Retry-After when the database or the password hasher shed the request; false for other failures. */
+  default boolean overloaded(RoutingContext ctx, Throwable err) {
+    long retryAfter;
+    if (err instanceof DbOverloadedException db) retryAfter = db.getRetryAfterSeconds();
+    else if (err instanceof HasherOverloadedException hasher) retryAfter = hasher.getRetryAfterSeconds();
+    else return false;
+    ctx.response().setStatusCode(503)
+        .putHeader("Retry-After", String.valueOf(retryAfter))
+        .putHeader("content-type", "application/json")
+        .end(new JsonObject().put("error", "service overloaded, retry later").encode());
+    return true;
+  }
 }
@@ -0,0 +1,19 @@
+package org.example.web;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.Router;
+import org.example.metrics.Metrics;
+
+public class MetricsController implements Controller {
+  private final Metrics metrics;
+
+  public MetricsController(Metrics metrics) { this.metrics = metrics; }
+
+  @Override
+  public void mount(Router router, Vertx vertx) {
+    // Prometheus text exposition format
+    router.get("/metrics").handler(ctx -> ctx.response()
+        .putHeader("content-type", "text/plain; version=0.0.4; charset=utf-8")
+        .end(metrics.scrape()));
+  }
+}
@@ -1,22 +1,170 @@
 package org.example.web;
 
+import io.vertx.core.Future;
 import io.vertx.core.Vertx;
-import io.vertx.core.json.JsonObject;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.StaticHandler;
 import org.example.OpenApiSpec;
 
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+
+/**
+ * Serves /openapi.json and the docs page. The spec is generated once the routes are mounted and kept encoded, plain
+ * and gzipped; it is regenerated when the number of routes on the router changes. Docs assets are read and gzipped
+ * on first use and served with a long max-age; both carry an ETag, so If-None-Match is answered with 304.
+ *
+ * Mount it before the server listens, so no request finds the routes missing; when the port is only known after
+ * listening, pass the actual address to {@link #serverUrl(String)}.
+ */
 public class OpenApiBridge implements Controller {
-  private final String serverUrl;
+  static final long DEFAULT_DOCS_MAX_AGE_SECONDS = 86400;
+
+  private volatile String serverUrl;
+  private final long docsMaxAgeSeconds;
+  // webroot files by path below /docs/; only files that exist are kept, so this is bounded by the webroot
+  private final Map<String, Future<Asset>> docs = new ConcurrentHashMap<>();
+  private volatile Spec spec;
+
+  public OpenApiBridge(String serverUrl) {
+    this(serverUrl, DEFAULT_DOCS_MAX_AGE_SECONDS);
+  }
 
-  public OpenApiBridge(String serverUrl) { this.serverUrl = serverUrl; }
+  public OpenApiBridge(String serverUrl, long docsMaxAgeSeconds) {
+    this.serverUrl = serverUrl;
+    this.docsMaxAgeSeconds = docsMaxAgeSeconds;
+  }
 
   @Override
   public void mount(Router router, Vertx vertx) {
-    router.get("/openapi.json").handler(ctx -> {
-      JsonObject spec = OpenApiSpec.build(serverUrl, router);
-      ctx.response().putHeader("content-type", "application/json").end(spec.encode());
+    router.get("/openapi.json").handler(ctx -> spec(router).asset.send(ctx, "no-cache"));
+    router.get("/docs/*").handler(ctx -> docs(ctx, vertx));
+    // whatever the handler above does not serve (directories, missing files)
+    router.route("/docs/*").handler(StaticHandler.create("webroot").setMaxAgeSeconds(docsMaxAgeSeconds));
+    spec(router);
+  }
+
+  /** The server URL the spec advertises from now on; the spec is regenerated on its next request. */
+  public void serverUrl(String serverUrl) {
+    this.serverUrl = serverUrl;
+  }
+
+  private Spec spec(Router router) {
+    // a route added or removed later (e.g. by another controller) changes the count; a replaced route does not
+    int routes = router.getRoutes().size();
+    String url = serverUrl;
+    Spec current = spec;
+    if (current == null || current.routes != routes || !current.serverUrl.equals(url)) {
+      current = new Spec(routes, url, Asset.of(Buffer.buffer(OpenApiSpec.build(url, router).encode()), "application/json"));
+      spec = current;
+    }
+    return current;
+  }
+
+  private void docs(RoutingContext ctx, Vertx vertx) {
+    String path = ctx.normalizedPath().substring("/docs".length());
+    if (path.startsWith("/")) path = path.substring(1);
+    if (path.isEmpty()) path = "index.html";
+    if (path.contains("..") || path.endsWith("/")) {
+      ctx.next();
+      return;
+    }
+    String name = path;
+    Future<Asset> asset = docs.computeIfAbsent(name, n -> vertx.fileSystem().readFile("webroot/" + n)
+        .map(body -> Asset.of(body, contentType(n))));
+    asset.onComplete(ar -> {
+      if (ar.succeeded()) {
+        ar.result().send(ctx, "public, max-age=" + docsMaxAgeSeconds);
+      } else {
+        docs.remove(name, asset);
+        ctx.next();
+      }
     });
-    router.route("/docs/*").handler(StaticHandler.create("webroot"));
+  }
+
+  // Types of the files a docs webroot holds; anything else is served as application/octet-stream
+  private static final Map<String, String> CONTENT_TYPES = Map.of(
+      "html", "text/html; charset=utf-8",
+      "css", "text/css; charset=utf-8",
+      "js", "text/javascript; charset=utf-8",
+      "json", "application/json",
+      "map", "application/json",
+      "svg", "image/svg+xml",
+      "png", "image/png",
+      "ico", "image/x-icon",
+      "woff2", "font/woff2");
+
+  static String contentType(String name) {
+    int dot = name.lastIndexOf('.');
+    String type = dot >= 0 ? CONTENT_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ROOT)) : null;
+    return type != null ? type : "application/octet-stream";
+  }
+
+  // Whether Accept-Encoding allows gzip: listed (or "*") without q=0
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) return false;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.split(";");
+      String name = parts[0].trim();
+      if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) continue;
+      boolean refused = false;
+      for (int i = 1; i < parts.length; i++) {
+        String param = parts[i].trim();
+        if (param.startsWith("q=")) refused = param.substring(2).trim().matches("0(\\.0*)?");
+      }
+      if (!refused) return true;
+    }
+    return false;
+  }
+
+  private record Spec(int routes, String serverUrl, Asset asset) {}
+
+  /** A body kept plain and gzipped, with an ETag per representation. Buffers are shared and never modified. */
+  static final class Asset {
+    final Buffer identity;
+    final Buffer gzip;
+    final String etag;
+    final String gzipEtag;
+    final String contentType;
+
+    private Asset(Buffer identity, Buffer gzip, String contentType) {
+      this.identity = identity;
+      this.gzip = gzip;
+      this.etag = ResponseCache.etag(identity);
+      this.gzipEtag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+      this.contentType = contentType;
+    }
+
+    static Asset of(Buffer identity, String contentType) {
+      return new Asset(identity, ResponseCache.gzip(identity, Deflater.BEST_COMPRESSION), contentType);
+    }
+
+    void send(RoutingContext ctx, String cacheControl) {
+      String acceptEncoding = ctx.request().getHeader(HttpHeaders.ACCEPT_ENCODING);
+      boolean gzipped = acceptsGzip(acceptEncoding);
+      var response = ctx.response()
+          .putHeader(HttpHeaders.ETAG, gzipped ? gzipEtag : etag)
+          .putHeader(HttpHeaders.CACHE_CONTROL, cacheControl)
+          .putHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      // either tag: both representations have the same content
+      String ifNoneMatch = ctx.request().getHeader(HttpHeaders.IF_NONE_MATCH);
+      if (ResponseCache.matches(ifNoneMatch, etag) || ResponseCache.matches(ifNoneMatch, gzipEtag)) {
+        response.setStatusCode(304).end();
+        return;
+      }
+      response.putHeader(HttpHeaders.CONTENT_TYPE, contentType);
+      if (gzipped) {
+        response.putHeader(HttpHeaders.CONTENT_ENCODING, "gzip").end(gzip);
+      } else {
+        // e.g. deflate-only clients: the server would otherwise compress the body under the identity tag
+        if (acceptEncoding != null) response.putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+        response.end(identity);
+      }
+    }
   }
 }
@@ -0,0 +1,27 @@
+package org.example.web;
+
+import io.vertx.ext.web.Route;
+import io.vertx.ext.web.RoutingContext;
+import org.example.metrics.Metrics;
+
+/**
+ * Records the latency of every request by method, route pattern and status. Mount it first so the timing
+ * includes body handling and authentication.
+ */
+public class RequestMetricsHandler implements io.vertx.core.Handler<RoutingContext> {
+  private final Metrics metrics;
+
+  public RequestMetricsHandler(Metrics metrics) { this.metrics = metrics; }
+
+  @Override
+  public void handle(RoutingContext ctx) {
+    long start = System.nanoTime();
+    ctx.addEndHandler(v -> {
+      // the route that ended the response; its pattern keeps ids out of the labels
+      Route route = ctx.currentRoute();
+      String path = route != null && route.getPath() != null ? route.getPath() : "unmatched";
+      metrics.recordRequest(ctx.request().method().name(), path, ctx.response().getStatusCode(), System.nanoTime() - start);
+    });
+    ctx.next();
+  }
+}
@@ -0,0 +1,160 @@
+package org.example.web;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import org.example.cache.CacheStats;
+import org.example.cache.SegmentedLruCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoded JSON bodies of read endpoints, with a strong ETag, keyed by what they depend on (a user id for the todo
+ * list, a constant for the user list). Writes call {@link #invalidate}, which also drops a fill that was loading
+ * concurrently (see {@link SegmentedLruCache#stamp}). Served buffers are shared between responses and never modified.
+ *
+ * The ETag is a 64-bit hash of the body rather than a counter: a rebuilt entry (after a write, eviction, TTL or a
+ * restart, or on another instance) gets the same tag as long as the content is the same, so polling clients keep
+ * getting 304s.
+ *
+ * With server compression on, bodies of at least the compression threshold are gzipped here, once per entry, and sent
+ * pre-encoded under their own tag ({@code "<hash>-gzip"}), as OpenApiBridge does: a strong ETag must not be shared by
+ * two encodings. Their identity form is sent marked so the server does not compress it under the identity tag.
+ */
+public final class ResponseCache {
+  private final SegmentedLruCache<Object, Entry> entries;
+  private final long maxEntryBytes;
+  // -1 when the server does not compress
+  private final long gzipMinBytes;
+
+  public ResponseCache(long maxBytes, long maxEntryBytes, long ttlMs) { this(maxBytes, maxEntryBytes, ttlMs, -1); }
+
+  /**
+   * @param maxBytes total size of cached bodies
+   * @param maxEntryBytes larger bodies are not cached
+   * @param ttlMs bounds how long writes by other instances go unnoticed
+   * @param gzipMinBytes server.compression.minBytes when server compression is on, otherwise -1
+   */
+  public ResponseCache(long maxBytes, long maxEntryBytes, long ttlMs, long gzipMinBytes) {
+    // a gzipped copy is made on first use; JSON lists usually shrink to well under a quarter
+    this.entries = new SegmentedLruCache<>(maxBytes, maxEntryBytes, ttlMs,
+        e -> e.body.length() + (e.gzipEtag != null ? e.body.length() / 4 : 0) + 64);
+    this.maxEntryBytes = maxEntryBytes;
+    this.gzipMinBytes = gzipMinBytes;
+  }
+
+  /** Whether a body of this size can be cached; lets streamed responses stop collecting early. */
+  public boolean fits(long bytes) {
+    return bytes + 64 <= maxEntryBytes;
+  }
+
+  public Entry get(Object key) {
+    return entries.get(key);
+  }
+
+  /** Take before loading the data behind a body; see {@link #put}. */
+  public long stamp(Object key) {
+    return entries.stamp(key);
+  }
+
+  /** Caches {@code body} unless {@code key} was invalidated since {@code stamp}; returns the entry either way. */
+  public Entry put(Object key, long stamp, Buffer body) {
+    Entry e = new Entry(body, gzipMinBytes >= 0 && body.length() >= gzipMinBytes);
+    entries.put(key, e, stamp);
+    return e;
+  }
+
+  public void invalidate(Object key) {
+    entries.invalidate(key);
+  }
+
+  public CacheStats stats() {
+    return entries;
+  }
+
+  /**
+   * Answers 304 when the request's If-None-Match has one of the entry's ETags, otherwise 200 with the cached body,
+   * gzipped when the entry has a gzip form and the client accepts it.
+   */
+  public static void send(RoutingContext ctx, Entry e) {
+    HttpServerResponse response = ctx.response();
+    boolean gzipped = e.gzipEtag != null && OpenApiBridge.acceptsGzip(ctx.request().getHeader(HttpHeaders.ACCEPT_ENCODING));
+    response.putHeader(HttpHeaders.ETAG, gzipped ? e.gzipEtag : e.etag).putHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+    if (e.gzipEtag != null) response.putHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    // either tag: both representations have the same content
+    String ifNoneMatch = ctx.request().getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (matches(ifNoneMatch, e.etag) || (e.gzipEtag != null && matches(ifNoneMatch, e.gzipEtag))) {
+      response.setStatusCode(304).end();
+      return;
+    }
+    response.putHeader("content-type", "application/json");
+    if (gzipped) {
+      response.putHeader(HttpHeaders.CONTENT_ENCODING, "gzip").end(e.gzip());
+    } else {
+      // e.g. deflate-only clients: the server would otherwise compress the body under the identity tag
+      if (e.gzipEtag != null) response.putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.IDENTITY);
+      response.end(e.body);
+    }
+  }
+
+  // If-None-Match is "*" or a comma-separated list of (possibly weak) tags; comparison is weak per RFC 9110
+  static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) return false;
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.startsWith("W/")) tag = tag.substring(2);
+      if (tag.equals("*") || tag.equals(etag)) return true;
+    }
+    return false;
+  }
+
+  // FNV-1a over the body
+  static String etag(Buffer body) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0, n = body.length(); i < n; i++) {
+      h ^= body.getByte(i) & 0xff;
+      h *= 0x100000001b3L;
+    }
+    return '"' + Long.toHexString(h) + '"';
+  }
+
+  static Buffer gzip(Buffer body, int level) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(body.length() / 4 + 64);
+    try (GZIPOutputStream gz = new GZIPOutputStream(out) {{ def.setLevel(level); }}) {
+      gz.write(body.getBytes());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return Buffer.buffer(out.toByteArray());
+  }
+
+  public static final class Entry {
+    final Buffer body;
+    final String etag;
+    // null when the entry is always sent as is
+    final String gzipEtag;
+    private volatile Buffer gzip;
+
+    Entry(Buffer body, boolean compressible) {
+      this.body = body;
+      this.etag = ResponseCache.etag(body);
+      this.gzipEtag = compressible ? etag.substring(0, etag.length() - 1) + "-gzip\"" : null;
+    }
+
+    // made on first use; two racing requests may both compress, with the same result
+    Buffer gzip() {
+      Buffer g = gzip;
+      if (g == null) gzip = g = ResponseCache.gzip(body, Deflater.DEFAULT_COMPRESSION);
+      return g;
+    }
+
+    public String etag() {
+      return etag;
+    }
+  }
+}
@@ -1,33 +1,63 @@
 package org.example.web;
 
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.example.cache.TodoListCache;
+import org.example.db.RowStream;
+import org.example.domain.Todo;
 import org.example.service.TodoService;
+import org.example.utils.JsonUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class TodoController implements Controller {
   private static final Logger log = LoggerFactory.getLogger(TodoController.class);
+  private static final int DEFAULT_MAX_BATCH = 100;
   private final TodoService todoService;
+  // null when cache.responses.enabled=false; keyed by user id
+  private final ResponseCache responses;
+  private final int maxBatch;
+
+  public TodoController(TodoService todoService) { this(todoService, null); }
 
-  public TodoController(TodoService todoService) { this.todoService = todoService; }
+  public TodoController(TodoService todoService, ResponseCache responses) { this(todoService, responses, DEFAULT_MAX_BATCH); }
+
+  public TodoController(TodoService todoService, ResponseCache responses, int maxBatch) {
+    this.todoService = todoService;
+    this.responses = responses;
+    this.maxBatch = maxBatch;
+  }
 
   @Override
   public void mount(Router router, Vertx vertx) {
     router.get("/api/todos").handler(ctx -> {
       Long userId = ctx.get("userId");
       if (userId == null) { log.warn("Todos list unauthorized: path={} remote={}", ctx.request().path(), ctx.request().remoteAddress()); unauthorized(ctx); return; }
-      todoService.list(userId).onSuccess(list -> {
-        JsonArray arr = new JsonArray();
-        list.forEach(t -> arr.add(t.toJson()));
-        log.info("Todos list userId={} count={}", userId, list.size());
-        ctx.response().putHeader("content-type", "application/json").end(arr.encode());
-      }).onFailure(err -> {
-        log.warn("Todos list failed userId={}: {}", userId, err.getMessage());
-        error(ctx, 500, err.getMessage());
-      });
+      ResponseCache.Entry encoded = responses != null ? responses.get(userId) : null;
+      if (encoded != null) {
+        log.info("Todos list userId={} (cached response)", userId);
+        ResponseCache.send(ctx, encoded);
+        return;
+      }
+      long stamp = responses != null ? responses.stamp(userId) : 0;
+      List<Todo> cached = todoService.cached(userId);
+      if (cached != null) {
+        log.info("Todos list userId={} count={} (cached)", userId, cached.size());
+        Buffer body = JsonUtil.todos(cached);
+        if (responses != null) ResponseCache.send(ctx, responses.put(userId, stamp, body));
+        else ctx.response().putHeader("content-type", "application/json").end(body);
+        return;
+      }
+      streamTodos(ctx, userId, stamp);
     });
 
     router.post("/api/todos").handler(ctx -> {
@@ -36,14 +66,190 @@ public class TodoController implements Controller {
       JsonObject body = ctx.body().asJsonObject();
       String title = body != null ? body.getString("title") : null;
       log.info("Todos create start userId={} title='{}'", userId, title);
-      todoService.create(userId, title).onSuccess(t -> {
+      todoService.create(userId, title).onComplete(ar -> {
+        if (responses != null) responses.invalidate(userId);
+      }).onSuccess(t -> {
         log.info("Todos create ok userId={} id={} title='{}'", userId, t.getId(), t.getTitle());
-        ctx.response().setStatusCode(201).putHeader("content-type", "application/json").end(t.toJson().encode());
+        ctx.response().setStatusCode(201).putHeader("content-type", "application/json").putHeader("ETag", t.etag())
+            .end(JsonUtil.todo(t));
       }).onFailure(err -> {
         log.warn("Todos create failed userId={}: {}", userId, err.getMessage());
+        if (overloaded(ctx, err)) return;
         error(ctx, 400, err.getMessage());
       });
     });
+
+    // Optimistic concurrency: If-Match carries the ETag (version) the client last saw; a concurrent change gives 412
+    router.patch("/api/todos/:id").handler(ctx -> {
+      Long userId = ctx.get("userId");
+      if (userId == null) { log.warn("Todos update unauthorized: path={} remote={}", ctx.request().path(), ctx.request().remoteAddress()); unauthorized(ctx); return; }
+      Long id = parseLong(ctx.pathParam("id"));
+      if (id == null) { error(ctx, 400, "Invalid id"); return; }
+      String ifMatch = ctx.request().getHeader("If-Match");
+      if (ifMatch == null) { error(ctx, 428, "If-Match with the todo's ETag is required"); return; }
+      Long version = parseVersion(ifMatch);
+      if (version == null) { error(ctx, 400, "If-Match must be a single ETag of the todo"); return; }
+      JsonObject body;
+      try {
+        body = ctx.body().asJsonObject();
+      } catch (DecodeException e) {
+        body = null;
+      }
+      Object title = body != null ? body.getValue("title") : null;
+      Object completed = body != null ? body.getValue("completed") : null;
+      if ((title != null && !(title instanceof String)) || (completed != null && !(completed instanceof Boolean))) {
+        error(ctx, 400, "title must be a string and completed a boolean");
+        return;
+      }
+      todoService.update(userId, id, version, (String) title, (Boolean) completed).onSuccess(r -> {
+        switch (r.status()) {
+          case UPDATED -> {
+            if (responses != null) responses.invalidate(userId);
+            ctx.response().setStatusCode(204).putHeader("ETag", Todo.etag(r.version())).end();
+          }
+          case CONFLICT -> {
+            log.info("Todos update conflict userId={} id={} ifMatch={} current={}", userId, id, version, r.version());
+            ctx.response().putHeader("ETag", Todo.etag(r.version()));
+            error(ctx, 412, "todo was changed by another request");
+          }
+          case NOT_FOUND -> error(ctx, 404, "Not found");
+        }
+      }).onFailure(err -> {
+        log.warn("Todos update failed userId={} id={}: {}", userId, id, err.getMessage());
+        if (responses != null) responses.invalidate(userId);
+        if (overloaded(ctx, err)) return;
+        if (err instanceof IllegalArgumentException) error(ctx, 400, err.getMessage());
+        else error(ctx, 500, "update failed");
+      });
+    });
+
+    // {"atomic": false, "operations": [{"op": "create", "title": ...}, {"op": "complete", "id": ...}, ...]}
+    router.post("/api/todos/batch").handler(ctx -> {
+      Long userId = ctx.get("userId");
+      if (userId == null) { log.warn("Todos batch unauthorized: path={} remote={}", ctx.request().path(), ctx.request().remoteAddress()); unauthorized(ctx); return; }
+      JsonObject body;
+      try {
+        body = ctx.body().asJsonObject();
+      } catch (DecodeException e) {
+        body = null;
+      }
+      Object operations = body != null ? body.getValue("operations") : null;
+      if (!(operations instanceof JsonArray arr)) { error(ctx, 400, "operations array is required"); return; }
+      if (arr.size() > maxBatch) { error(ctx, 400, "at most " + maxBatch + " operations per batch"); return; }
+      boolean atomic = Boolean.TRUE.equals(body.getValue("atomic"));
+      List<TodoService.BatchOp> ops = new ArrayList<>(arr.size());
+      for (Object o : arr) ops.add(batchOp(o));
+      log.info("Todos batch start userId={} operations={} atomic={}", userId, ops.size(), atomic);
+      todoService.batch(userId, ops, atomic).onComplete(ar -> {
+        if (responses != null) responses.invalidate(userId);
+      }).onSuccess(results -> {
+        JsonArray items = new JsonArray();
+        int applied = 0;
+        for (int i = 0; i < results.size(); i++) {
+          TodoService.BatchResult r = results.get(i);
+          if (r.applied()) applied++;
+          items.add(batchItem(i, r));
+        }
+        boolean rolledBack = atomic && applied < results.size();
+        log.info("Todos batch ok userId={} applied={} of {}", userId, applied, results.size());
+        ctx.response().setStatusCode(rolledBack ? 422 : 200).putHeader("content-type", "application/json")
+            .end(new JsonObject().put("applied", applied).put("results", items).encode());
+      }).onFailure(err -> {
+        log.warn("Todos batch failed userId={}: {}", userId, err.getMessage());
+        if (overloaded(ctx, err)) return;
+        error(ctx, 500, "batch failed");
+      });
+    });
+  }
+
+  private static Long parseLong(String s) { try { return Long.parseLong(s); } catch (NumberFormatException e) { return null; } }
+
+  // Only one strong ETag as sent by this controller ("<version>") is accepted: no lists, weak tags or *
+  private static Long parseVersion(String ifMatch) {
+    String tag = ifMatch.trim();
+    if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') return null;
+    return parseLong(tag.substring(1, tag.length() - 1));
+  }
+
+  private static TodoService.BatchOp batchOp(Object o) {
+    if (!(o instanceof JsonObject op)) return new TodoService.BatchOp(null, null, null);
+    Object id = op.getValue("id");
+    Object title = op.getValue("title");
+    Object kind = op.getValue("op");
+    return new TodoService.BatchOp(kind instanceof String k ? k : null, id instanceof Number n ? n.longValue() : null,
+        title instanceof String t ? t : null);
+  }
+
+  // Each result carries the HTTP status the single-operation request would have had
+  private static JsonObject batchItem(int index, TodoService.BatchResult r) {
+    JsonObject item = new JsonObject().put("index", index).put("op", r.op().op());
+    if (r.op().id() != null) item.put("id", r.op().id());
+    switch (r.status()) {
+      case CREATED -> item.put("status", 201).put("id", r.todo().getId()).put("todo", r.todo().toJson());
+      case UPDATED -> item.put("status", 200);
+      case DELETED -> item.put("status", 204);
+      case INVALID -> item.put("status", 400);
+      case NOT_FOUND -> item.put("status", 404);
+      case NOT_APPLIED -> item.put("status", 424);
+    }
+    if (r.error() != null) item.put("error", r.error());
+    return item;
+  }
+
+  // Writes the list as a chunked JSON array while rows arrive, pausing the DB stream when the socket is backed up.
+  // The body is also collected for the response cache (the ETag comes with the next request, headers are sent already)
+  private void streamTodos(RoutingContext ctx, long userId, long stamp) {
+    HttpServerResponse resp = ctx.response();
+    RowStream<Todo> rows = todoService.stream(userId);
+    if (rows == null) {
+      listTodos(ctx, userId, stamp);
+      return;
+    }
+    TodoListCache.Fill fill = todoService.cacheFill(userId);
+    Buffer[] body = {responses != null ? Buffer.buffer() : null};
+    long[] count = {0};
+    resp.setChunked(true).putHeader("content-type", "application/json");
+    resp.closeHandler(v -> rows.close());
+    rows.exceptionHandler(err -> {
+      log.warn("Todos list failed userId={}: {}", userId, err.getMessage());
+      if (!resp.headWritten()) {
+        if (!overloaded(ctx, err)) error(ctx, 500, err.getMessage());
+      } else {
+        resp.reset();
+      }
+    });
+    rows.endHandler(v -> {
+      log.info("Todos list userId={} count={}", userId, count[0]);
+      if (fill != null) fill.complete();
+      Buffer last = Buffer.buffer(count[0] == 0 ? "[]" : "]");
+      if (body[0] != null) responses.put(userId, stamp, body[0].appendBuffer(last));
+      resp.end(last);
+    });
+    rows.handler(t -> {
+      if (fill != null) fill.add(t);
+      Buffer chunk = JsonUtil.todoElement(t, count[0]++ == 0);
+      if (body[0] != null) body[0] = responses.fits(body[0].length() + chunk.length()) ? body[0].appendBuffer(chunk) : null;
+      resp.write(chunk);
+      if (resp.writeQueueFull()) {
+        rows.pause();
+        resp.drainHandler(d -> rows.resume());
+      }
+    });
+  }
+
+  // Reads the list in one query, which returns its connection right away: used while the open streams are at their limit
+  private void listTodos(RoutingContext ctx, long userId, long stamp) {
+    todoService.list(userId).onComplete(ar -> {
+      if (ar.failed()) {
+        log.warn("Todos list failed userId={}: {}", userId, ar.cause().getMessage());
+        if (!overloaded(ctx, ar.cause())) error(ctx, 500, ar.cause().getMessage());
+        return;
+      }
+      log.info("Todos list userId={} count={} (read at once)", userId, ar.result().size());
+      Buffer body = JsonUtil.todos(ar.result());
+      if (responses != null) ResponseCache.send(ctx, responses.put(userId, stamp, body));
+      else ctx.response().putHeader("content-type", "application/json").end(body);
+    });
   }
 
   private void error(io.vertx.ext.web.RoutingContext ctx, int code, String msg) {
@@ -1,41 +1,59 @@
 package org.example.web;
 
 import io.vertx.core.Vertx;
-import io.vertx.core.json.JsonArray;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import org.example.service.UserService;
+import org.example.utils.JsonUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class UsersController implements Controller {
   private static final Logger log = LoggerFactory.getLogger(UsersController.class);
+  /** Response cache key of GET /api/users. */
+  static final String USERS_KEY = "users";
   private final UserService service;
+  // null when cache.responses.enabled=false
+  private final ResponseCache responses;
 
-  public UsersController(UserService service) { this.service = service; }
+  public UsersController(UserService service) { this(service, null); }
+
+  public UsersController(UserService service, ResponseCache responses) {
+    this.service = service;
+    this.responses = responses;
+  }
 
   @Override
   public void mount(Router router, Vertx vertx) {
-    router.get("/api/users").handler(ctx ->
-        service.list().onSuccess(list -> {
-          JsonArray arr = new JsonArray();
-          list.forEach(u -> arr.add(u.toJson()));
-          log.info("Users list returned {} users", list.size());
-          ctx.response().putHeader("content-type", "application/json").end(arr.encode());
-        }).onFailure(err -> {
-          log.warn("Users list failed: {}", err.getMessage());
-          error(ctx, 500, err.getMessage());
-        })
-    );
+    router.get("/api/users").handler(ctx -> {
+      ResponseCache.Entry encoded = responses != null ? responses.get(USERS_KEY) : null;
+      if (encoded != null) {
+        ResponseCache.send(ctx, encoded);
+        return;
+      }
+      long stamp = responses != null ? responses.stamp(USERS_KEY) : 0;
+      service.list().onSuccess(list -> {
+        Buffer body = JsonUtil.users(list);
+        log.info("Users list returned {} users", list.size());
+        if (responses != null) ResponseCache.send(ctx, responses.put(USERS_KEY, stamp, body));
+        else ctx.response().putHeader("content-type", "application/json").end(body);
+      }).onFailure(err -> {
+        log.warn("Users list failed: {}", err.getMessage());
+        if (overloaded(ctx, err)) return;
+        error(ctx, 500, err.getMessage());
+      });
+    });
 
     router.get("/api/users/:id").handler(ctx -> {
       Long id = parseLong(ctx.pathParam("id"));
       if (id == null) { log.warn("Users get: invalid id '{}'", ctx.pathParam("id")); error(ctx, 400, "Invalid id"); return; }
       service.get(id).onSuccess(u -> {
         if (u == null) { log.warn("Users get: not found id={}", id); error(ctx, 404, "Not found"); }
-        else { log.info("Users get: id={} found", id); ctx.response().putHeader("content-type", "application/json").end(u.toJson().encode()); }
+        else { log.info("Users get: id={} found", id); ctx.response().putHeader("content-type", "application/json").end(JsonUtil.user(u)); }
       }).onFailure(err -> {
         log.warn("Users get failed id={}: {}", id, err.getMessage());
+        if (overloaded(ctx, err)) return;
         error(ctx, 500, err.getMessage());
       });
     });
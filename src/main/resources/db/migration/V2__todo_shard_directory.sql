@@ -0,0 +1,7 @@
+-- Users whose todos were moved off the shard the hash ring assigns them (only used when db.shard.urls is set)
+
+CREATE TABLE IF NOT EXISTS todo_shard_directory (
+  user_id BIGINT PRIMARY KEY,
+  shard INT NOT NULL,
+  moved_at TIMESTAMP NOT NULL
+);
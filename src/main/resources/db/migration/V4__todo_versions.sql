@@ -0,0 +1,4 @@
+-- Row version of each todo, bumped by every update. PATCH /api/todos/:id updates only when the version still
+-- matches the client's If-Match (optimistic concurrency: no locks, no read before the write)
+
+ALTER TABLE todos ADD COLUMN version BIGINT NOT NULL DEFAULT 1;
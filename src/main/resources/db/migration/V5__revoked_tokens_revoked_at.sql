@@ -0,0 +1,3 @@
+-- Other instances read new revocations by revoked_at (see TokenRevocations)
+
+CREATE INDEX idx_revoked_tokens_revoked_at ON revoked_tokens(revoked_at, id);
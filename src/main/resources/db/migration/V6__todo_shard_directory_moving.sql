@@ -0,0 +1,4 @@
+-- Moves mark a user's row before copying; instances re-read changed rows by moved_at (see TodoShards)
+
+ALTER TABLE todo_shard_directory ADD COLUMN moving BOOLEAN NOT NULL DEFAULT FALSE;
+CREATE INDEX idx_todo_shard_directory_moved_at ON todo_shard_directory(moved_at);
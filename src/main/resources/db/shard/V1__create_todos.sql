@@ -0,0 +1,12 @@
+-- Todos table of a single shard (see TodoShards). Ids come from the application (IdGenerator) so they are unique
+-- across shards; users stay in the main database, hence no foreign key
+
+CREATE TABLE IF NOT EXISTS todos (
+  id BIGINT PRIMARY KEY,
+  user_id BIGINT NOT NULL,
+  title VARCHAR(200) NOT NULL,
+  completed BOOLEAN NOT NULL DEFAULT FALSE,
+  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_todos_user ON todos(user_id);
@@ -0,0 +1,3 @@
+-- Row version of each todo, as in the main database's V4 migration
+
+ALTER TABLE todos ADD COLUMN version BIGINT NOT NULL DEFAULT 1;
@@ -0,0 +1,24 @@
+package org.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+  @Test
+  void added_values_are_always_found() {
+    BloomFilter filter = new BloomFilter(10_000, 0.01);
+    for (int i = 0; i < 10_000; i++) filter.add("jti-" + i);
+    for (int i = 0; i < 10_000; i++) assertThat(filter.mightContain("jti-" + i)).isTrue();
+  }
+
+  @Test
+  void false_positive_rate_stays_near_the_target() {
+    BloomFilter filter = new BloomFilter(10_000, 0.01);
+    for (int i = 0; i < 10_000; i++) filter.add("jti-" + i);
+    int falsePositives = 0;
+    for (int i = 0; i < 100_000; i++) if (filter.mightContain("other-" + i)) falsePositives++;
+    assertThat(falsePositives).isLessThan(2_000);
+  }
+}
@@ -0,0 +1,70 @@
+package org.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentedLruCacheTest {
+
+  @Test
+  void frequently_read_entries_survive_a_scan() {
+    SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(10, 10, 0, v -> 1);
+    cache.put("hot", "h", cache.stamp("hot"));
+    cache.get("hot"); // promoted to the protected segment
+
+    for (int i = 0; i < 50; i++) cache.put("scan" + i, "s", cache.stamp("scan" + i));
+
+    assertThat(cache.get("hot")).isEqualTo("h");
+    assertThat(cache.size()).isEqualTo(10);
+    assertThat(cache.evictions()).isEqualTo(41);
+  }
+
+  @Test
+  void fill_is_dropped_when_key_was_written_during_the_load() {
+    SegmentedLruCache<Long, String> cache = new SegmentedLruCache<>(100, 100, 0, v -> 1);
+    long stamp = cache.stamp(1L);
+    cache.invalidate(1L);
+
+    assertThat(cache.put(1L, "stale", stamp)).isFalse();
+    assertThat(cache.get(1L)).isNull();
+    assertThat(cache.put(1L, "fresh", cache.stamp(1L))).isTrue();
+    cache.update(1L, v -> v + "!");
+    assertThat(cache.get(1L)).isEqualTo("fresh!");
+  }
+
+  @Test
+  void oversized_values_and_expired_entries_are_not_returned() throws Exception {
+    SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(100, 5, 50, String::length);
+    assertThat(cache.put("big", "too large", cache.stamp("big"))).isFalse();
+    assertThat(cache.rejections()).isEqualTo(1);
+
+    cache.put("k", "v", cache.stamp("k"));
+    assertThat(cache.get("k")).isEqualTo("v");
+    Thread.sleep(80);
+    assertThat(cache.get("k")).isNull();
+    assertThat(cache.expirations()).isEqualTo(1);
+    assertThat(cache.weight()).isZero();
+    assertThat(cache.hits()).isEqualTo(1);
+    assertThat(cache.misses()).isEqualTo(1);
+  }
+
+  @Test
+  void large_caches_are_striped_and_each_stripe_keeps_its_share() {
+    assertThat(new SegmentedLruCache<String, String>(10, 10, 0, v -> 1).stripes()).isEqualTo(1);
+    assertThat(new SegmentedLruCache<String, String>(1 << 20, 1 << 16, 0, String::length).stripes()).isEqualTo(2);
+    SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(4096, 1, 0, v -> 1);
+    assertThat(cache.stripes()).isEqualTo(16);
+
+    cache.put("hot", "h", cache.stamp("hot"));
+    cache.get("hot");
+    for (int i = 0; i < 20_000; i++) cache.put("scan" + i, "s", cache.stamp("scan" + i));
+
+    assertThat(cache.get("hot")).isEqualTo("h");
+    assertThat(cache.size()).isBetween(4000, 4096);
+    assertThat(cache.weight()).isEqualTo(cache.size());
+    long stamp = cache.stamp("k");
+    cache.clear();
+    assertThat(cache.size()).isZero();
+    assertThat(cache.put("k", "v", stamp)).isFalse();
+  }
+}
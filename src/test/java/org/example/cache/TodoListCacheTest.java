@@ -0,0 +1,44 @@
+package org.example.cache;
+
+import org.example.domain.Todo;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TodoListCacheTest {
+
+  @Test
+  void writes_update_the_cached_list_in_id_order() {
+    TodoListCache cache = new TodoListCache(1 << 20, 1 << 16, 0);
+    cache.put(7L, cache.stamp(7L), List.of(todo(1, "a"), todo(3, "c")));
+
+    cache.created(todo(2, "b"));
+    cache.created(todo(3, "c")); // already there: a load raced with the insert
+    cache.completed(7L, 1, true);
+
+    List<Todo> list = cache.get(7L);
+    assertThat(list).extracting(Todo::getId).containsExactly(1L, 2L, 3L);
+    assertThat(list.get(0).isCompleted()).isTrue();
+  }
+
+  @Test
+  void streamed_list_over_the_user_cap_is_not_cached() {
+    TodoListCache cache = new TodoListCache(1 << 20, 1000, 0);
+    TodoListCache.Fill small = cache.fill(1L);
+    small.add(todo(1, "a"));
+    small.complete();
+    assertThat(cache.get(1L)).hasSize(1);
+
+    TodoListCache.Fill large = cache.fill(2L);
+    for (int i = 0; i < 100; i++) large.add(todo(i, "title " + i));
+    large.complete();
+    assertThat(cache.get(2L)).isNull();
+  }
+
+  private static Todo todo(long id, String title) {
+    return new Todo(id, 7L, title, false, Instant.EPOCH);
+  }
+}
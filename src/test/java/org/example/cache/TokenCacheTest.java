@@ -0,0 +1,51 @@
+package org.example.cache;
+
+import org.example.utils.JwtUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenCacheTest {
+  private static final String TOKEN = "header.payload.signature";
+
+  @Test
+  void hit_needs_the_whole_token_and_the_same_secret() {
+    TokenCache cache = new TokenCache(100);
+    assertThat(cache.claims(TOKEN, "s1")).isNull();
+    cache.put(TOKEN, "s1", cache.stamp(TOKEN), claims(7, inSeconds(60)));
+
+    assertThat(cache.claims(TOKEN, "s1").sub()).isEqualTo("7");
+    // same signature part, different payload
+    assertThat(cache.claims("header.forged.signature", "s1")).isNull();
+  }
+
+  @Test
+  void secret_change_clears_and_drops_fills_verified_with_the_old_secret() {
+    TokenCache cache = new TokenCache(100);
+    cache.claims(TOKEN, "s1");
+    cache.put(TOKEN, "s1", cache.stamp(TOKEN), claims(7, inSeconds(60)));
+    long stamp = cache.stamp("a.b.other");
+
+    assertThat(cache.claims(TOKEN, "s2")).isNull();
+    assertThat(cache.size()).isZero();
+    cache.put("a.b.other", "s1", stamp, claims(8, inSeconds(60)));
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void entries_expire_at_the_token_exp() {
+    TokenCache cache = new TokenCache(100);
+    cache.claims(TOKEN, "s1");
+    cache.put(TOKEN, "s1", cache.stamp(TOKEN), claims(7, inSeconds(-1)));
+    assertThat(cache.claims(TOKEN, "s1")).isNull();
+    assertThat(cache.size()).isZero();
+  }
+
+  private static JwtUtil.Claims claims(long userId, long exp) {
+    return new JwtUtil.Claims(String.valueOf(userId), exp, null);
+  }
+
+  private static long inSeconds(long seconds) {
+    return System.currentTimeMillis() / 1000 + seconds;
+  }
+}
@@ -0,0 +1,61 @@
+package org.example.cache;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import org.example.domain.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserCacheTest {
+
+  @Test
+  void unknown_email_is_looked_up_once_per_negative_ttl() throws Exception {
+    UserCache cache = new UserCache(100, 10_000, 50);
+    AtomicInteger loads = new AtomicInteger();
+    for (int i = 0; i < 5; i++) {
+      assertThat(cache.row("nobody@example.com", () -> counted(loads, null)).result()).isNull();
+    }
+    assertThat(loads).hasValue(1);
+
+    Thread.sleep(80);
+    cache.row("nobody@example.com", () -> counted(loads, null));
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void create_invalidates_and_callers_get_copies() {
+    UserCache cache = new UserCache(100, 10_000, 5_000);
+    AtomicInteger loads = new AtomicInteger();
+    cache.user(1L, () -> counted(loads, null));
+
+    User created = new User(1L, "Ann", "ann@example.com", Instant.EPOCH);
+    cache.invalidate(1L, "ann@example.com");
+    User first = cache.user(1L, () -> counted(loads, created)).result();
+    first.setName("changed by a caller");
+    assertThat(cache.user(1L, () -> counted(loads, created)).result().getName()).isEqualTo("Ann");
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void password_hash_is_purged_after_ttl() throws Exception {
+    UserCache cache = new UserCache(100, 50, 50);
+    JsonObject row = new JsonObject().put("id", 1L).put("email", "ann@example.com").put("password_hash", "$2a$hash")
+        .put("created_at", LocalDateTime.of(2024, 1, 1, 0, 0));
+    assertThat(cache.row("ann@example.com", () -> Future.succeededFuture(row)).result().getString("password_hash")).isEqualTo("$2a$hash");
+    assertThat(cache.emailStats().size()).isEqualTo(1);
+
+    Thread.sleep(80);
+    assertThat(cache.purgeExpired()).isEqualTo(1);
+    assertThat(cache.emailStats().size()).isZero();
+  }
+
+  private static <T> Future<T> counted(AtomicInteger loads, T value) {
+    loads.incrementAndGet();
+    return Future.succeededFuture(value);
+  }
+}
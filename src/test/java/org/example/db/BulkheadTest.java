@@ -0,0 +1,130 @@
+package org.example.db;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.example.config.Config;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.example.db.H2Fixture.await;
+
+class BulkheadTest {
+  private static Vertx vertx;
+  private static JdbcDataSource h2;
+
+  @BeforeAll
+  static void setup() {
+    vertx = Vertx.vertx();
+    h2 = new JdbcDataSource();
+    h2.setURL(H2Fixture.url("bulkheadtest"));
+    h2.setUser("sa");
+  }
+
+  @AfterAll
+  static void teardown() {
+    if (vertx != null) vertx.close();
+  }
+
+  @Test
+  void rejects_beyond_in_flight_and_queue_limits() throws Exception {
+    Database db = new Database(slow(300), vertx, config(2, 2, 5000, 0));
+    List<Future<List<Integer>>> results = new ArrayList<>();
+    for (int i = 0; i < 10; i++) results.add(db.query("SELECT 1", RowMapper.of(rs -> rs.getInt(1))));
+
+    int ok = 0, shed = 0;
+    for (Future<List<Integer>> f : results) {
+      Throwable err = failure(f);
+      if (err == null) ok++;
+      else if (err instanceof DbOverloadedException) shed++;
+    }
+    // 2 run, 2 wait, 6 are turned away
+    assertThat(ok).isEqualTo(4);
+    assertThat(shed).isEqualTo(6);
+    assertThat(db.rejectedOperations()).isEqualTo(6);
+  }
+
+  @Test
+  void queued_operations_time_out() throws Exception {
+    Database db = new Database(slow(500), vertx, config(1, 10, 100, 0));
+    Future<List<Integer>> running = db.query("SELECT 1", RowMapper.of(rs -> rs.getInt(1)));
+    Future<List<Integer>> waiting = db.query("SELECT 1", RowMapper.of(rs -> rs.getInt(1)));
+
+    Throwable err = failure(waiting);
+    assertThat(err).isInstanceOf(DbOverloadedException.class);
+    assertThat(((DbOverloadedException) err).getRetryAfterSeconds()).isEqualTo(1);
+    assertThat(running.isComplete()).isFalse();
+    assertThat(failure(running)).isNull();
+  }
+
+  @Test
+  void limit_shrinks_when_latency_exceeds_target() throws Exception {
+    Database db = new Database(slow(60), vertx, config(8, 2, 5000, 20));
+    assertThat(db.admissionLimit()).isEqualTo(8);
+    for (int i = 0; i < 5; i++) await(db.query("SELECT 1", RowMapper.of(rs -> rs.getInt(1))));
+    assertThat(db.admissionLimit()).isBetween(2, 7);
+
+    Database fast = new Database(h2, vertx, config(8, 2, 5000, 20));
+    for (int i = 0; i < 5; i++) await(fast.query("SELECT 1", RowMapper.of(rs -> rs.getInt(1))));
+    assertThat(fast.admissionLimit()).isEqualTo(8);
+  }
+
+  @Test
+  void rejected_insert_batch_fails_every_caller_without_retrying_rows() throws Exception {
+    Database db = new Database(slow(300), vertx, new Config() {
+      @Override public int getDbBulkheadMaxInFlight() { return 1; }
+      @Override public int getDbBulkheadMaxQueue() { return 0; }
+      @Override public long getDbBulkheadTargetLatencyMs() { return 0; }
+      @Override public long getDbBatchWindowMs() { return 10; }
+    });
+    Future<List<Integer>> running = db.query("SELECT 1", RowMapper.of(rs -> rs.getInt(1)));
+    InsertBatcher batcher = db.batcher("INSERT INTO todos(user_id, title, completed, created_at) VALUES(?, ?, FALSE, CURRENT_TIMESTAMP())");
+    List<Future<Long>> adds = new ArrayList<>();
+    for (int i = 0; i < 3; i++) adds.add(batcher.add(1L, "shed " + i));
+
+    for (Future<Long> f : adds) assertThat(failure(f)).isInstanceOf(DbOverloadedException.class);
+    // the batch was turned away once; its rows were not resubmitted one by one
+    assertThat(db.rejectedOperations()).isEqualTo(1);
+    assertThat(failure(running)).isNull();
+  }
+
+  // H2 behind a getConnection() that takes delayMs, like a MySQL server that stopped keeping up
+  private static DataSource slow(long delayMs) {
+    return (DataSource) Proxy.newProxyInstance(BulkheadTest.class.getClassLoader(), new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+      if (method.getName().equals("getConnection")) Thread.sleep(delayMs);
+      try {
+        return method.invoke(h2, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    });
+  }
+
+  private static Config config(int maxInFlight, int maxQueue, long queueTimeoutMs, long targetLatencyMs) {
+    return new Config() {
+      @Override public int getDbBulkheadMaxInFlight() { return maxInFlight; }
+      @Override public int getDbBulkheadMinInFlight() { return 2; }
+      @Override public int getDbBulkheadMaxQueue() { return maxQueue; }
+      @Override public long getDbBulkheadQueueTimeoutMs() { return queueTimeoutMs; }
+      @Override public long getDbBulkheadTargetLatencyMs() { return targetLatencyMs; }
+    };
+  }
+
+  private static Throwable failure(Future<?> f) throws Exception {
+    try {
+      await(f);
+      return null;
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package org.example.db;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.example.config.Config;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JDBC (worker pool + HikariCP) and reactive MySQL backends of {@link Database}.
+ * Each invocation fires {@code inFlight} concurrent queries and waits for all of them, so the numbers
+ * show how the backends behave once the worker pool / connection pool is the bottleneck.
+ *
+ * Needs a running MySQL (see docker-compose.yml), configured with BENCH_JDBC_URL, BENCH_DB_USER, BENCH_DB_PASS.
+ * Run: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test -Dexec.args="-cp %classpath org.example.db.DatabaseBackendBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DatabaseBackendBenchmark {
+  @Param({"jdbc", "reactive"})
+  public String backend;
+
+  @Param({"1", "64", "512"})
+  public int inFlight;
+
+  private Vertx vertx;
+  private HikariDataSource ds;
+  private Database db;
+  private long userId;
+
+  @Setup
+  public void setup() throws Exception {
+    String url = env("BENCH_JDBC_URL", "jdbc:mysql://localhost:3306/todoapp");
+    String user = env("BENCH_DB_USER", "exampleuser");
+    String pass = env("BENCH_DB_PASS", "examplepass");
+
+    vertx = Vertx.vertx();
+    HikariConfig hc = new HikariConfig();
+    hc.setJdbcUrl(url);
+    hc.setUsername(user);
+    hc.setPassword(pass);
+    hc.setMaximumPoolSize(10);
+    ds = new HikariDataSource(hc);
+    Flyway.configure().dataSource(ds).locations("classpath:db/migration").load().migrate();
+
+    db = "reactive".equals(backend)
+        ? new ReactiveDatabase(ds, vertx, new Config(), ReactiveDatabase.createPool(vertx, ReactiveDatabase.connectOptions(url, user, pass), 10))
+        : new Database(ds, vertx);
+
+    userId = await(db.fetchOne("SELECT id FROM users WHERE email = ?", "alice@example.com")).getLong("id");
+    long existing = await(db.fetchOne("SELECT COUNT(*) AS c FROM todos WHERE user_id = ?", userId)).getLong("c");
+    for (long i = existing; i < 50; i++) {
+      await(db.insert("INSERT INTO todos(user_id, title, completed, created_at) VALUES(?, ?, FALSE, CURRENT_TIMESTAMP())", userId, "bench " + i));
+    }
+  }
+
+  @TearDown
+  public void teardown() {
+    vertx.close().toCompletionStage().toCompletableFuture().join();
+    ds.close();
+  }
+
+  @Benchmark
+  public int listTodos() throws Exception {
+    List<Future<?>> futures = new ArrayList<>(inFlight);
+    for (int i = 0; i < inFlight; i++) {
+      futures.add(db.query("SELECT id, user_id, title, completed, created_at FROM todos WHERE user_id = ? ORDER BY id", userId));
+    }
+    await(Future.all(futures));
+    return futures.size();
+  }
+
+  private static <T> T await(Future<T> f) throws Exception {
+    return f.toCompletionStage().toCompletableFuture().get(60, TimeUnit.SECONDS);
+  }
+
+  private static String env(String key, String def) {
+    String v = System.getenv(key);
+    return v != null && !v.isBlank() ? v : def;
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(DatabaseBackendBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,83 @@
+package org.example.db;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.example.config.Config;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test comparing p50/p99 latency of the Vert.x worker pool and the virtual thread executor.
+ * Every operation runs a query that sleeps inside H2 to emulate a slow round trip, and {@code IN_FLIGHT}
+ * operations are submitted at once. With the worker pool at most 20 run concurrently (default worker pool size);
+ * with virtual threads the Hikari pool size is the only limit.
+ *
+ * Run: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test -Dexec.args="-cp %classpath org.example.db.DatabaseExecutorBenchmark"
+ */
+public class DatabaseExecutorBenchmark {
+  private static final int IN_FLIGHT = Integer.getInteger("bench.inFlight", 2000);
+  private static final int ROUNDS = Integer.getInteger("bench.rounds", 5);
+  private static final int SLEEP_MS = Integer.getInteger("bench.sleepMs", 5);
+  private static final int POOL_SIZE = Integer.getInteger("bench.poolSize", 64);
+
+  public static void main(String[] args) throws Exception {
+    Vertx vertx = Vertx.vertx();
+    HikariConfig hc = new HikariConfig();
+    hc.setJdbcUrl("jdbc:h2:mem:executorbench;MODE=MySQL;DB_CLOSE_DELAY=-1");
+    hc.setUsername("sa");
+    hc.setPassword("");
+    hc.setMaximumPoolSize(POOL_SIZE);
+    HikariDataSource ds = new HikariDataSource(hc);
+    try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+      st.execute("CREATE ALIAS IF NOT EXISTS SLEEP_MS FOR 'java.lang.Thread.sleep(long)'");
+    }
+
+    try {
+      for (String mode : new String[]{"worker", "virtual"}) {
+        Config config = new Config() {
+          @Override public String getDbExecutor() { return mode; }
+        };
+        Database db = new Database(ds, vertx, config);
+        run(db, 1); // warm-up
+        long[] latencies = run(db, ROUNDS);
+        Arrays.sort(latencies);
+        System.out.printf("%-8s in-flight=%d pool=%d sleep=%dms  p50=%.1fms p99=%.1fms max=%.1fms%n",
+            mode, IN_FLIGHT, POOL_SIZE, SLEEP_MS,
+            pct(latencies, 0.50), pct(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+        db.close();
+      }
+    } finally {
+      vertx.close().toCompletionStage().toCompletableFuture().get();
+      ds.close();
+    }
+  }
+
+  private static long[] run(Database db, int rounds) throws Exception {
+    long[] latencies = new long[IN_FLIGHT * rounds];
+    int n = 0;
+    for (int r = 0; r < rounds; r++) {
+      long[] starts = new long[IN_FLIGHT];
+      long[] ends = new long[IN_FLIGHT];
+      List<Future<?>> futures = new ArrayList<>(IN_FLIGHT);
+      for (int i = 0; i < IN_FLIGHT; i++) {
+        int idx = i;
+        starts[i] = System.nanoTime();
+        futures.add(db.query("SELECT SLEEP_MS(?) AS s", SLEEP_MS).onComplete(ar -> ends[idx] = System.nanoTime()));
+      }
+      Future.all(futures).toCompletionStage().toCompletableFuture().get(5, TimeUnit.MINUTES);
+      for (int i = 0; i < IN_FLIGHT; i++) latencies[n++] = ends[i] - starts[i];
+    }
+    return latencies;
+  }
+
+  private static double pct(long[] sorted, double p) {
+    return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+  }
+}
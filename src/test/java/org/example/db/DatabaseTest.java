@@ -0,0 +1,80 @@
+package org.example.db;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.vertx.core.Context;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.example.config.Config;
+import org.example.domain.User;
+import org.example.repository.UserRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.example.db.H2Fixture.await;
+
+class DatabaseTest {
+  static class VirtualConfig extends Config {
+    @Override public String getDbExecutor() { return "virtual"; }
+  }
+
+  private static H2Fixture h2;
+  private static Vertx vertx;
+  private static HikariDataSource ds;
+
+  @BeforeAll
+  static void setup() {
+    h2 = new H2Fixture();
+    vertx = h2.vertx();
+    ds = h2.dataSource("databasetest");
+  }
+
+  @AfterAll
+  static void teardown() throws Exception {
+    if (h2 != null) h2.close();
+  }
+
+  @Test
+  void worker_pool_executor_runs_queries() throws Exception {
+    Database db = new Database(ds, vertx);
+    List<JsonObject> rows = await(db.query("SELECT id, name FROM users WHERE email = ?", "alice@example.com"));
+    assertThat(rows).hasSize(1);
+    assertThat(rows.get(0).getString("name")).isEqualTo("Alice");
+  }
+
+  @Test
+  void virtual_thread_executor_completes_on_caller_context() throws Exception {
+    Database db = new Database(ds, vertx, new VirtualConfig());
+    try {
+      Context ctx = vertx.getOrCreateContext();
+      Promise<Boolean> sameContext = Promise.promise();
+      ctx.runOnContext(v -> db.fetchOne("SELECT id FROM users WHERE email = ?", "bob@example.com")
+          .onSuccess(row -> sameContext.complete(Vertx.currentContext() == ctx && row != null))
+          .onFailure(sameContext::fail));
+      assertThat(await(sameContext.future())).isTrue();
+
+      Long id = await(db.insert("INSERT INTO users(name, email, created_at) VALUES(?, ?, CURRENT_TIMESTAMP())", "Vt", "vt@example.com"));
+      assertThat(id).isNotNull();
+      assertThat(await(db.executeUpdate("UPDATE users SET name = ? WHERE id = ?", "Vt2", id))).isEqualTo(1);
+    } finally {
+      db.close();
+    }
+  }
+
+  @Test
+  void created_user_matches_stored_row_and_duplicate_email_is_detected() throws Exception {
+    UserRepository repo = new UserRepository(new Database(ds, vertx));
+    User created = await(repo.createUserWithPassword("Dup", "dup@example.com", "hash"));
+    User stored = await(repo.findUser(created.getId()));
+    assertThat(stored.getName()).isEqualTo("Dup");
+    assertThat(stored.getCreatedAt()).isEqualTo(created.getCreatedAt());
+
+    Throwable err = catchThrowable(() -> await(repo.createUserWithPassword("Dup", "dup@example.com", "hash")));
+    assertThat(Database.isDuplicateKey(err)).isTrue();
+  }
+}
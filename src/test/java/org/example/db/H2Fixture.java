@@ -0,0 +1,63 @@
+package org.example.db;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.flywaydb.core.Flyway;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vert.x plus in-memory H2 databases in MySQL mode, migrated with Flyway, for tests that run against a database.
+ * Each name is its own database; it lives until the JVM exits, so use a name per test class (or per test run).
+ */
+public final class H2Fixture implements AutoCloseable {
+  public static final String MIGRATIONS = "classpath:db/migration";
+  public static final String SHARD_MIGRATIONS = "classpath:db/shard";
+
+  private final Vertx vertx = Vertx.vertx();
+  private final List<HikariDataSource> sources = new ArrayList<>();
+
+  public Vertx vertx() {
+    return vertx;
+  }
+
+  /** Pool on database {@code name}, migrated from db/migration. */
+  public HikariDataSource dataSource(String name) {
+    return dataSource(name, MIGRATIONS);
+  }
+
+  public HikariDataSource dataSource(String name, String locations) {
+    HikariConfig hc = new HikariConfig();
+    hc.setJdbcUrl(url(name));
+    hc.setUsername("sa");
+    hc.setPassword("");
+    HikariDataSource ds = new HikariDataSource(hc);
+    sources.add(ds);
+    Flyway.configure().dataSource(ds).locations(locations).load().migrate();
+    return ds;
+  }
+
+  /** Database with default settings on a new {@link #dataSource(String)}. */
+  public Database database(String name) {
+    return new Database(dataSource(name), vertx);
+  }
+
+  public static String url(String name) {
+    return "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+  }
+
+  /** Stops Vert.x first, so no timer queries a closed pool, then closes the pools. */
+  @Override
+  public void close() throws Exception {
+    await(vertx.close());
+    sources.forEach(HikariDataSource::close);
+  }
+
+  public static <T> T await(Future<T> f) throws Exception {
+    return f.toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,95 @@
+package org.example.db;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.example.config.Config;
+import org.example.repository.TodoRepository;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of bursts of concurrent todo creates, one INSERT per create versus group commit.
+ * Uses H2 by default; set BENCH_JDBC_URL (plus BENCH_DB_USER/BENCH_DB_PASS) to run against MySQL,
+ * ideally with rewriteBatchedStatements=true.
+ *
+ * Run: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test -Dexec.args="-cp %classpath org.example.db.InsertBatcherBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-bench.xml")
+public class InsertBatcherBenchmark {
+  @Param({"false", "true"})
+  public boolean batched;
+
+  @Param({"1", "32", "256"})
+  public int burst;
+
+  private Vertx vertx;
+  private HikariDataSource ds;
+  private TodoRepository repo;
+  private long userId;
+
+  @Setup
+  public void setup() throws Exception {
+    String url = env("BENCH_JDBC_URL", "jdbc:h2:mem:insertbench;MODE=MySQL;DB_CLOSE_DELAY=-1");
+    String user = env("BENCH_DB_USER", "sa");
+    String pass = env("BENCH_DB_PASS", "");
+    Flyway.configure().dataSource(url, user, pass).locations("classpath:db/migration").load().migrate();
+
+    vertx = Vertx.vertx();
+    HikariConfig hc = new HikariConfig();
+    hc.setJdbcUrl(url);
+    hc.setUsername(user);
+    hc.setPassword(pass);
+    // H2 in MySQL mode can hand out the same AUTO_INCREMENT value to concurrent sessions
+    if (url.startsWith("jdbc:h2:")) hc.setMaximumPoolSize(1);
+    ds = new HikariDataSource(hc);
+
+    Config config = new Config() {
+      @Override public boolean isDbBatchEnabled() { return batched; }
+    };
+    Database db = new Database(ds, vertx, config);
+    repo = new TodoRepository(db, config);
+    userId = db.fetchOne("SELECT id FROM users WHERE email = ?", "alice@example.com")
+        .toCompletionStage().toCompletableFuture().get().getLong("id");
+  }
+
+  @TearDown
+  public void teardown() throws Exception {
+    vertx.close().toCompletionStage().toCompletableFuture().get();
+    ds.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(256)
+  public int createBurst() throws Exception {
+    // normalise to creates/s: every invocation performs 256 creates in bursts of `burst` concurrent calls
+    int done = 0;
+    while (done < 256) {
+      List<Future<?>> futures = new ArrayList<>(burst);
+      for (int i = 0; i < burst && done < 256; i++, done++) futures.add(repo.createTodo(userId, "bench"));
+      Future.all(futures).toCompletionStage().toCompletableFuture().get(60, TimeUnit.SECONDS);
+    }
+    return done;
+  }
+
+  private static String env(String key, String def) {
+    String v = System.getenv(key);
+    return v != null && !v.isBlank() ? v : def;
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(InsertBatcherBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,88 @@
+package org.example.db;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.example.config.Config;
+import org.example.domain.Todo;
+import org.example.repository.TodoRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.example.db.H2Fixture.await;
+
+class InsertBatcherTest {
+  private static final String SQL = "INSERT INTO todos(user_id, title, completed, created_at) VALUES(?, ?, FALSE, CURRENT_TIMESTAMP())";
+
+  static class BatchConfig extends Config {
+    @Override public boolean isDbBatchEnabled() { return true; }
+    @Override public long getDbBatchWindowMs() { return 20; }
+    @Override public int getDbBatchMaxSize() { return 16; }
+  }
+
+  private static H2Fixture h2;
+  private static Vertx vertx;
+  private static HikariDataSource ds;
+  private static Database db;
+  private static long userId;
+
+  @BeforeAll
+  static void setup() throws Exception {
+    h2 = new H2Fixture();
+    vertx = h2.vertx();
+    ds = h2.dataSource("insertbatchertest");
+    db = new Database(ds, vertx, new BatchConfig());
+    userId = await(db.fetchOne("SELECT id FROM users WHERE email = ?", "charlie@example.com")).getLong("id");
+  }
+
+  @AfterAll
+  static void teardown() throws Exception {
+    if (h2 != null) h2.close();
+  }
+
+  @Test
+  void concurrent_adds_get_their_own_ids() throws Exception {
+    InsertBatcher batcher = db.batcher(SQL);
+    List<Future<Long>> futures = new ArrayList<>();
+    for (int i = 0; i < 40; i++) futures.add(batcher.add(userId, "batched " + i));
+    await(Future.all(futures));
+
+    HashSet<Long> ids = new HashSet<>();
+    for (int i = 0; i < futures.size(); i++) {
+      long id = futures.get(i).result();
+      ids.add(id);
+      JsonObject row = await(db.fetchOne("SELECT title FROM todos WHERE id = ?", id));
+      assertThat(row.getString("title")).isEqualTo("batched " + i);
+    }
+    assertThat(ids).hasSize(40);
+  }
+
+  @Test
+  void failing_row_only_fails_its_own_caller() throws Exception {
+    InsertBatcher batcher = db.batcher(SQL);
+    Future<Long> ok1 = batcher.add(userId, "fine 1");
+    Future<Long> bad = batcher.add(userId, null); // title is NOT NULL
+    Future<Long> ok2 = batcher.add(userId, "fine 2");
+    await(Future.join(ok1, bad, ok2).recover(err -> Future.succeededFuture()));
+
+    assertThat(ok1.succeeded()).isTrue();
+    assertThat(ok2.succeeded()).isTrue();
+    assertThat(bad.failed()).isTrue();
+    assertThat(await(db.fetchOne("SELECT title FROM todos WHERE id = ?", ok2.result())).getString("title")).isEqualTo("fine 2");
+  }
+
+  @Test
+  void batched_todo_create_returns_the_stored_row() throws Exception {
+    TodoRepository repo = new TodoRepository(db, new BatchConfig());
+    Todo created = await(repo.createTodo(userId, "group commit"));
+    Todo stored = await(repo.findTodo(userId, created.getId()));
+    assertThat(created.toJson()).isEqualTo(stored.toJson());
+  }
+}
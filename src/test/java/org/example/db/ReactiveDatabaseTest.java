@@ -0,0 +1,86 @@
+package org.example.db;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.mysqlclient.MySQLConnectOptions;
+import io.vertx.sqlclient.Tuple;
+import org.example.domain.Todo;
+import org.example.domain.User;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReactiveDatabaseTest {
+  @Test
+  void connectOptions_are_derived_from_jdbc_url() {
+    MySQLConnectOptions opts = ReactiveDatabase.connectOptions("jdbc:mysql://db.internal:3307/todoapp?useSSL=false", "u", "p");
+    assertThat(opts.getHost()).isEqualTo("db.internal");
+    assertThat(opts.getPort()).isEqualTo(3307);
+    assertThat(opts.getDatabase()).isEqualTo("todoapp");
+    assertThat(opts.getUser()).isEqualTo("u");
+    assertThat(opts.getPassword()).isEqualTo("p");
+  }
+
+  @Test
+  void connectOptions_default_port_when_missing() {
+    MySQLConnectOptions opts = ReactiveDatabase.connectOptions("jdbc:mysql://localhost/todoapp", "u", "p");
+    assertThat(opts.getHost()).isEqualTo("localhost");
+    assertThat(opts.getPort()).isEqualTo(MySQLConnectOptions.DEFAULT_PORT);
+  }
+
+  @Test
+  void tuple_mappers_read_reactive_rows_by_column_index() throws Exception {
+    List<String> columns = List.of("id", "user_id", "title", "completed", "created_at", "version");
+    // as the MySQL client returns them: BOOLEAN is TINYINT(1), TIMESTAMP a LocalDateTime
+    List<Tuple> rows = List.of(
+        Tuple.of(7L, 2L, "first", (byte) 1, LocalDateTime.of(2024, 1, 2, 3, 4, 5), 3L),
+        Tuple.of(8L, null, "second", (byte) 0, null, 1L));
+
+    List<Todo> todos = map(columns, rows, Todo.MAPPER);
+
+    assertThat(todos).hasSize(2);
+    Todo first = todos.get(0);
+    assertThat(first.getId()).isEqualTo(7L);
+    assertThat(first.getUserId()).isEqualTo(2L);
+    assertThat(first.getTitle()).isEqualTo("first");
+    assertThat(first.isCompleted()).isTrue();
+    assertThat(first.getCreatedAt()).isEqualTo(Instant.parse("2024-01-02T03:04:05Z"));
+    assertThat(first.getVersion()).isEqualTo(3L);
+    assertThat(todos.get(1).getUserId()).isNull();
+    assertThat(todos.get(1).isCompleted()).isFalse();
+    assertThat(todos.get(1).getCreatedAt()).isNull();
+
+    assertThatThrownBy(() -> map(columns, rows, User.MAPPER))
+        .isInstanceOf(SQLException.class).hasMessageContaining("name");
+    // JDBC-only mappers leave the query to JDBC
+    assertThat(RowMapper.of(rs -> rs.getLong(1)).tuples()).isNull();
+  }
+
+  private static <T> List<T> map(List<String> columns, List<Tuple> rows, RowMapper<T> mapper) throws SQLException {
+    TupleMapper.Reader<T> reader = mapper.tuples().bind(columns);
+    return rows.stream().map(reader::read).toList();
+  }
+
+  @Test
+  void temporal_values_are_read_as_jdbc_types_that_json_can_encode() {
+    LocalDateTime at = LocalDateTime.of(2024, 1, 2, 3, 4, 5);
+    assertThat(ReactiveDatabase.jdbcValue(at)).isEqualTo(Timestamp.valueOf(at));
+    assertThat(ReactiveDatabase.jdbcValue(LocalDate.of(2024, 1, 2))).isEqualTo(java.sql.Date.valueOf("2024-01-02"));
+    assertThat(ReactiveDatabase.jdbcValue(7L)).isEqualTo(7L);
+    JsonObject row = new JsonObject().put("created_at", ReactiveDatabase.jdbcValue(at));
+    assertThat(new JsonObject(row.encode()).getLong("created_at")).isEqualTo(Timestamp.valueOf(at).getTime());
+  }
+
+  @Test
+  void connectOptions_rejects_non_mysql_url() {
+    assertThatThrownBy(() -> ReactiveDatabase.connectOptions("jdbc:h2:mem:x", "sa", ""))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
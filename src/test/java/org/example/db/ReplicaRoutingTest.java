@@ -0,0 +1,92 @@
+package org.example.db;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.vertx.core.Vertx;
+import io.vertx.sqlclient.Pool;
+import org.example.config.Config;
+import org.example.domain.Todo;
+import org.example.domain.User;
+import org.example.repository.TodoRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.example.db.H2Fixture.await;
+
+class ReplicaRoutingTest {
+  // Two independent H2 databases; nothing replicates between them, which makes the routing visible
+  private static H2Fixture h2;
+  private static Vertx vertx;
+  private static HikariDataSource primary;
+  private static HikariDataSource replica;
+
+  @BeforeAll
+  static void setup() {
+    h2 = new H2Fixture();
+    vertx = h2.vertx();
+    primary = h2.dataSource("replicatest_primary");
+    replica = h2.dataSource("replicatest_replica");
+  }
+
+  @AfterAll
+  static void teardown() throws Exception {
+    if (h2 != null) h2.close();
+  }
+
+  @Test
+  void reads_go_to_the_replica_and_writes_to_the_primary() throws Exception {
+    Database db = new Database(primary, List.of(replica), vertx, config("round-robin", 0));
+    await(db.executeUpdate("UPDATE users SET name = ? WHERE email = ?", "Alice (primary)", "alice@example.com"));
+
+    String name = await(db.fetchOne("SELECT name FROM users WHERE email = ?", "alice@example.com")).getString("name");
+    assertThat(name).isEqualTo("Alice");
+  }
+
+  @Test
+  void user_reads_own_writes_within_the_sticky_window() throws Exception {
+    Database db = new Database(primary, List.of(replica), vertx, config("least-in-flight", 300));
+    TodoRepository repo = new TodoRepository(db);
+    long userId = 2L;
+
+    Todo created = await(repo.createTodo(userId, "sticky"));
+    assertThat(await(repo.findTodo(userId, created.getId()))).isNotNull();
+    // another user is not sticky and reads from the replica, which never saw the insert
+    assertThat(await(repo.findTodo(3L, created.getId()))).isNull();
+
+    Thread.sleep(400);
+    assertThat(await(repo.findTodo(userId, created.getId()))).isNull();
+  }
+
+  @Test
+  void reactive_backend_sends_all_reads_to_the_replicas() throws Exception {
+    await(new Database(primary, vertx).executeUpdate("UPDATE users SET name = ? WHERE email = ?", "Bob (primary)", "bob@example.com"));
+    // nothing listens there: a read that took the reactive pool would fail
+    Pool pool = ReactiveDatabase.createPool(vertx, ReactiveDatabase.connectOptions("jdbc:mysql://127.0.0.1:1/none", "u", "p"), 1);
+    try {
+      Database db = new ReactiveDatabase(primary, List.of(replica), vertx, config("round-robin", 0), pool);
+      assertThat(await(db.fetchOne("SELECT name FROM users WHERE email = ?", "bob@example.com")).getString("name")).isEqualTo("Bob");
+      assertThat(await(db.fetchOne("SELECT id, name, email, created_at FROM users WHERE email = ?", User.MAPPER, "bob@example.com"))
+          .getName()).isEqualTo("Bob");
+    } finally {
+      await(pool.close());
+    }
+  }
+
+  @Test
+  void least_in_flight_spreads_reads_over_replicas() {
+    ReplicaRouter router = new ReplicaRouter(primary, List.of(primary, replica), "least-in-flight", 0);
+    try (ReplicaRouter.Lease first = router.forRead(null); ReplicaRouter.Lease second = router.forRead(null)) {
+      assertThat(first.dataSource()).isNotSameAs(second.dataSource());
+    }
+  }
+
+  private static Config config(String strategy, long stickyMs) {
+    return new Config() {
+      @Override public String getDbReplicaStrategy() { return strategy; }
+      @Override public long getDbReplicaStickyMs() { return stickyMs; }
+    };
+  }
+}
@@ -0,0 +1,67 @@
+package org.example.db;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.example.domain.Todo;
+import org.example.domain.User;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.example.db.H2Fixture.await;
+
+class RowMapperTest {
+  private static H2Fixture h2;
+  private static Vertx vertx;
+  private static Database db;
+  private static long userId;
+
+  @BeforeAll
+  static void setup() throws Exception {
+    h2 = new H2Fixture();
+    vertx = h2.vertx();
+    db = h2.database("rowmappertest");
+    userId = await(db.fetchOne("SELECT id FROM users WHERE email = ?", "alice@example.com")).getLong("id");
+    await(db.insert("INSERT INTO todos(user_id, title, completed, created_at) VALUES(?, ?, FALSE, CURRENT_TIMESTAMP())", userId, "open"));
+    await(db.insert("INSERT INTO todos(user_id, title, completed, created_at) VALUES(?, ?, TRUE, CURRENT_TIMESTAMP())", userId, "done"));
+  }
+
+  @AfterAll
+  static void teardown() throws Exception {
+    if (h2 != null) h2.close();
+  }
+
+  @Test
+  void todo_mapper_matches_json_row_path() throws Exception {
+    String sql = "SELECT id, user_id, title, completed, created_at FROM todos WHERE user_id = ? ORDER BY id";
+    List<Todo> mapped = await(db.query(sql, Todo.MAPPER, userId));
+    List<JsonObject> rows = await(db.query(sql, userId));
+
+    assertThat(mapped).hasSize(rows.size()).hasSize(2);
+    for (int i = 0; i < rows.size(); i++) {
+      assertThat(mapped.get(i).toJson()).isEqualTo(Todo.fromRow(rows.get(i)).toJson());
+    }
+    assertThat(mapped.get(0).isCompleted()).isFalse();
+    assertThat(mapped.get(1).isCompleted()).isTrue();
+    assertThat(mapped.get(1).getCreatedAt()).isNotNull();
+  }
+
+  @Test
+  void user_mapper_matches_json_row_path() throws Exception {
+    String sql = "SELECT id, name, email, created_at FROM users WHERE id = ?";
+    User mapped = await(db.fetchOne(sql, User.MAPPER, userId));
+    User fromJson = User.fromRow(await(db.fetchOne(sql, userId)));
+    assertThat(mapped.toJson()).isEqualTo(fromJson.toJson());
+    assertThat(await(db.fetchOne(sql, User.MAPPER, -1L))).isNull();
+  }
+
+  @Test
+  void missing_column_fails_the_query() {
+    assertThatThrownBy(() -> await(db.query("SELECT id, name FROM users", User.MAPPER)))
+        .hasMessageContaining("email");
+  }
+}
@@ -0,0 +1,110 @@
+package org.example.db;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.sqlclient.Tuple;
+import org.example.domain.Todo;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Reading a 10k-row todo list: JsonObject rows + Todo.fromRow versus the direct Todo.MAPPER.
+ * tupleMapper maps the same rows as the reactive MySQL client returns them with Todo.MAPPER's TupleMapper; there is no
+ * reactive client for H2, so the rows are built up front and only the mapping is measured.
+ * Add -prof gc (via the JMH command line) to compare bytes allocated per operation.
+ *
+ * Run: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test -Dexec.args="-cp %classpath org.example.db.RowMappingBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class RowMappingBenchmark {
+  private static final String SQL = "SELECT id, user_id, title, completed, created_at FROM todos WHERE user_id = ? ORDER BY id";
+
+  @Param({"10000"})
+  public int rows;
+
+  private Vertx vertx;
+  private HikariDataSource ds;
+  private Database db;
+  private long userId;
+  private List<String> columns;
+  private List<Tuple> tuples;
+
+  @Setup
+  public void setup() throws Exception {
+    vertx = Vertx.vertx();
+    HikariConfig hc = new HikariConfig();
+    hc.setJdbcUrl("jdbc:h2:mem:rowmappingbench;MODE=MySQL;DB_CLOSE_DELAY=-1");
+    hc.setUsername("sa");
+    hc.setPassword("");
+    ds = new HikariDataSource(hc);
+    Flyway.configure().dataSource(ds).locations("classpath:db/migration").load().migrate();
+    db = new Database(ds, vertx);
+    userId = await(db.fetchOne("SELECT id FROM users WHERE email = ?", "alice@example.com")).getLong("id");
+    try (Connection c = ds.getConnection();
+         PreparedStatement ps = c.prepareStatement("INSERT INTO todos(user_id, title, completed, created_at) VALUES(?, ?, ?, CURRENT_TIMESTAMP())")) {
+      for (int i = 0; i < rows; i++) {
+        ps.setLong(1, userId);
+        ps.setString(2, "todo " + i);
+        ps.setBoolean(3, i % 3 == 0);
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    }
+    columns = List.of("id", "user_id", "title", "completed", "created_at");
+    // BOOLEAN as TINYINT(1) and TIMESTAMP as LocalDateTime, like the MySQL client
+    tuples = await(db.query(SQL, Todo.MAPPER, userId)).stream()
+        .map(t -> Tuple.of(t.getId(), t.getUserId(), t.getTitle(), (byte) (t.isCompleted() ? 1 : 0),
+            LocalDateTime.ofInstant(t.getCreatedAt(), ZoneOffset.UTC)))
+        .collect(Collectors.toList());
+  }
+
+  @TearDown
+  public void teardown() throws Exception {
+    vertx.close().toCompletionStage().toCompletableFuture().get();
+    ds.close();
+  }
+
+  @Benchmark
+  public List<Todo> jsonObjectRows() throws Exception {
+    return await(db.query(SQL, userId).map(list -> list.stream().map(Todo::fromRow).collect(Collectors.toList())));
+  }
+
+  @Benchmark
+  public List<Todo> rowMapper() throws Exception {
+    return await(db.query(SQL, Todo.MAPPER, userId));
+  }
+
+  @Benchmark
+  public List<Todo> tupleMapper() throws Exception {
+    TupleMapper.Reader<Todo> reader = Todo.MAPPER.tuples().bind(columns);
+    List<Todo> out = new ArrayList<>(tuples.size());
+    for (Tuple row : tuples) out.add(reader.read(row));
+    return out;
+  }
+
+  private static <T> T await(Future<T> f) throws Exception {
+    return f.toCompletionStage().toCompletableFuture().get(60, TimeUnit.SECONDS);
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(RowMappingBenchmark.class.getSimpleName()).build()).run();
+  }
+}
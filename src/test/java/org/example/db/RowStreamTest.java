@@ -0,0 +1,130 @@
+package org.example.db;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import org.example.config.Config;
+import org.example.domain.Todo;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.example.db.H2Fixture.await;
+
+class RowStreamTest {
+  private static final String SQL = "SELECT id, user_id, title, completed, created_at FROM todos WHERE user_id = ? ORDER BY id";
+  private static final int ROWS = 1000;
+
+  private static H2Fixture h2;
+  private static Vertx vertx;
+  private static HikariDataSource ds;
+  private static Database db;
+  private static long userId;
+
+  @BeforeAll
+  static void setup() throws Exception {
+    h2 = new H2Fixture();
+    vertx = h2.vertx();
+    ds = h2.dataSource("rowstreamtest");
+    db = new Database(ds, vertx);
+    userId = await(db.fetchOne("SELECT id FROM users WHERE email = ?", "bob@example.com")).getLong("id");
+    try (Connection c = ds.getConnection();
+         PreparedStatement ps = c.prepareStatement("INSERT INTO todos(user_id, title, completed, created_at) VALUES(?, ?, FALSE, CURRENT_TIMESTAMP())")) {
+      for (int i = 0; i < ROWS; i++) {
+        ps.setLong(1, userId);
+        ps.setString(2, "todo " + i);
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    }
+  }
+
+  @AfterAll
+  static void teardown() throws Exception {
+    if (h2 != null) h2.close();
+  }
+
+  @Test
+  void streams_all_rows_in_order_with_backpressure() throws Exception {
+    List<String> titles = new ArrayList<>();
+    Promise<Void> done = Promise.promise();
+    vertx.runOnContext(v -> {
+      RowStream<Todo> stream = db.stream(16, SQL, Todo.MAPPER, userId);
+      stream.exceptionHandler(done::tryFail);
+      stream.endHandler(e -> done.tryComplete());
+      stream.handler(t -> {
+        titles.add(t.getTitle());
+        // pause after every row and resume a bit later, like a slow HTTP client would
+        stream.pause();
+        vertx.setTimer(1, id -> stream.resume());
+      });
+    });
+    await(done.future());
+
+    assertThat(titles).hasSize(ROWS);
+    assertThat(titles.get(0)).isEqualTo("todo 0");
+    assertThat(titles.get(ROWS - 1)).isEqualTo("todo " + (ROWS - 1));
+    assertThat(ds.getHikariPoolMXBean().getActiveConnections()).isZero();
+  }
+
+  @Test
+  void close_releases_connection_early() throws Exception {
+    Promise<Integer> closed = Promise.promise();
+    vertx.runOnContext(v -> {
+      RowStream<Todo> stream = db.stream(8, SQL, Todo.MAPPER, userId);
+      int[] seen = {0};
+      stream.endHandler(e -> closed.tryFail("stream should not end after close"));
+      stream.handler(t -> {
+        if (++seen[0] == 10) stream.close().onComplete(ar -> closed.tryComplete(seen[0]));
+      });
+    });
+    assertThat(await(closed.future())).isEqualTo(10);
+    // release happens on the blocking executor; give it a moment
+    for (int i = 0; i < 50 && ds.getHikariPoolMXBean().getActiveConnections() > 0; i++) Thread.sleep(20);
+    assertThat(ds.getHikariPoolMXBean().getActiveConnections()).isZero();
+  }
+
+  @Test
+  void failing_query_reports_to_exception_handler() throws Exception {
+    Promise<Throwable> failed = Promise.promise();
+    vertx.runOnContext(v -> db.stream("SELECT nope FROM todos", Todo.MAPPER)
+        .exceptionHandler(failed::tryComplete)
+        .endHandler(e -> failed.tryFail("unexpected end"))
+        .handler(t -> {}));
+    assertThat(await(failed.future())).isNotNull();
+  }
+
+  @Test
+  void stalled_stream_fails_and_frees_its_connection_and_slot() throws Exception {
+    Database capped = new Database(ds, vertx, new Config() {
+      @Override public int getDbStreamMaxOpen() { return 1; }
+      @Override public long getDbStreamStallTimeoutMs() { return 200; }
+    });
+    Promise<Throwable> failed = Promise.promise();
+    Promise<Boolean> secondRefused = Promise.promise();
+    vertx.runOnContext(v -> {
+      RowStream<Todo> stream = capped.tryStream(SQL, Todo.MAPPER, userId);
+      secondRefused.complete(capped.tryStream(SQL, Todo.MAPPER, userId) == null);
+      stream.exceptionHandler(failed::tryComplete);
+      stream.endHandler(e -> failed.tryFail("stream should not end while paused"));
+      // a client that stops reading after the first row
+      stream.handler(t -> stream.pause());
+    });
+    assertThat(await(secondRefused.future())).isTrue();
+    assertThat(await(failed.future())).isInstanceOf(TimeoutException.class);
+
+    for (int i = 0; i < 50 && (capped.openStreams() > 0 || ds.getHikariPoolMXBean().getActiveConnections() > 0); i++) Thread.sleep(20);
+    assertThat(capped.openStreams()).isZero();
+    assertThat(ds.getHikariPoolMXBean().getActiveConnections()).isZero();
+    RowStream<Todo> again = capped.tryStream(SQL, Todo.MAPPER, userId);
+    assertThat(again).isNotNull();
+    await(again.close());
+  }
+}
@@ -0,0 +1,86 @@
+package org.example.db;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.example.domain.User;
+import org.example.repository.UserRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class TransactionTest {
+  private static H2Fixture h2;
+  private static Vertx vertx;
+  private static Database db;
+
+  @BeforeAll
+  static void setup() {
+    h2 = new H2Fixture();
+    vertx = h2.vertx();
+    db = h2.database("transactiontest");
+  }
+
+  @AfterAll
+  static void teardown() throws Exception {
+    if (h2 != null) h2.close();
+  }
+
+  @Test
+  void commits_and_keeps_writes_private_until_then() throws Exception {
+    UserRepository users = new UserRepository(db);
+    User created = await(users.inTransaction("tx1@example.com", tx ->
+        users.createUserWithPassword(tx, "Tx", "tx1@example.com", "hash").compose(user ->
+            // same connection sees the row, a pooled one does not before the commit
+            users.findByEmail(tx, "tx1@example.com").compose(inside -> users.findByEmail("tx1@example.com").map(outside -> {
+              assertThat(inside.getLong("id")).isEqualTo(user.getId());
+              assertThat(outside).isNull();
+              return user;
+            })))));
+
+    assertThat(await(users.findUser(created.getId()))).isNotNull();
+  }
+
+  @Test
+  void rolls_back_every_statement_when_one_fails() throws Exception {
+    UserRepository users = new UserRepository(db);
+    Throwable err = catchThrowable(() -> await(db.inTransaction(tx ->
+        users.createUserWithPassword(tx, "First", "tx2@example.com", "hash")
+            .compose(u -> users.createUserWithPassword(tx, "Second", "tx2@example.com", "hash")))));
+
+    assertThat(Database.isDuplicateKey(err)).isTrue();
+    assertThat(await(users.findByEmail("tx2@example.com"))).isNull();
+  }
+
+  @Test
+  void statements_run_in_call_order_and_handle_expires() throws Exception {
+    AtomicReference<Transaction> handle = new AtomicReference<>();
+    JsonObject row = await(db.inTransaction(Connection.TRANSACTION_SERIALIZABLE, tx -> {
+      handle.set(tx);
+      // not chained: the transaction still runs them one after the other
+      tx.executeUpdate("INSERT INTO users(name, email, created_at) VALUES(?, ?, CURRENT_TIMESTAMP())", "Order", "tx3@example.com");
+      tx.executeUpdate("UPDATE users SET name = ? WHERE email = ?", "Ordered", "tx3@example.com");
+      return tx.fetchOne("SELECT name FROM users WHERE email = ?", "tx3@example.com");
+    }));
+    assertThat(row.getString("name")).isEqualTo("Ordered");
+
+    Throwable err = catchThrowable(() -> await(handle.get().query("SELECT 1")));
+    assertThat(err).isInstanceOf(IllegalStateException.class);
+  }
+
+  private static <T> T await(Future<T> f) throws Exception {
+    try {
+      return H2Fixture.await(f);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+      throw e;
+    }
+  }
+}
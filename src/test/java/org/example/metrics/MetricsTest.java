@@ -0,0 +1,54 @@
+package org.example.metrics;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.client.WebClient;
+import org.example.web.MetricsController;
+import org.example.web.RequestMetricsHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetricsTest {
+  @Test
+  void statements_are_exposed_as_prometheus_summaries() {
+    Metrics metrics = new Metrics();
+    for (int i = 1; i <= 100; i++) metrics.recordStatement("SELECT id\n  FROM todos WHERE user_id = ?", i * 1_000_000L, true);
+    metrics.recordStatement("SELECT id FROM todos WHERE user_id = ?", 5_000_000L, false);
+    metrics.gauge("test_gauge", "A gauge", "pool=\"a\"", () -> 3);
+
+    String text = metrics.scrape();
+    String labels = "statement=\"SELECT id FROM todos WHERE user_id = ?\"";
+    assertThat(text).contains("# TYPE db_statement_seconds summary");
+    assertThat(text).contains("db_statement_seconds_count{" + labels + "} 101");
+    assertThat(text).contains("db_statement_errors_total{" + labels + "} 1");
+    assertThat(text).containsPattern("db_statement_seconds\\{" + java.util.regex.Pattern.quote(labels) + ",quantile=\"0.5\"} 0\\.05\\d*");
+    assertThat(text).contains("test_gauge{pool=\"a\"} 3");
+  }
+
+  @Test
+  void requests_are_labelled_with_the_route_pattern() throws Exception {
+    Vertx vertx = Vertx.vertx();
+    try {
+      Metrics metrics = new Metrics();
+      Router router = Router.router(vertx);
+      router.route().handler(new RequestMetricsHandler(metrics));
+      router.get("/items/:id").handler(ctx -> ctx.response().end(ctx.pathParam("id")));
+      new MetricsController(metrics).mount(router, vertx);
+      int port = vertx.createHttpServer().requestHandler(router).listen(0)
+          .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS).actualPort();
+
+      WebClient client = WebClient.create(vertx);
+      for (int id = 0; id < 3; id++) {
+        client.request(HttpMethod.GET, port, "localhost", "/items/" + id).send().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+      }
+      String text = client.get(port, "localhost", "/metrics").send().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS).bodyAsString();
+      assertThat(text).contains("http_server_request_seconds_count{method=\"GET\",route=\"/items/:id\",status=\"200\"} 3");
+    } finally {
+      vertx.close();
+    }
+  }
+}
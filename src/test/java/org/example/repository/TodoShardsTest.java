@@ -0,0 +1,139 @@
+package org.example.repository;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.example.db.Database;
+import org.example.db.DbOverloadedException;
+import org.example.db.H2Fixture;
+import org.example.db.IdGenerator;
+import org.example.domain.Todo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.example.db.H2Fixture.await;
+
+class TodoShardsTest {
+  private H2Fixture h2;
+  private Vertx vertx;
+  private Database main;
+  private final List<Database> shardDbs = new ArrayList<>();
+
+  @BeforeEach
+  void setup() {
+    h2 = new H2Fixture();
+    vertx = h2.vertx();
+    String run = UUID.randomUUID().toString().substring(0, 8);
+    main = h2.database("shardmain_" + run);
+    for (int i = 0; i < 3; i++) shardDbs.add(new Database(h2.dataSource("shard" + i + "_" + run, H2Fixture.SHARD_MIGRATIONS), vertx));
+  }
+
+  @AfterEach
+  void teardown() throws Exception {
+    h2.close();
+  }
+
+  @Test
+  void todos_are_stored_on_the_users_shard_with_unique_ids() throws Exception {
+    TodoShards shards = shards(3);
+    TodoRepository repo = new TodoRepository(shards);
+    List<Long> ids = new ArrayList<>();
+    for (long userId = 1; userId <= 3; userId++) {
+      ids.add(await(repo.createTodo(userId, "todo of " + userId)).getId());
+      int shard = shards.shardOf(userId);
+      assertThat(await(shardDbs.get(shard).query("SELECT id FROM todos WHERE user_id = ?", userId))).hasSize(1);
+      assertThat(await(repo.listTodos(userId))).extracting(Todo::getTitle).containsExactly("todo of " + userId);
+    }
+    assertThat(ids).doesNotHaveDuplicates();
+  }
+
+  @Test
+  void moved_user_keeps_todos_and_writes_during_the_move_land_on_the_target() throws Exception {
+    TodoShards shards = shards(3);
+    TodoRepository repo = new TodoRepository(shards);
+    long userId = 1;
+    for (int i = 0; i < 3; i++) await(repo.createTodo(userId, "t" + i));
+    int source = shards.shardOf(userId);
+    int target = (source + 1) % 3;
+
+    Future<Void> move = shards.moveUser(userId, target);
+    // issued while the move holds the user's writes
+    Future<Todo> during = repo.createTodo(userId, "during move");
+    await(move);
+    await(during);
+
+    assertThat(shards.shardOf(userId)).isEqualTo(target);
+    assertThat(await(repo.listTodos(userId))).extracting(Todo::getTitle).containsExactly("t0", "t1", "t2", "during move");
+    assertThat(await(shardDbs.get(source).query("SELECT id FROM todos WHERE user_id = ?", userId))).isEmpty();
+
+    // the placement survives a restart through todo_shard_directory
+    TodoShards restarted = shards(3);
+    await(restarted.loadDirectory());
+    assertThat(restarted.shardOf(userId)).isEqualTo(target);
+  }
+
+  @Test
+  void other_instances_refuse_writes_while_a_user_is_moved_and_then_follow_the_move() throws Exception {
+    TodoShards mover = shards(3);
+    TodoShards server = shards(3);
+    await(mover.start(vertx, 100, 100));
+    await(server.start(vertx, 100, 100));
+    TodoRepository repo = new TodoRepository(server);
+    long userId = 1;
+    await(repo.createTodo(userId, "before"));
+    int source = server.shardOf(userId);
+    int target = (source + 1) % 3;
+
+    Future<Void> move = mover.moveUser(userId, target);
+    List<String> written = new ArrayList<>(List.of("before"));
+    Throwable refused = null;
+    for (int i = 0; refused == null && i < 100; i++) {
+      try {
+        written.add(await(repo.createTodo(userId, "w" + i)).getTitle());
+        Thread.sleep(20);
+      } catch (ExecutionException e) {
+        refused = e.getCause();
+      }
+    }
+    assertThat(refused).isInstanceOf(DbOverloadedException.class);
+    await(move);
+
+    for (int i = 0; i < 100 && server.shardOf(userId) != target; i++) Thread.sleep(20);
+    assertThat(server.shardOf(userId)).isEqualTo(target);
+    written.add(await(repo.createTodo(userId, "after")).getTitle());
+    assertThat(await(repo.listTodos(userId))).extracting(Todo::getTitle).containsExactlyElementsOf(written);
+    assertThat(await(shardDbs.get(source).query("SELECT id FROM todos WHERE user_id = ?", userId))).isEmpty();
+  }
+
+  @Test
+  void rebalance_moves_users_whose_owner_changes_when_the_ring_grows() throws Exception {
+    List<Long> userIds = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      userIds.add(await(main.insert("INSERT INTO users(name, email) VALUES(?, ?)", "u" + i, "u" + i + "@example.com")));
+    }
+    TodoShards small = shards(2);
+    TodoRepository repo = new TodoRepository(small);
+    for (long userId : userIds) await(repo.createTodo(userId, "u" + userId));
+
+    TodoShards grown = shards(3);
+    long expectedMoves = userIds.stream().filter(id -> grown.ringOwner(id) != small.shardOf(id)).count();
+    assertThat(expectedMoves).isPositive();
+    assertThat(await(small.rebalance(3))).isEqualTo((int) expectedMoves);
+
+    await(grown.loadDirectory());
+    TodoRepository after = new TodoRepository(grown);
+    for (long userId : userIds) {
+      assertThat(await(after.listTodos(userId))).extracting(Todo::getTitle).containsExactly("u" + userId);
+    }
+  }
+
+  private TodoShards shards(int ringSize) {
+    return new TodoShards(main, shardDbs, ringSize, 64, new IdGenerator(1));
+  }
+}
@@ -0,0 +1,93 @@
+package org.example.service;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.example.config.Config;
+import org.example.db.Database;
+import org.example.db.H2Fixture;
+import org.example.repository.TokenRepository;
+import org.example.repository.UserRepository;
+import org.example.utils.JwtUtil;
+import org.example.utils.PasswordHasher;
+import org.example.utils.PasswordUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.example.db.H2Fixture.await;
+
+class AuthServiceTest {
+  private H2Fixture h2;
+  private Vertx vertx;
+  private Database db;
+
+  @BeforeEach
+  void setup() {
+    h2 = new H2Fixture();
+    vertx = h2.vertx();
+    db = h2.database("authservicetest");
+  }
+
+  @AfterEach
+  void teardown() throws Exception {
+    h2.close();
+  }
+
+  @Test
+  void login_rehashes_a_password_stored_with_another_cost() throws Exception {
+    UserRepository users = new UserRepository(db);
+    PasswordHasher hasher = new PasswordHasher(vertx, 2, 8, 5);
+    AuthService auth = new AuthService(users, new Config(), hasher);
+    await(users.createUserWithPassword("Old", "old@example.com", PasswordUtil.hash("secret123", 4)));
+
+    assertThat(await(auth.login("old@example.com", "secret123")).accessToken()).isNotBlank();
+    long deadline = System.currentTimeMillis() + 5000;
+    String stored;
+    do {
+      Thread.sleep(20);
+      stored = await(users.findByEmail("old@example.com")).getString("password_hash");
+    } while (PasswordUtil.cost(stored) != 5 && System.currentTimeMillis() < deadline);
+
+    assertThat(PasswordUtil.cost(stored)).isEqualTo(5);
+    assertThat(await(auth.login("old@example.com", "secret123")).accessToken()).isNotBlank();
+    assertThat(auth.login("old@example.com", "wrong-password").toCompletionStage().toCompletableFuture()
+        .handle((token, err) -> err).get(5, TimeUnit.SECONDS)).hasMessageContaining("invalid credentials");
+    hasher.close();
+  }
+
+  @Test
+  void refresh_tokens_are_single_use_and_logout_revokes_the_access_token() throws Exception {
+    UserRepository users = new UserRepository(db);
+    TokenRepository tokens = new TokenRepository(db);
+    TokenRevocations revocations = new TokenRevocations(tokens, 1024);
+    Config config = new Config();
+    AuthService auth = new AuthService(users, config, null, tokens, revocations);
+    await(users.createUserWithPassword("Ref", "ref@example.com", PasswordUtil.hash("secret123", 4)));
+
+    AuthService.Tokens first = await(auth.login("ref@example.com", "secret123"));
+    assertThat(first.refreshToken()).isNotBlank();
+    AuthService.Tokens second = await(auth.refresh(first.refreshToken()));
+    assertThat(second.refreshToken()).isNotEqualTo(first.refreshToken());
+    // reusing the first one fails and takes the second one down with it
+    assertThat(failure(auth.refresh(first.refreshToken()))).hasMessageContaining("invalid refresh token");
+    assertThat(failure(auth.refresh(second.refreshToken()))).hasMessageContaining("invalid refresh token");
+
+    JwtUtil.Claims claims = JwtUtil.verifyClaims(second.accessToken(), config.getJwtSecret());
+    assertThat(revocations.isRevoked(claims.jti())).isFalse();
+    await(auth.logout(Long.parseLong(claims.sub()), claims.jti(), claims.exp(), null));
+    assertThat(revocations.isRevoked(claims.jti())).isTrue();
+
+    // another instance learns of it from the database
+    TokenRevocations other = new TokenRevocations(tokens, 1024);
+    await(other.refresh());
+    assertThat(other.isRevoked(claims.jti())).isTrue();
+    assertThat(other.isRevoked("unknown")).isFalse();
+  }
+
+  private static Throwable failure(Future<?> f) throws Exception {
+    return f.toCompletionStage().toCompletableFuture().handle((v, err) -> err).get(5, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,120 @@
+package org.example.service;
+
+import io.vertx.core.Vertx;
+import org.example.cache.TodoListCache;
+import org.example.db.Database;
+import org.example.db.H2Fixture;
+import org.example.domain.Todo;
+import org.example.repository.TodoRepository;
+import org.example.repository.UserRepository;
+import org.example.service.TodoService.BatchOp;
+import org.example.service.TodoService.BatchResult;
+import org.example.service.TodoService.BatchStatus;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.example.db.H2Fixture.await;
+
+class TodoServiceTest {
+  private static H2Fixture h2;
+  private static Vertx vertx;
+  private static TodoRepository repo;
+  private static UserRepository users;
+
+  @BeforeAll
+  static void setup() {
+    h2 = new H2Fixture();
+    vertx = h2.vertx();
+    Database db = h2.database("todoservicetest");
+    repo = new TodoRepository(db);
+    users = new UserRepository(db);
+  }
+
+  @AfterAll
+  static void teardown() throws Exception {
+    if (h2 != null) h2.close();
+  }
+
+  @Test
+  void batch_commits_valid_operations_and_reports_the_others() throws Exception {
+    TodoListCache cache = new TodoListCache(1 << 20, 1 << 16, 60_000);
+    TodoService svc = new TodoService(repo, cache);
+    Todo a = await(svc.create(1, "a"));
+    Todo b = await(svc.create(1, "b"));
+    Todo other = await(svc.create(2, "someone else's"));
+    await(svc.list(1));
+
+    List<BatchResult> results = await(svc.batch(1, List.of(
+        new BatchOp("create", null, "c"),
+        new BatchOp("complete", a.getId(), null),
+        new BatchOp("delete", b.getId(), null),
+        new BatchOp("delete", other.getId(), null),
+        new BatchOp("uncomplete", a.getId(), null),
+        new BatchOp("rename", 1L, "x"),
+        new BatchOp("create", null, " ")), false));
+
+    assertThat(results).extracting(BatchResult::status).containsExactly(BatchStatus.CREATED, BatchStatus.UPDATED,
+        BatchStatus.DELETED, BatchStatus.NOT_FOUND, BatchStatus.INVALID, BatchStatus.INVALID, BatchStatus.INVALID);
+    assertThat(results.get(0).todo().getId()).isNotNull();
+    // the cached list was dropped, so this reads the committed rows
+    List<Todo> todos = await(svc.list(1));
+    assertThat(todos).extracting(Todo::getTitle).containsExactly("a", "c");
+    assertThat(todos.get(0).isCompleted()).isTrue();
+    assertThat(await(svc.list(2))).hasSize(1);
+  }
+
+  @Test
+  void atomic_batch_rolls_back_when_one_operation_fails() throws Exception {
+    TodoService svc = new TodoService(repo);
+    Todo a = await(svc.create(3, "a"));
+
+    List<BatchResult> results = await(svc.batch(3, List.of(
+        new BatchOp("create", null, "b"),
+        new BatchOp("complete", a.getId(), null),
+        new BatchOp("delete", a.getId() + 1000, null)), true));
+
+    assertThat(results).extracting(BatchResult::status)
+        .containsExactly(BatchStatus.NOT_APPLIED, BatchStatus.NOT_APPLIED, BatchStatus.NOT_FOUND);
+    List<Todo> todos = await(svc.list(3));
+    assertThat(todos).extracting(Todo::getTitle).containsExactly("a");
+    assertThat(todos.get(0).isCompleted()).isFalse();
+
+    results = await(svc.batch(3, List.of(new BatchOp("delete", a.getId(), null), new BatchOp(null, null, null)), true));
+    assertThat(results).extracting(BatchResult::status).containsExactly(BatchStatus.NOT_APPLIED, BatchStatus.INVALID);
+    assertThat(await(svc.list(3))).hasSize(1);
+  }
+
+  @Test
+  void update_applies_only_at_the_expected_version() throws Exception {
+    TodoListCache cache = new TodoListCache(1 << 20, 1 << 16, 60_000);
+    TodoService svc = new TodoService(repo, cache);
+    long owner = await(users.createUserWithPassword("Owner", "owner@example.com", "x")).getId();
+    long other = await(users.createUserWithPassword("Other", "other@example.com", "x")).getId();
+    Todo t = await(svc.create(owner, "draft"));
+    assertThat(t.getVersion()).isEqualTo(1);
+    await(svc.list(owner));
+
+    TodoService.UpdateResult first = await(svc.update(owner, t.getId(), 1, "final", null));
+    assertThat(first).isEqualTo(new TodoService.UpdateResult(TodoService.UpdateStatus.UPDATED, 2L));
+    // a second device still holding version 1 loses
+    TodoService.UpdateResult stale = await(svc.update(owner, t.getId(), 1, null, true));
+    assertThat(stale).isEqualTo(new TodoService.UpdateResult(TodoService.UpdateStatus.CONFLICT, 2L));
+    assertThat(await(svc.update(other, t.getId(), 2, null, true)).status()).isEqualTo(TodoService.UpdateStatus.NOT_FOUND);
+    // markCompleted bumps the version too
+    await(svc.markCompleted(owner, t.getId(), true));
+
+    Todo cached = svc.cached(owner).get(0);
+    Todo stored = await(new TodoService(repo).list(owner)).get(0);
+    for (Todo current : List.of(cached, stored)) {
+      assertThat(current.getTitle()).isEqualTo("final");
+      assertThat(current.isCompleted()).isTrue();
+      assertThat(current.getVersion()).isEqualTo(3);
+    }
+    assertThat(svc.update(owner, t.getId(), 3, " ", null).failed()).isTrue();
+    assertThat(svc.update(owner, t.getId(), 3, null, null).failed()).isTrue();
+  }
+}
@@ -0,0 +1,53 @@
+package org.example.service;
+
+import io.vertx.core.Vertx;
+import org.example.db.Database;
+import org.example.db.H2Fixture;
+import org.example.repository.TokenRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.example.db.H2Fixture.await;
+
+class TokenRevocationsTest {
+  private static H2Fixture h2;
+  private static Vertx vertx;
+  private static Database db;
+
+  @BeforeAll
+  static void setup() {
+    h2 = new H2Fixture();
+    vertx = h2.vertx();
+    db = h2.database("tokenrevocationstest");
+  }
+
+  @AfterAll
+  static void teardown() throws Exception {
+    if (h2 != null) h2.close();
+  }
+
+  @Test
+  void refresh_picks_up_a_revocation_that_committed_behind_many_later_ones() throws Exception {
+    TokenRepository tokens = new TokenRepository(db);
+    TokenRevocations here = new TokenRevocations(tokens, 1024);
+    TokenRevocations other = new TokenRevocations(tokens, 1024);
+    Instant exp = Instant.now().plus(1, ChronoUnit.HOURS);
+    for (int i = 0; i < 250; i++) await(here.revoke("jti-" + i, exp.getEpochSecond()));
+    await(other.refresh());
+    assertThat(other.size()).isEqualTo(250);
+
+    // a row revoked a few seconds ago that only became visible now, with an id below everything read so far
+    await(db.executeUpdate("INSERT INTO revoked_tokens(id, jti, expires_at, revoked_at) VALUES(?, ?, ?, ?)",
+        -1L, "late", LocalDateTime.now().plusHours(1), LocalDateTime.now().minusSeconds(5)));
+    await(other.refresh());
+    assertThat(other.isRevoked("late")).isTrue();
+    assertThat(other.isRevoked("jti-7")).isTrue();
+    assertThat(other.isRevoked("never")).isFalse();
+  }
+}
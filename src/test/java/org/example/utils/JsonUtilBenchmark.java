@@ -0,0 +1,57 @@
+package org.example.utils;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import org.example.domain.Todo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a todo list response: the streaming encoder of JsonUtil against the previous path (a JsonObject per row
+ * in a JsonArray, encoded to a String and then to a Buffer). Runs with the GC profiler, so the report includes
+ * gc.alloc.rate.norm, the bytes allocated per operation.
+ *
+ * Run: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test -Dexec.args="-cp %classpath org.example.utils.JsonUtilBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonUtilBenchmark {
+  @Param({"10", "100"})
+  public int rows;
+
+  private List<Todo> todos;
+
+  @Setup
+  public void setup() {
+    todos = new ArrayList<>();
+    Instant now = Instant.now();
+    for (int i = 0; i < rows; i++) todos.add(new Todo((long) i, 42L, "Todo number " + i, i % 3 == 0, now.minusSeconds(i)));
+  }
+
+  @Benchmark
+  public Buffer streaming() {
+    return JsonUtil.todos(todos);
+  }
+
+  @Benchmark
+  public Buffer jsonArray() {
+    JsonArray arr = new JsonArray();
+    todos.forEach(t -> arr.add(t.toJson()));
+    return Buffer.buffer(arr.encode());
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(JsonUtilBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+  }
+}
@@ -0,0 +1,47 @@
+package org.example.utils;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import org.example.domain.Todo;
+import org.example.domain.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonUtilTest {
+  private static final List<Todo> TODOS = List.of(
+      new Todo(1L, 7L, "plain", false, Instant.parse("2024-05-01T10:15:30Z")),
+      new Todo(2L, 7L, "quotes \" and \\ and \n, ünïcödé ✓", true, Instant.parse("2024-05-01T10:15:30.123456Z")),
+      new Todo(null, null, null, false, null));
+
+  @Test
+  void todos_are_encoded_like_their_json_objects() {
+    JsonArray expected = new JsonArray();
+    TODOS.forEach(t -> expected.add(t.toJson()));
+    assertThat(JsonUtil.todos(TODOS).toString()).isEqualTo(expected.encode());
+    assertThat(JsonUtil.todos(List.of()).toString()).isEqualTo("[]");
+    assertThat(JsonUtil.todo(TODOS.get(1)).toString()).isEqualTo(TODOS.get(1).toJson().encode());
+  }
+
+  @Test
+  void streamed_elements_add_up_to_the_array() {
+    Buffer streamed = Buffer.buffer();
+    for (int i = 0; i < TODOS.size(); i++) streamed.appendBuffer(JsonUtil.todoElement(TODOS.get(i), i == 0));
+    streamed.appendString("]");
+    assertThat(streamed.toString()).isEqualTo(JsonUtil.todos(TODOS).toString());
+  }
+
+  @Test
+  void users_are_encoded_like_their_json_objects() {
+    List<User> users = List.of(
+        new User(1L, "Ann", "ann@example.com", Instant.parse("2024-05-01T10:15:30Z")),
+        new User(2L, "Bé \"B\"", "b@example.com", null));
+    JsonArray expected = new JsonArray();
+    users.forEach(u -> expected.add(u.toJson()));
+    assertThat(JsonUtil.users(users).toString()).isEqualTo(expected.encode());
+    assertThat(JsonUtil.user(users.get(1)).toString()).isEqualTo(users.get(1).toJson().encode());
+  }
+}
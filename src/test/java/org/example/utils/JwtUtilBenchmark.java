@@ -0,0 +1,73 @@
+package org.example.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sign and verify throughput of JwtUtil, against the previous implementation (regex split, Mac.getInstance per
+ * call, Jackson into a Map) kept here as {@code legacyVerify}. Runs with the GC profiler, so the report includes
+ * gc.alloc.rate.norm, the bytes allocated per operation.
+ *
+ * Run: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test -Dexec.args="-cp %classpath org.example.utils.JwtUtilBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtUtilBenchmark {
+  private static final String SECRET = "dev-secret-change-me";
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private Map<String, Object> claims;
+  private String token;
+
+  @Setup
+  public void setup() {
+    claims = Map.of("sub", "42", "exp", Instant.now().getEpochSecond() + 3600);
+    token = JwtUtil.sign(claims, SECRET);
+  }
+
+  @Benchmark
+  public String sign() {
+    return JwtUtil.sign(claims, SECRET);
+  }
+
+  @Benchmark
+  public JwtUtil.Claims verifyClaims() {
+    return JwtUtil.verifyClaims(token, SECRET);
+  }
+
+  @Benchmark
+  public Map<String, Object> verifyToMap() {
+    return JwtUtil.verify(token, SECRET);
+  }
+
+  @Benchmark
+  public Map<String, Object> legacyVerify() throws Exception {
+    String[] parts = token.split("\\.");
+    Mac mac = Mac.getInstance("HmacSHA256");
+    mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+    String expected = Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(mac.doFinal((parts[0] + "." + parts[1]).getBytes(StandardCharsets.UTF_8)));
+    if (!expected.equals(parts[2])) throw new IllegalArgumentException("Bad signature");
+    @SuppressWarnings("unchecked") Map<String, Object> map = mapper.readValue(Base64.getUrlDecoder().decode(parts[1]), Map.class);
+    return map;
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(JwtUtilBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+  }
+}
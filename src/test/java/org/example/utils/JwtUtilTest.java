@@ -0,0 +1,89 @@
+package org.example.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JwtUtilTest {
+  private static final String SECRET = "test-secret";
+
+  @Test
+  public void signAndVerify_roundTrip() {
+    long exp = Instant.now().getEpochSecond() + 60;
+    String token = JwtUtil.sign(Map.of("sub", "42", "exp", exp, "jti", "abc", "role", "user"), SECRET);
+
+    assertThat(token.split("\\.")).hasSize(3);
+    assertThat(JwtUtil.verifyClaims(token, SECRET)).isEqualTo(new JwtUtil.Claims("42", exp, "abc"));
+    Map<String, Object> claims = JwtUtil.verify(token, SECRET);
+    assertThat(claims).containsEntry("sub", "42").containsEntry("role", "user");
+    assertThat(((Number) claims.get("exp")).longValue()).isEqualTo(exp);
+  }
+
+  @Test
+  public void sign_matchesReferenceHs256() throws Exception {
+    // same token as a textbook HS256 implementation (java.util.Base64 + a fresh Mac)
+    String token = JwtUtil.sign(Map.of("sub", "7"), SECRET);
+    String[] parts = token.split("\\.");
+    javax.crypto.Mac mac = javax.crypto.Mac.getInstance("HmacSHA256");
+    mac.init(new javax.crypto.spec.SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+    String expected = Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(mac.doFinal((parts[0] + "." + parts[1]).getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(parts[2]).isEqualTo(expected);
+    assertThat(new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8)).contains("\"alg\":\"HS256\"");
+  }
+
+  @Test
+  public void verify_rejectsTamperedOrForeignTokens() {
+    String token = JwtUtil.sign(Map.of("sub", "42"), SECRET);
+    String[] parts = token.split("\\.");
+    String otherPayload = b64("{\"sub\":\"1\"}");
+
+    assertThatThrownBy(() -> JwtUtil.verifyClaims(token, "other-secret")).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> JwtUtil.verifyClaims(parts[0] + "." + otherPayload + "." + parts[2], SECRET))
+        .hasMessage("Bad signature");
+    assertThatThrownBy(() -> JwtUtil.verifyClaims(token + "x", SECRET)).hasMessage("Bad signature");
+    assertThatThrownBy(() -> JwtUtil.verifyClaims(parts[0] + "." + parts[1], SECRET)).hasMessage("Invalid token");
+    assertThatThrownBy(() -> JwtUtil.verifyClaims(token + ".x", SECRET)).hasMessage("Invalid token");
+    assertThatThrownBy(() -> JwtUtil.verify("", SECRET)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void verify_rejectsExpiredTokens() {
+    String token = JwtUtil.sign(Map.of("sub", "42", "exp", Instant.now().getEpochSecond() - 1), SECRET);
+    assertThatThrownBy(() -> JwtUtil.verifyClaims(token, SECRET)).hasMessage("Token expired");
+    assertThatThrownBy(() -> JwtUtil.verify(token, SECRET)).hasMessage("Token expired");
+  }
+
+  @Test
+  public void verifyClaims_readsNumericSubAndSkipsOtherClaims() throws Exception {
+    // payload lengths 1..3 mod 3 cover every base64 tail
+    for (String extra : new String[]{"", "x", "xy"}) {
+      Map<String, Object> claims = Map.of("sub", 5, "nested", Map.of("sub", "no", "exp", 1), "pad", extra);
+      String token = JwtUtil.sign(claims, SECRET);
+      assertThat(JwtUtil.verifyClaims(token, SECRET)).isEqualTo(new JwtUtil.Claims("5", JwtUtil.NO_EXP, null));
+      assertThat(new ObjectMapper().writeValueAsString(JwtUtil.verify(token, SECRET).get("nested"))).contains("\"no\"");
+    }
+    assertThat(JwtUtil.verifyClaims(JwtUtil.sign(Map.of("iat", 1), SECRET), SECRET).sub()).isNull();
+  }
+
+  @Test
+  public void verify_followsSecretChangesOnTheSameThread() {
+    String a = JwtUtil.sign(Map.of("sub", "1"), "secret-a");
+    String b = JwtUtil.sign(Map.of("sub", "2"), "secret-b");
+    assertThat(JwtUtil.verifyClaims(a, "secret-a").sub()).isEqualTo("1");
+    assertThat(JwtUtil.verifyClaims(b, "secret-b").sub()).isEqualTo("2");
+    assertThatThrownBy(() -> JwtUtil.verifyClaims(a, "secret-b")).hasMessage("Bad signature");
+  }
+
+  private static String b64(String json) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+  }
+}
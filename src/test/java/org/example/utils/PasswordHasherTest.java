@@ -0,0 +1,67 @@
+package org.example.utils;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PasswordHasherTest {
+  private Vertx vertx;
+
+  @BeforeEach
+  void setup() {
+    vertx = Vertx.vertx();
+  }
+
+  @AfterEach
+  void teardown() {
+    vertx.close();
+  }
+
+  @Test
+  void hashes_on_its_own_threads_and_completes_on_the_callers_event_loop() throws Exception {
+    PasswordHasher hasher = new PasswordHasher(vertx, 1, 4, 4);
+    CompletableFuture<String> completedOn = new CompletableFuture<>();
+    CompletableFuture<Boolean> verified = new CompletableFuture<>();
+    vertx.runOnContext(v -> hasher.hash("secret123").compose(hash -> {
+      completedOn.complete(Thread.currentThread().getName());
+      assertThat(PasswordUtil.cost(hash)).isEqualTo(4);
+      return hasher.verify("secret123", hash);
+    }).onComplete(ar -> verified.complete(ar.result())));
+
+    assertThat(verified.get(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(completedOn.get()).startsWith("vert.x-eventloop-thread");
+    hasher.close();
+  }
+
+  @Test
+  void rejects_immediately_once_threads_and_queue_are_full() throws Exception {
+    PasswordHasher hasher = new PasswordHasher(vertx, 1, 1, 12);
+    List<Future<String>> hashes = new ArrayList<>();
+    for (int i = 0; i < 5; i++) hashes.add(hasher.hash("secret123"));
+
+    // one running, one queued: the rest fail without waiting
+    long failed = hashes.stream().filter(Future::failed).count();
+    assertThat(failed).isEqualTo(3);
+    assertThat(hashes.get(4).cause()).isInstanceOf(HasherOverloadedException.class);
+    assertThat(hasher.rejected()).isEqualTo(3);
+    hasher.close();
+  }
+
+  @Test
+  void needs_rehash_when_the_stored_cost_differs() {
+    PasswordHasher hasher = new PasswordHasher(vertx, 1, 1, 5);
+    assertThat(hasher.needsRehash(PasswordUtil.hash("secret123", 4))).isTrue();
+    assertThat(hasher.needsRehash(PasswordUtil.hash("secret123", 5))).isFalse();
+    assertThat(hasher.needsRehash("not-bcrypt")).isFalse();
+    hasher.close();
+  }
+}
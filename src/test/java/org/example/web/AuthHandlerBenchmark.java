@@ -0,0 +1,65 @@
+package org.example.web;
+
+import org.example.cache.TokenCache;
+import org.example.config.Config;
+import org.example.service.TokenRevocations;
+import org.example.utils.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of checking a reused bearer token: full verification (HMAC, base64, JSON claims) versus a
+ * {@link TokenCache} hit, and a hit plus the in-memory revocation check. Add -prof gc (via the JMH command line)
+ * to compare bytes allocated per operation.
+ *
+ * Run: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test -Dexec.args="-cp %classpath org.example.web.AuthHandlerBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthHandlerBenchmark {
+  private AuthHandler uncached;
+  private AuthHandler cached;
+  private AuthHandler revocable;
+  private String token;
+
+  @Setup
+  public void setup() {
+    Config config = new Config();
+    uncached = new AuthHandler(config);
+    cached = new AuthHandler(config, new TokenCache(10_000));
+    token = JwtUtil.sign(Map.of("sub", "42", "exp", Instant.now().getEpochSecond() + 3600, "jti", "bench"), config.getJwtSecret());
+    cached.claims(token);
+    // the check itself never reads the repository
+    TokenRevocations revocations = new TokenRevocations(null, 100_000);
+    revocable = new AuthHandler(config, new TokenCache(10_000), revocations);
+    revocable.claims(token);
+  }
+
+  @Benchmark
+  public JwtUtil.Claims verifyEveryRequest() {
+    return uncached.claims(token);
+  }
+
+  @Benchmark
+  public JwtUtil.Claims cachedToken() {
+    return cached.claims(token);
+  }
+
+  @Benchmark
+  public JwtUtil.Claims cachedTokenWithRevocationCheck() {
+    return revocable.claims(token);
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(AuthHandlerBenchmark.class.getSimpleName()).build()).run();
+  }
+}
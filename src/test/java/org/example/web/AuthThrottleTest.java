@@ -0,0 +1,39 @@
+package org.example.web;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuthThrottleTest {
+
+  @Test
+  void ip_gets_its_burst_then_a_retry_after() {
+    AuthThrottle throttle = new AuthThrottle(3, 6, 100, 100, 1000);
+    for (int i = 0; i < 3; i++) assertThat(throttle.acquire("10.0.0.1", "user" + i + "@example.com")).isZero();
+
+    // 6 per minute: the next attempt is ~10 s away
+    assertThat(throttle.acquire("10.0.0.1", "other@example.com")).isBetween(9L, 10L);
+    assertThat(throttle.acquire("10.0.0.2", "other@example.com")).isZero();
+    assertThat(throttle.throttled()).isEqualTo(1);
+  }
+
+  @Test
+  void email_is_limited_across_ips_and_case() {
+    AuthThrottle throttle = new AuthThrottle(100, 100, 2, 60, 1000);
+    assertThat(throttle.acquire("10.0.0.1", "Victim@Example.com")).isZero();
+    assertThat(throttle.acquire("10.0.0.2", "victim@example.com ")).isZero();
+    assertThat(throttle.acquire("10.0.0.3", "victim@example.com")).isEqualTo(1);
+  }
+
+  @Test
+  void buckets_are_refilled_and_bounded() throws Exception {
+    AuthThrottle throttle = new AuthThrottle(1, 600, 100, 100, 160);
+    assertThat(throttle.acquire("10.0.0.1", null)).isZero();
+    assertThat(throttle.acquire("10.0.0.1", null)).isEqualTo(1);
+    Thread.sleep(120);
+    assertThat(throttle.acquire("10.0.0.1", null)).isZero();
+
+    for (int i = 0; i < 10_000; i++) throttle.acquire("10.1." + (i >> 8) + "." + (i & 255), null);
+    assertThat(throttle.size()).isLessThanOrEqualTo(160);
+  }
+}
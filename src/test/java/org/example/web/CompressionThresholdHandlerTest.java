@@ -0,0 +1,56 @@
+package org.example.web;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.Router;
+import org.example.WebVerticle;
+import org.example.config.Config;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompressionThresholdHandlerTest {
+  private static Vertx vertx;
+  private static HttpClient client;
+  private static int port;
+
+  @BeforeAll
+  static void setup() throws Exception {
+    vertx = Vertx.vertx();
+    Router router = Router.router(vertx);
+    router.route().handler(new CompressionThresholdHandler(1024));
+    router.get("/small").handler(ctx -> ctx.end("{\"ok\":true}"));
+    router.get("/large").handler(ctx -> ctx.end("{\"items\":\"" + "x".repeat(4096) + "\"}"));
+    port = vertx.createHttpServer(WebVerticle.serverOptions(new Config())).requestHandler(router).listen(0)
+        .toCompletionStage().toCompletableFuture().get().actualPort();
+    client = vertx.createHttpClient();
+  }
+
+  @AfterAll
+  static void teardown() {
+    if (vertx != null) vertx.close();
+  }
+
+  @Test
+  void only_bodies_above_the_threshold_are_compressed() throws Exception {
+    HttpClientResponse small = get("/small");
+    assertThat(small.getHeader("Content-Encoding")).isNull();
+    assertThat(small.getHeader("Content-Length")).isEqualTo("11");
+
+    HttpClientResponse large = get("/large");
+    assertThat(large.getHeader("Content-Encoding")).isEqualTo("gzip");
+    assertThat(large.getHeader("Vary")).containsIgnoringCase("accept-encoding");
+    assertThat(Integer.parseInt(large.getHeader("Content-Length"))).isLessThan(1024);
+  }
+
+  private static HttpClientResponse get(String path) throws Exception {
+    return client.request(HttpMethod.GET, port, "localhost", path)
+        .compose(req -> req.putHeader("Accept-Encoding", "gzip").send())
+        .compose(resp -> resp.body().map(body -> resp))
+        .toCompletionStage().toCompletableFuture().get();
+  }
+}
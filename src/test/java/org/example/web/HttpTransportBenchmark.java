@@ -0,0 +1,49 @@
+package org.example.web;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClient;
+
+import static org.example.web.WebVerticleScalingBenchmark.*;
+
+/**
+ * Throughput of GET /api/todos over the NIO and the native epoll transport, same load as
+ * {@link WebVerticleScalingBenchmark} with {@code bench.instances} instances (default 1). Server and client use the
+ * same transport, so the difference covers both ends of the loopback connections. Only meaningful on Linux, where
+ * epoll is available; elsewhere both runs use NIO and the output says so.
+ *
+ * Run: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test -Dexec.args="-cp %classpath org.example.web.HttpTransportBenchmark"
+ */
+public class HttpTransportBenchmark {
+  private static final int INSTANCES = Integer.getInteger("bench.instances", 1);
+
+  public static void main(String[] args) throws Exception {
+    System.setProperty("logback.configurationFile", "logback-bench.xml");
+    boolean first = true;
+    for (boolean preferNative : new boolean[]{false, true}) {
+      VertxOptions options = new VertxOptions().setPreferNativeTransport(preferNative);
+      Vertx vertx = Vertx.vertx(options);
+      Vertx clientVertx = Vertx.vertx(options);
+      String transport = vertx.isNativeTransportEnabled() ? "epoll" : "nio";
+      if (preferNative && !vertx.isNativeTransportEnabled()) {
+        System.out.println("epoll unavailable: " + vertx.unavailableNativeTransportCause());
+      }
+      Backend backend = Backend.create(vertx, "transportbench" + transport);
+      try {
+        backend.deploy(INSTANCES);
+        int port = (Integer) vertx.sharedData().getLocalMap("app.info").get("port");
+        HttpClient client = client(clientVertx);
+        // each transport gets its own JIT warm-up: the two use different channel classes
+        run(client, port, backend.token, first ? WARMUP_SECONDS : WARMUP_SECONDS / 2);
+        first = false;
+        long requests = run(client, port, backend.token, SECONDS);
+        System.out.printf("transport=%-5s instances=%d connections=%d  %,.0f req/s%n",
+            transport, INSTANCES, CONNECTIONS, requests / (double) SECONDS);
+      } finally {
+        await(clientVertx.close());
+        await(vertx.close());
+        backend.ds.close();
+      }
+    }
+  }
+}
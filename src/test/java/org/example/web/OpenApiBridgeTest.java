@@ -0,0 +1,121 @@
+package org.example.web;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenApiBridgeTest {
+  private static Vertx vertx;
+  private static Router router;
+  private static WebClient client;
+  private static int port;
+
+  @BeforeAll
+  static void setup() throws Exception {
+    vertx = Vertx.vertx();
+    router = Router.router(vertx);
+    router.get("/api/ping").handler(ctx -> ctx.end("pong"));
+    new OpenApiBridge("http://localhost", 3600).mount(router, vertx);
+    port = vertx.createHttpServer().requestHandler(router).listen(0)
+        .toCompletionStage().toCompletableFuture().get().actualPort();
+    client = WebClient.create(vertx);
+  }
+
+  @AfterAll
+  static void teardown() {
+    if (vertx != null) vertx.close();
+  }
+
+  @Test
+  void spec_is_served_gzipped_with_etag_and_rebuilt_when_routes_change() throws Exception {
+    HttpResponse<Buffer> plain = get("/openapi.json", null, null);
+    HttpResponse<Buffer> gzipped = get("/openapi.json", "gzip, deflate", null);
+    assertThat(plain.getHeader("Content-Encoding")).isNull();
+    assertThat(gzipped.getHeader("Content-Encoding")).isEqualTo("gzip");
+    assertThat(gzipped.getHeader("Vary")).containsIgnoringCase("accept-encoding");
+    assertThat(gunzip(gzipped.body())).isEqualTo(plain.body().toString());
+    assertThat(plain.bodyAsString()).contains("/api/ping");
+    String etag = plain.getHeader("ETag");
+
+    assertThat(get("/openapi.json", null, etag).statusCode()).isEqualTo(304);
+    assertThat(get("/openapi.json", "gzip", gzipped.getHeader("ETag")).statusCode()).isEqualTo(304);
+
+    router.get("/api/late").handler(ctx -> ctx.end());
+    HttpResponse<Buffer> rebuilt = get("/openapi.json", null, etag);
+    assertThat(rebuilt.statusCode()).isEqualTo(200);
+    assertThat(rebuilt.bodyAsString()).contains("/api/late");
+  }
+
+  @Test
+  void docs_are_cacheable_and_precompressed() throws Exception {
+    HttpResponse<Buffer> index = get("/docs/", "gzip", null);
+    assertThat(index.statusCode()).isEqualTo(200);
+    assertThat(index.getHeader("Cache-Control")).isEqualTo("public, max-age=3600");
+    assertThat(index.getHeader("Content-Type")).startsWith("text/html");
+    assertThat(gunzip(index.body())).contains("swagger-ui");
+    assertThat(get("/docs/index.html", "gzip", index.getHeader("ETag")).statusCode()).isEqualTo(304);
+    assertThat(get("/docs/missing.js", null, null).statusCode()).isEqualTo(404);
+  }
+
+  @Test
+  void deflate_only_clients_get_the_identity_body_under_its_etag() throws Exception {
+    HttpServer compressing = vertx.createHttpServer(new HttpServerOptions().setCompressionSupported(true))
+        .requestHandler(router).listen(0).toCompletionStage().toCompletableFuture().get();
+    try {
+      for (String path : new String[]{"/openapi.json", "/docs/index.html"}) {
+        HttpResponse<Buffer> plain = get(path, null, null);
+        HttpResponse<Buffer> deflateOnly = get(compressing.actualPort(), path, "deflate", null);
+        assertThat(deflateOnly.getHeader("Content-Encoding")).isNull();
+        assertThat(deflateOnly.body()).isEqualTo(plain.body());
+        assertThat(deflateOnly.getHeader("ETag")).isEqualTo(plain.getHeader("ETag"));
+      }
+    } finally {
+      compressing.close();
+    }
+  }
+
+  @Test
+  void docs_content_type_comes_from_the_extension() {
+    assertThat(OpenApiBridge.contentType("index.html")).isEqualTo("text/html; charset=utf-8");
+    assertThat(OpenApiBridge.contentType("swagger-ui-bundle.JS")).isEqualTo("text/javascript; charset=utf-8");
+    assertThat(OpenApiBridge.contentType("logo.svg")).isEqualTo("image/svg+xml");
+    assertThat(OpenApiBridge.contentType("LICENSE")).isEqualTo("application/octet-stream");
+  }
+
+  @Test
+  void accept_encoding_q_zero_refuses_gzip() {
+    assertThat(OpenApiBridge.acceptsGzip("gzip;q=0, identity")).isFalse();
+    assertThat(OpenApiBridge.acceptsGzip("br, GZIP;q=0.5")).isTrue();
+    assertThat(OpenApiBridge.acceptsGzip("*")).isTrue();
+    assertThat(OpenApiBridge.acceptsGzip(null)).isFalse();
+  }
+
+  private static HttpResponse<Buffer> get(String path, String acceptEncoding, String ifNoneMatch) throws Exception {
+    return get(port, path, acceptEncoding, ifNoneMatch);
+  }
+
+  private static HttpResponse<Buffer> get(int port, String path, String acceptEncoding, String ifNoneMatch) throws Exception {
+    var req = client.get(port, "localhost", path);
+    if (acceptEncoding != null) req.putHeader("Accept-Encoding", acceptEncoding);
+    if (ifNoneMatch != null) req.putHeader("If-None-Match", ifNoneMatch);
+    return req.send().toCompletionStage().toCompletableFuture().get();
+  }
+
+  private static String gunzip(Buffer body) throws Exception {
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body.getBytes()))) {
+      return new String(in.readAllBytes());
+    }
+  }
+}
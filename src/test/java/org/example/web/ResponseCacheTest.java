@@ -0,0 +1,129 @@
+package org.example.web;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.codec.BodyCodec;
+import org.example.WebVerticle;
+import org.example.config.Config;
+import org.example.db.Database;
+import org.example.db.H2Fixture;
+import org.example.metrics.Metrics;
+import org.example.repository.TodoRepository;
+import org.example.repository.UserRepository;
+import org.example.service.AuthService;
+import org.example.service.TodoService;
+import org.example.service.UserService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.example.db.H2Fixture.await;
+
+class ResponseCacheTest {
+  private static H2Fixture h2;
+  private static Vertx vertx;
+  private static WebClient client;
+  private static int port;
+
+  @BeforeAll
+  static void setup() throws Exception {
+    h2 = new H2Fixture();
+    vertx = h2.vertx();
+    Config cfg = new Config() {
+      @Override public int getServerPort() { return 0; }
+    };
+    Database database = h2.database("responsecachetest");
+    UserRepository users = new UserRepository(database);
+    ResponseCache responses = new ResponseCache(1 << 20, 1 << 16, 60_000);
+    WebVerticle verticle = new WebVerticle(cfg, new UserService(users), new AuthService(users, cfg),
+        new TodoService(new TodoRepository(database)), new Metrics(),
+        new WebVerticle.Shared(responses, null, null, null));
+    await(vertx.deployVerticle(() -> verticle, new DeploymentOptions()));
+    port = (Integer) vertx.sharedData().getLocalMap("app.info").get("port");
+    client = WebClient.create(vertx);
+  }
+
+  @AfterAll
+  static void teardown() throws Exception {
+    if (h2 != null) h2.close();
+  }
+
+  @Test
+  void matching_etag_gets_304_until_a_write() throws Exception {
+    HttpResponse<String> first = getUsers(null);
+    String etag = first.getHeader("ETag");
+    assertThat(first.statusCode()).isEqualTo(200);
+    assertThat(etag).startsWith("\"").endsWith("\"");
+
+    HttpResponse<String> again = getUsers(etag);
+    assertThat(again.statusCode()).isEqualTo(304);
+    assertThat(again.body()).isNull();
+    assertThat(getUsers("W/" + etag + ", \"other\"").statusCode()).isEqualTo(304);
+
+    JsonObject register = new JsonObject().put("name", "Etag").put("email", "etag@example.com").put("password", "secret123");
+    assertThat(await(client.post(port, "localhost", "/api/auth/register").sendJsonObject(register)).statusCode()).isEqualTo(201);
+
+    HttpResponse<String> changed = getUsers(etag);
+    assertThat(changed.statusCode()).isEqualTo(200);
+    assertThat(changed.body()).contains("etag@example.com");
+    assertThat(changed.getHeader("ETag")).isNotEqualTo(etag);
+  }
+
+  @Test
+  void gzipped_body_has_its_own_etag() throws Exception {
+    ResponseCache cache = new ResponseCache(1 << 20, 1 << 16, 60_000, 64);
+    Buffer body = Buffer.buffer("[" + "{\"id\":1,\"title\":\"same title\"},".repeat(20) + "{}]");
+    ResponseCache.Entry entry = cache.put("big", cache.stamp("big"), body);
+    Router router = Router.router(vertx);
+    router.route().handler(new CompressionThresholdHandler(64));
+    router.get("/big").handler(ctx -> ResponseCache.send(ctx, entry));
+    HttpServer server = await(vertx.createHttpServer(new HttpServerOptions().setCompressionSupported(true))
+        .requestHandler(router).listen(0));
+    try {
+      int big = server.actualPort();
+      HttpResponse<Buffer> gzipped = getBig(big, "gzip, deflate", null);
+      String gzipTag = gzipped.getHeader("ETag");
+      assertThat(gzipped.getHeader("Content-Encoding")).isEqualTo("gzip");
+      assertThat(gzipped.getHeader("Vary")).containsIgnoringCase("accept-encoding");
+      try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.body().getBytes()))) {
+        assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(body.toString());
+      }
+
+      // not compressed by the server under the identity tag
+      HttpResponse<Buffer> deflateOnly = getBig(big, "deflate", null);
+      assertThat(deflateOnly.getHeader("Content-Encoding")).isNull();
+      assertThat(deflateOnly.body()).isEqualTo(body);
+      assertThat(deflateOnly.getHeader("ETag")).isEqualTo(entry.etag()).isNotEqualTo(gzipTag);
+      assertThat(gzipTag).isEqualTo(entry.etag().substring(0, entry.etag().length() - 1) + "-gzip\"");
+
+      assertThat(getBig(big, "gzip", gzipTag).statusCode()).isEqualTo(304);
+      assertThat(getBig(big, "gzip", entry.etag()).statusCode()).isEqualTo(304);
+    } finally {
+      server.close();
+    }
+  }
+
+  private static HttpResponse<Buffer> getBig(int bigPort, String acceptEncoding, String ifNoneMatch) throws Exception {
+    var req = client.get(bigPort, "localhost", "/big").putHeader("Accept-Encoding", acceptEncoding);
+    if (ifNoneMatch != null) req.putHeader("If-None-Match", ifNoneMatch);
+    return await(req.send());
+  }
+
+  private static HttpResponse<String> getUsers(String ifNoneMatch) throws Exception {
+    var req = client.get(port, "localhost", "/api/users").as(BodyCodec.string());
+    if (ifNoneMatch != null) req.putHeader("If-None-Match", ifNoneMatch);
+    return await(req.send());
+  }
+}
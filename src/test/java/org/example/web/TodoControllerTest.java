@@ -0,0 +1,158 @@
+package org.example.web;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.codec.BodyCodec;
+import org.example.WebVerticle;
+import org.example.config.Config;
+import org.example.db.Database;
+import org.example.db.DbOverloadedException;
+import org.example.db.H2Fixture;
+import org.example.metrics.Metrics;
+import org.example.repository.TodoRepository;
+import org.example.repository.UserRepository;
+import org.example.service.AuthService;
+import org.example.service.TodoService;
+import org.example.service.UserService;
+import org.example.utils.JwtUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.example.db.H2Fixture.await;
+
+class TodoControllerTest {
+  // seeded user whose writes the database sheds
+  private static final long OVERLOADED_USER = 3;
+  private static H2Fixture h2;
+  private static Vertx vertx;
+  private static WebClient client;
+  private static Config cfg;
+  private static int port;
+
+  @BeforeAll
+  static void setup() throws Exception {
+    h2 = new H2Fixture();
+    vertx = h2.vertx();
+    cfg = new Config() {
+      @Override public int getServerPort() { return 0; }
+      @Override public int getTodoBatchMaxSize() { return 3; }
+    };
+    Database database = h2.database("todocontrollertest");
+    UserRepository users = new UserRepository(database);
+    TodoService todos = new TodoService(new TodoRepository(database)) {
+      @Override
+      public Future<UpdateResult> update(long userId, long id, long version, String title, Boolean completed) {
+        if (userId == OVERLOADED_USER) return Future.failedFuture(new DbOverloadedException("database overloaded", 7));
+        return super.update(userId, id, version, title, completed);
+      }
+
+      @Override
+      public Future<List<BatchResult>> batch(long userId, List<BatchOp> ops, boolean atomic) {
+        if (userId == OVERLOADED_USER) return Future.failedFuture(new DbOverloadedException("database overloaded", 7));
+        return super.batch(userId, ops, atomic);
+      }
+    };
+    WebVerticle verticle = new WebVerticle(cfg, new UserService(users), new AuthService(users, cfg), todos, new Metrics(),
+        WebVerticle.Shared.NONE);
+    await(vertx.deployVerticle(() -> verticle, new DeploymentOptions()));
+    port = (Integer) vertx.sharedData().getLocalMap("app.info").get("port");
+    client = WebClient.create(vertx);
+  }
+
+  @AfterAll
+  static void teardown() throws Exception {
+    if (h2 != null) h2.close();
+  }
+
+  @Test
+  void patch_needs_a_single_strong_if_match_and_answers_with_the_new_etag() throws Exception {
+    HttpResponse<JsonObject> created = await(request("POST", "/api/todos", 1).as(BodyCodec.jsonObject())
+        .sendJsonObject(new JsonObject().put("title", "versioned")));
+    assertThat(created.statusCode()).isEqualTo(201);
+    long id = created.body().getLong("id");
+    String etag = created.getHeader("ETag");
+    JsonObject change = new JsonObject().put("completed", true);
+
+    assertThat(patch(id, null, change).statusCode()).isEqualTo(428);
+    assertThat(patch(id, "W/" + etag, change).statusCode()).isEqualTo(400);
+    assertThat(patch(id, etag + ", \"99\"", change).statusCode()).isEqualTo(400);
+
+    HttpResponse<String> updated = patch(id, etag, change);
+    assertThat(updated.statusCode()).isEqualTo(204);
+    String next = updated.getHeader("ETag");
+    assertThat(next).isNotNull().isNotEqualTo(etag);
+
+    // a stale tag: 412 with the current ETag to retry with
+    HttpResponse<String> stale = patch(id, etag, new JsonObject().put("title", "lost update"));
+    assertThat(stale.statusCode()).isEqualTo(412);
+    assertThat(stale.getHeader("ETag")).isEqualTo(next);
+    assertThat(patch(id, next, new JsonObject().put("title", "retried")).statusCode()).isEqualTo(204);
+  }
+
+  @Test
+  void batch_over_the_limit_is_rejected_and_a_failed_atomic_batch_rolls_back() throws Exception {
+    JsonArray tooMany = new JsonArray();
+    for (int i = 0; i < 4; i++) tooMany.add(new JsonObject().put("op", "create").put("title", "t" + i));
+    assertThat(batch(2, new JsonObject().put("operations", tooMany)).statusCode()).isEqualTo(400);
+
+    JsonArray ops = new JsonArray()
+        .add(new JsonObject().put("op", "create").put("title", "rolled back"))
+        .add(new JsonObject().put("op", "complete").put("id", 999_999));
+    HttpResponse<String> failed = batch(2, new JsonObject().put("atomic", true).put("operations", ops));
+    assertThat(failed.statusCode()).isEqualTo(422);
+    JsonObject body = new JsonObject(failed.body());
+    assertThat(body.getInteger("applied")).isZero();
+    assertThat(body.getJsonArray("results").getJsonObject(1).getInteger("status")).isEqualTo(404);
+
+    HttpResponse<String> list = await(request("GET", "/api/todos", 2).as(BodyCodec.string()).send());
+    assertThat(list.statusCode()).isEqualTo(200);
+    assertThat(list.body()).doesNotContain("rolled back");
+  }
+
+  @Test
+  void shed_writes_get_503_with_retry_after() throws Exception {
+    HttpResponse<String> patched = patch(1, "\"1\"", new JsonObject().put("completed", true), OVERLOADED_USER);
+    assertThat(patched.statusCode()).isEqualTo(503);
+    assertThat(patched.getHeader("Retry-After")).isEqualTo("7");
+
+    JsonArray ops = new JsonArray().add(new JsonObject().put("op", "create").put("title", "shed"));
+    HttpResponse<String> batched = batch(OVERLOADED_USER, new JsonObject().put("operations", ops));
+    assertThat(batched.statusCode()).isEqualTo(503);
+    assertThat(batched.getHeader("Retry-After")).isEqualTo("7");
+  }
+
+  private static HttpRequest<Buffer> request(String method, String path, long userId) {
+    String token = JwtUtil.sign(Map.of("sub", String.valueOf(userId), "exp", Instant.now().getEpochSecond() + 3600),
+        cfg.getJwtSecret());
+    return client.request(HttpMethod.valueOf(method), port, "localhost", path)
+        .putHeader("Authorization", "Bearer " + token);
+  }
+
+  private static HttpResponse<String> patch(long id, String ifMatch, JsonObject body) throws Exception {
+    return patch(id, ifMatch, body, 1);
+  }
+
+  private static HttpResponse<String> patch(long id, String ifMatch, JsonObject body, long userId) throws Exception {
+    HttpRequest<Buffer> req = request("PATCH", "/api/todos/" + id, userId);
+    if (ifMatch != null) req.putHeader("If-Match", ifMatch);
+    return await(req.as(BodyCodec.string()).sendJsonObject(body));
+  }
+
+  private static HttpResponse<String> batch(long userId, JsonObject body) throws Exception {
+    return await(request("POST", "/api/todos/batch", userId).as(BodyCodec.string()).sendJsonObject(body));
+  }
+}
@@ -0,0 +1,162 @@
+package org.example.web;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.PoolOptions;
+import org.example.WebVerticle;
+import org.example.cache.TodoListCache;
+import org.example.cache.TokenCache;
+import org.example.config.Config;
+import org.example.db.Database;
+import org.example.metrics.Metrics;
+import org.example.repository.TodoRepository;
+import org.example.repository.UserRepository;
+import org.example.service.AuthService;
+import org.example.service.TodoService;
+import org.example.service.UserService;
+import org.example.utils.JwtUtil;
+import org.flywaydb.core.Flyway;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of GET /api/todos by number of WebVerticle instances. The list comes from the todo cache, so a request
+ * costs HTTP parsing, routing, the JWT check and JSON encoding: the event loop work that one instance keeps on one
+ * core. {@code CONNECTIONS} requests are kept in flight for {@code SECONDS} per run. The client runs in the same
+ * JVM on its own event loops, so leave it a core or two: with C cores, expect the gain to flatten past C - 1
+ * instances; on a single core extra instances only add thread switching.
+ *
+ * Run: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test -Dexec.args="-cp %classpath org.example.web.WebVerticleScalingBenchmark"
+ */
+public class WebVerticleScalingBenchmark {
+  static final int CONNECTIONS = Integer.getInteger("bench.connections", 128);
+  static final int SECONDS = Integer.getInteger("bench.seconds", 10);
+  // the first run also warms up the JIT, or it makes whichever configuration runs first look slow
+  static final int WARMUP_SECONDS = Integer.getInteger("bench.warmupSeconds", 30);
+  private static final int TODOS = Integer.getInteger("bench.todos", 20);
+  private static final String INSTANCES = System.getProperty("bench.instances", "1,2,4,8");
+
+  public static void main(String[] args) throws Exception {
+    // request logging would dominate what is measured
+    System.setProperty("logback.configurationFile", "logback-bench.xml");
+    Vertx vertx = Vertx.vertx();
+    Vertx clientVertx = Vertx.vertx();
+    Backend backend = Backend.create(vertx, "scalingbench");
+    try {
+      HttpClient client = client(clientVertx);
+      boolean first = true;
+      for (String n : INSTANCES.split(",")) {
+        int instances = Integer.parseInt(n.trim());
+        String id = backend.deploy(instances);
+        int port = (Integer) vertx.sharedData().getLocalMap("app.info").get("port");
+        run(client, port, backend.token, first ? WARMUP_SECONDS : 2);
+        first = false;
+        long requests = run(client, port, backend.token, SECONDS);
+        System.out.printf("instances=%-3d cores=%d connections=%d  %,.0f req/s%n",
+            instances, Runtime.getRuntime().availableProcessors(), CONNECTIONS, requests / (double) SECONDS);
+        await(vertx.undeploy(id));
+      }
+    } finally {
+      await(clientVertx.close());
+      await(vertx.close());
+      backend.ds.close();
+    }
+  }
+
+  /** A user with cached todos, and the services WebVerticle needs, shared by all instances as MainApp does. */
+  static final class Backend {
+    final Vertx vertx;
+    final HikariDataSource ds;
+    final Config config;
+    final String token;
+    final UserService userService;
+    final AuthService authService;
+    final TodoService todoService;
+    final Metrics metrics = new Metrics();
+    final TokenCache tokens = new TokenCache(10_000);
+
+    private Backend(Vertx vertx, HikariDataSource ds, Config config, String token, UserRepository users, TodoService todoService) {
+      this.vertx = vertx;
+      this.ds = ds;
+      this.config = config;
+      this.token = token;
+      this.userService = new UserService(users);
+      this.authService = new AuthService(users, config);
+      this.todoService = todoService;
+    }
+
+    static Backend create(Vertx vertx, String dbName) throws Exception {
+      Config config = new Config() {
+        @Override public int getServerPort() { return 0; }
+      };
+      HikariConfig hc = new HikariConfig();
+      hc.setJdbcUrl("jdbc:h2:mem:" + dbName + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+      hc.setUsername("sa");
+      hc.setPassword("");
+      HikariDataSource ds = new HikariDataSource(hc);
+      Flyway.configure().dataSource(ds).locations("classpath:db/migration").load().migrate();
+
+      Database database = new Database(ds, vertx);
+      UserRepository users = new UserRepository(database);
+      TodoRepository todos = new TodoRepository(database);
+      long userId = await(users.createUserWithPassword("Bench", "bench@example.com", "x")).getId();
+      for (int i = 0; i < TODOS; i++) await(todos.createTodo(userId, "Todo " + i));
+      String token = JwtUtil.sign(Map.of("sub", String.valueOf(userId), "exp", Instant.now().getEpochSecond() + 3600),
+          config.getJwtSecret());
+      TodoService todoService = new TodoService(todos, new TodoListCache(1 << 20, 1 << 16, 600_000));
+      // filled up front: concurrent misses would only measure the database bulkhead
+      await(todoService.list(userId));
+      return new Backend(vertx, ds, config, token, users, todoService);
+    }
+
+    String deploy(int instances) throws Exception {
+      return await(vertx.deployVerticle(() -> new WebVerticle(config, userService, authService, todoService, metrics,
+          new WebVerticle.Shared(null, tokens, null, null)), new DeploymentOptions().setInstances(instances)));
+    }
+  }
+
+  static HttpClient client(Vertx vertx) {
+    return vertx.createHttpClient(new HttpClientOptions().setKeepAlive(true), new PoolOptions().setHttp1MaxSize(CONNECTIONS));
+  }
+
+  /** Keeps CONNECTIONS requests in flight for the given time; returns the successful ones. */
+  static long run(HttpClient client, int port, String token, int seconds) throws Exception {
+    LongAdder ok = new LongAdder();
+    AtomicBoolean stop = new AtomicBoolean();
+    CountDownLatch done = new CountDownLatch(CONNECTIONS);
+    for (int i = 0; i < CONNECTIONS; i++) next(client, port, token, ok, stop, done);
+    Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+    stop.set(true);
+    done.await(30, TimeUnit.SECONDS);
+    return ok.sum();
+  }
+
+  private static void next(HttpClient client, int port, String token, LongAdder ok, AtomicBoolean stop, CountDownLatch done) {
+    if (stop.get()) {
+      done.countDown();
+      return;
+    }
+    client.request(HttpMethod.GET, port, "localhost", "/api/todos")
+        .compose(req -> req.putHeader("Authorization", "Bearer " + token).send())
+        .compose(resp -> resp.body().map(body -> resp.statusCode()))
+        .onComplete(ar -> {
+          if (ar.succeeded() && ar.result() == 200) ok.increment();
+          next(client, port, token, ok, stop, done);
+        });
+  }
+
+  static <T> T await(Future<T> f) throws Exception {
+    return f.toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+  }
+}